@@ -0,0 +1,42 @@
+package ma.abdex.benchmarks;
+
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import ma.abdex.streams.StationStatsAggregator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The station aggregator, applied against an in-memory map standing in for the state store
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AggregatorBenchmark {
+
+    private StationStatsAggregator aggregator;
+    private Map<String, StationStats> store;
+
+    @Setup
+    public void setup(StationWorkload workload) {
+        aggregator = new StationStatsAggregator();
+        store = new HashMap<>();
+        for (String station : workload.stationNames) {
+            store.put(station, new StationStats());
+        }
+    }
+
+    @Benchmark
+    public StationStats aggregate(StationWorkload workload) {
+        WeatherData record = workload.records[workload.next()];
+        StationStats updated = aggregator.apply(record.getStation(), record, store.get(record.getStation()));
+        store.put(record.getStation(), updated);
+        return updated;
+    }
+}
@@ -0,0 +1,181 @@
+package ma.abdex.benchmarks;
+
+import ma.abdex.config.AppConfig;
+import ma.abdex.model.WeatherData;
+import ma.abdex.streams.GroupingMode;
+import ma.abdex.streams.WeatherStreamsProcessor;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KafkaStreams;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Side-by-side end-to-end comparison of the repartition and key grouping modes
+ * against a running broker (make docker-up setup-topics).
+ *
+ * For each mode a fresh application instance is started, a fixed number of
+ * station-keyed readings is sent as fast as possible, and station-averages is
+ * consumed until every reading is reflected in the per-station counts.
+ * Throughput is readings per second from first send to last count; latency is
+ * the time from a reading's send (its event time) to the output record it
+ * produced becoming visible to a consumer. The text output format is pinned
+ * and the output emit policies are disabled, so every aggregate update is
+ * published and carries its count.
+ *
+ * Usage: GroupingModeComparison [bootstrap-servers] [readings] [stations]
+ */
+public class GroupingModeComparison {
+
+    private static final Duration RUN_TIMEOUT = Duration.ofMinutes(5);
+
+    public static void main(String[] args) throws Exception {
+        AppConfig config = AppConfig.getInstance();
+        String bootstrapServers = args.length > 0 ? args[0] : config.getKafkaBootstrapServers();
+        int readings = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int stations = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        // System properties take precedence over the environment and application.properties
+        System.setProperty("weather.output.format", "text");
+        System.setProperty("weather.output.emit.interval.seconds", "0");
+        System.setProperty("weather.output.emit.min.change.celsius", "0");
+        System.setProperty("weather.output.emit.min.change.humidity", "0");
+
+        List<Result> results = new ArrayList<>();
+        for (GroupingMode mode : GroupingMode.values()) {
+            results.add(run(mode, bootstrapServers, config, readings, stations));
+        }
+
+        System.out.printf("%n%-12s %10s %10s %12s %10s %10s %10s%n",
+                "mode", "readings", "seconds", "readings/s", "p50 ms", "p99 ms", "max ms");
+        for (Result result : results) {
+            System.out.printf("%-12s %10d %10.2f %12.0f %10d %10d %10d%n",
+                    result.mode, result.readings, result.seconds, result.readings / result.seconds,
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0));
+        }
+        System.exit(0);
+    }
+
+    private static Result run(GroupingMode mode, String bootstrapServers, AppConfig config,
+            int readings, int stations) throws Exception {
+        System.setProperty("weather.topology.grouping", mode.name().toLowerCase(Locale.ROOT));
+        String runTag = "cmp" + Long.toString(System.currentTimeMillis(), 36) + mode.ordinal();
+        String outputTopic = config.getOutputTopic();
+        System.out.printf("Running %s mode (%d readings over %d stations)...%n", mode, readings, stations);
+
+        WeatherStreamsProcessor processor = new WeatherStreamsProcessor(bootstrapServers, runTag);
+        try (KafkaConsumer<String, String> consumer = createConsumer(bootstrapServers);
+                KafkaProducer<String, String> producer = createProducer(bootstrapServers, config)) {
+            // Only look at output produced from here on
+            List<TopicPartition> partitions = consumer.partitionsFor(outputTopic).stream()
+                    .map(info -> new TopicPartition(outputTopic, info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToEnd(partitions);
+            partitions.forEach(consumer::position);
+
+            processor.start();
+            awaitRunning(processor.getStreams());
+
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < readings; i++) {
+                String station = runTag + "-" + (i % stations);
+                // Above the temperature threshold so every reading reaches the aggregation
+                String value = new WeatherData(station, 35.0, 50.0, System.currentTimeMillis()).toCsv();
+                producer.send(new ProducerRecord<>(config.getInputTopic(), station, value));
+            }
+            producer.flush();
+
+            Map<String, Long> counts = new HashMap<>();
+            long aggregated = 0;
+            long[] latencies = new long[16_384];
+            int latencyCount = 0;
+            long deadline = start + RUN_TIMEOUT.toMillis();
+            while (aggregated < readings && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(200))) {
+                    if (record.key() == null || !record.key().startsWith(runTag)) {
+                        continue;
+                    }
+                    long now = System.currentTimeMillis();
+                    if (latencyCount == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, latencyCount * 2);
+                    }
+                    latencies[latencyCount++] = now - record.timestamp();
+
+                    long count = parseCount(record.value());
+                    Long previous = counts.put(record.key(), count);
+                    aggregated += count - (previous == null ? 0 : previous);
+                }
+            }
+            double seconds = (System.currentTimeMillis() - start) / 1000.0;
+            if (aggregated < readings) {
+                System.out.printf("  timed out with %d of %d readings aggregated%n", aggregated, readings);
+            }
+
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            return new Result(mode, aggregated, seconds, sorted);
+        } finally {
+            processor.close();
+            processor.getStreams().cleanUp();
+        }
+    }
+
+    private static void awaitRunning(KafkaStreams streams) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RUN_TIMEOUT.toMillis();
+        while (streams.state() != KafkaStreams.State.RUNNING) {
+            if (System.currentTimeMillis() > deadline || streams.state() == KafkaStreams.State.ERROR) {
+                throw new IllegalStateException("Streams did not reach RUNNING: " + streams.state());
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    // Text output values end with "(Count: n)"
+    private static long parseCount(String value) {
+        int from = value.lastIndexOf("Count: ") + "Count: ".length();
+        return Long.parseLong(value.substring(from, value.lastIndexOf(')')));
+    }
+
+    private static KafkaConsumer<String, String> createConsumer(String bootstrapServers) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new KafkaConsumer<>(props);
+    }
+
+    private static KafkaProducer<String, String> createProducer(String bootstrapServers, AppConfig config) {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, config.getProducerAcks());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        return new KafkaProducer<>(props);
+    }
+
+    private record Result(GroupingMode mode, long readings, double seconds, long[] latencies) {
+        long percentile(double quantile) {
+            if (latencies.length == 0) {
+                return -1;
+            }
+            int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(index, 0)];
+        }
+    }
+}
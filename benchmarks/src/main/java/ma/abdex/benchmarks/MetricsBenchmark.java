@@ -0,0 +1,34 @@
+package ma.abdex.benchmarks;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.WeatherData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-record Prometheus updates done by the generator and the aggregator
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsBenchmark {
+
+    @Benchmark
+    public void recordWeatherData(StationWorkload workload) {
+        WeatherData record = workload.records[workload.next()];
+        PrometheusMetricsServer.recordWeatherData(record.getStation(), record.getTemperature(),
+                record.getHumidity());
+    }
+
+    @Benchmark
+    public void recordAggregatedStats(StationWorkload workload) {
+        int index = workload.next();
+        WeatherData record = workload.records[index];
+        PrometheusMetricsServer.recordAggregatedStats(record.getStation(), record.getTemperature(),
+                record.getHumidity(), index);
+    }
+}
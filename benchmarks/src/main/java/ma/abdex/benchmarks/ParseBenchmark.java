@@ -0,0 +1,50 @@
+package ma.abdex.benchmarks;
+
+import ma.abdex.model.WeatherData;
+import ma.abdex.streams.WeatherDataCsvDeserializer;
+import ma.abdex.util.ValidationUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV ingest: WeatherData.fromCsv, the byte-level deserializer and station validation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+    private static final String TOPIC = "weather-data";
+
+    private WeatherDataCsvDeserializer csvDeserializer;
+
+    @Setup
+    public void setup() {
+        csvDeserializer = new WeatherDataCsvDeserializer();
+    }
+
+    @Benchmark
+    public WeatherData fromCsv(StationWorkload workload) {
+        return WeatherData.fromCsv(workload.csv[workload.next()]);
+    }
+
+    @Benchmark
+    public WeatherData csvDeserializer(StationWorkload workload) {
+        return csvDeserializer.deserialize(TOPIC, workload.csvBytes[workload.next()]);
+    }
+
+    @Benchmark
+    public String validateStation(StationWorkload workload) {
+        String station = workload.records[workload.next()].getStation();
+        ValidationUtils.validateStation(station);
+        return station;
+    }
+
+    @Benchmark
+    public Object checkStation(StationWorkload workload) {
+        return ValidationUtils.checkStation(workload.records[workload.next()].getStation());
+    }
+}
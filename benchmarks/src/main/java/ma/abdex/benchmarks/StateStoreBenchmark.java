@@ -0,0 +1,138 @@
+package ma.abdex.benchmarks;
+
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import ma.abdex.streams.OffHeapKeyValueBytesStoreSupplier;
+import ma.abdex.streams.StationStatsAggregator;
+import ma.abdex.streams.StationStatsDeserializer;
+import ma.abdex.streams.StationStatsSerializer;
+import ma.abdex.streams.StoreType;
+import ma.abdex.streams.WireFormat;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.TaskId;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The station aggregate store, RocksDB versus in-memory versus off-heap, filled
+ * with one aggregate of a few dozen readings per station. {@code update} is the
+ * read-modify-write the aggregation performs for every reading that misses the
+ * record cache; the bare stores are measured, without caching or changelogging.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+@State(Scope.Thread)
+public class StateStoreBenchmark {
+    private static final String TOPIC = "weather-analysis-app-station-stats-changelog";
+    private static final int READINGS_PER_STATION = 30;
+    private static final int UPDATES = 1 << 16;
+
+    @Param({ "ROCKSDB", "IN_MEMORY", "OFF_HEAP" })
+    public StoreType storeType;
+
+    @Param({ "10000", "1000000" })
+    public int stations;
+
+    private Path stateDir;
+    private KeyValueStore<Bytes, byte[]> store;
+    private StationStatsAggregator aggregator;
+    private StationStatsSerializer serializer;
+    private StationStatsDeserializer deserializer;
+    private Bytes[] keys;
+    // Update i applies readings[i] to station updateStations[i]
+    private int[] updateStations;
+    private WeatherData[] readings;
+    private int cursor;
+
+    @Setup
+    public void setup() throws IOException {
+        stateDir = Files.createTempDirectory("state-store-benchmark");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "state-store-benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        MockProcessorContext<Object, Object> context =
+                new MockProcessorContext<>(props, new TaskId(0, 0), stateDir.toFile());
+
+        String name = "station-stats";
+        switch (storeType) {
+            case ROCKSDB:
+                store = Stores.persistentKeyValueStore(name).get();
+                break;
+            case IN_MEMORY:
+                store = Stores.inMemoryKeyValueStore(name).get();
+                break;
+            default:
+                store = new OffHeapKeyValueBytesStoreSupplier(name).get();
+        }
+        store.init(context.getStateStoreContext(), store);
+
+        aggregator = new StationStatsAggregator();
+        serializer = new StationStatsSerializer(WireFormat.BINARY);
+        deserializer = new StationStatsDeserializer();
+        Random random = new Random(42);
+        keys = new Bytes[stations];
+        for (int i = 0; i < stations; i++) {
+            String station = "Station" + (i + 1);
+            keys[i] = Bytes.wrap(station.getBytes(StandardCharsets.UTF_8));
+            StationStats stats = new StationStats(station);
+            for (int j = 0; j < READINGS_PER_STATION; j++) {
+                stats = aggregator.apply(station, reading(random, station, j), stats);
+            }
+            store.put(keys[i], serializer.serialize(TOPIC, stats));
+        }
+
+        updateStations = new int[UPDATES];
+        readings = new WeatherData[UPDATES];
+        for (int i = 0; i < UPDATES; i++) {
+            updateStations[i] = random.nextInt(stations);
+            readings[i] = reading(random, "Station" + (updateStations[i] + 1), i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        Utils.delete(stateDir.toFile());
+    }
+
+    private static WeatherData reading(Random random, String station, int i) {
+        double temperature = Math.round((15.0 + random.nextDouble() * 30.0) * 10.0) / 10.0;
+        double humidity = Math.round((30.0 + random.nextDouble() * 60.0) * 10.0) / 10.0;
+        return new WeatherData(station, temperature, humidity, 1700000000000L + i);
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (UPDATES - 1);
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return store.get(keys[updateStations[next()]]);
+    }
+
+    @Benchmark
+    public StationStats update() {
+        int i = next();
+        WeatherData reading = readings[i];
+        Bytes key = keys[updateStations[i]];
+        StationStats stats = aggregator.apply(reading.getStation(), reading,
+                deserializer.deserialize(TOPIC, store.get(key)));
+        store.put(key, serializer.serialize(TOPIC, stats));
+        return stats;
+    }
+}
@@ -0,0 +1,62 @@
+package ma.abdex.benchmarks;
+
+import ma.abdex.model.WeatherData;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Pre-generated readings spread over a configurable number of stations.
+ * Benchmarks step through the records with {@link #next()} so every station
+ * is touched and per-station caches see a realistic working set.
+ */
+@State(Scope.Thread)
+public class StationWorkload {
+    private static final int MIN_RECORDS = 1 << 16;
+
+    @Param({ "5", "1000", "100000" })
+    public int stations;
+
+    public String[] stationNames;
+    public WeatherData[] records;
+    public String[] csv;
+    public byte[][] csvBytes;
+
+    private int mask;
+    private int cursor;
+
+    @Setup
+    public void generate() {
+        Random random = new Random(42);
+        stationNames = new String[stations];
+        for (int i = 0; i < stations; i++) {
+            stationNames[i] = "Station" + (i + 1);
+        }
+
+        int size = Integer.highestOneBit(Math.max(MIN_RECORDS, stations) - 1) << 1;
+        records = new WeatherData[size];
+        csv = new String[size];
+        csvBytes = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            // Round robin first so every station appears, then uniform
+            String station = stationNames[i < stations ? i : random.nextInt(stations)];
+            double temperature = Math.round((15.0 + random.nextDouble() * 30.0) * 10.0) / 10.0;
+            double humidity = Math.round((30.0 + random.nextDouble() * 60.0) * 10.0) / 10.0;
+            records[i] = new WeatherData(station, temperature, humidity, 1700000000000L + i);
+            csv[i] = records[i].toCsv();
+            csvBytes[i] = csv[i].getBytes(StandardCharsets.UTF_8);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * Index of the next record to process
+     */
+    public int next() {
+        return cursor = (cursor + 1) & mask;
+    }
+}
@@ -0,0 +1,76 @@
+package ma.abdex.benchmarks;
+
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import ma.abdex.streams.StationStatsDeserializer;
+import ma.abdex.streams.StationStatsSerializer;
+import ma.abdex.streams.WeatherDataDeserializer;
+import ma.abdex.streams.WeatherDataSerializer;
+import ma.abdex.streams.WireFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The four serdes of the repartition topic and state store, Jackson JSON versus binary encoding
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+    private static final String TOPIC = "weather-analysis-app-repartition";
+
+    @Param({ "JSON", "BINARY" })
+    public WireFormat format;
+
+    private StationStats[] stationStats;
+    private WeatherDataSerializer weatherDataSerializer;
+    private WeatherDataDeserializer weatherDataDeserializer;
+    private StationStatsSerializer stationStatsSerializer;
+    private StationStatsDeserializer stationStatsDeserializer;
+    private byte[][] weatherDataBytes;
+    private byte[][] stationStatsBytes;
+
+    @Setup
+    public void setup(StationWorkload workload) {
+        weatherDataSerializer = new WeatherDataSerializer(format);
+        weatherDataDeserializer = new WeatherDataDeserializer();
+        stationStatsSerializer = new StationStatsSerializer(format);
+        stationStatsDeserializer = new StationStatsDeserializer();
+
+        int size = workload.records.length;
+        weatherDataBytes = new byte[size][];
+        stationStats = new StationStats[size];
+        stationStatsBytes = new byte[size][];
+        for (int i = 0; i < size; i++) {
+            WeatherData record = workload.records[i];
+            stationStats[i] = new StationStats(record.getStation(), record.getTemperature(), record.getHumidity(),
+                    i + 1);
+            weatherDataBytes[i] = weatherDataSerializer.serialize(TOPIC, record);
+            stationStatsBytes[i] = stationStatsSerializer.serialize(TOPIC, stationStats[i]);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeWeatherData(StationWorkload workload) {
+        return weatherDataSerializer.serialize(TOPIC, workload.records[workload.next()]);
+    }
+
+    @Benchmark
+    public WeatherData deserializeWeatherData(StationWorkload workload) {
+        return weatherDataDeserializer.deserialize(TOPIC, weatherDataBytes[workload.next()]);
+    }
+
+    @Benchmark
+    public byte[] serializeStationStats(StationWorkload workload) {
+        return stationStatsSerializer.serialize(TOPIC, stationStats[workload.next()]);
+    }
+
+    @Benchmark
+    public StationStats deserializeStationStats(StationWorkload workload) {
+        return stationStatsDeserializer.deserialize(TOPIC, stationStatsBytes[workload.next()]);
+    }
+}
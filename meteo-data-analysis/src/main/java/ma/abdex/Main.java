@@ -1,8 +1,12 @@
 package ma.abdex;
 
+import ma.abdex.config.AppConfig;
 import ma.abdex.metrics.PrometheusMetricsServer;
 import ma.abdex.producer.WeatherDataGenerator;
+import ma.abdex.query.StationQueryService;
 import ma.abdex.streams.WeatherStreamsProcessor;
+import ma.abdex.streams.WeatherTopology;
+import org.apache.kafka.streams.state.HostInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,18 +21,25 @@ import java.util.Scanner;
  * 3. Aggregates data by station (average temperature and humidity)
  * 4. Outputs results to console and Kafka topic
  * 5. Exposes Prometheus metrics on port 8080
+ *
+ * Settings come from application.properties and can be overridden per node
+ * with environment variables or {@code --key=value} arguments, e.g.
+ * {@code --kafka.streams.num.stream.threads=8}.
  */
 public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
-    private static final String BOOTSTRAP_SERVERS = "localhost:9092";
-    private static final String APPLICATION_ID = "weather-analysis-app";
-    private static final int PROMETHEUS_PORT = 8080;
-
     public static void main(String[] args) {
+        AppConfig config = AppConfig.getInstance();
+        config.applyArguments(args);
+        String bootstrapServers = config.getKafkaBootstrapServers();
+        int prometheusPort = config.getPrometheusPort();
+        int generatorInterval = config.getGeneratorIntervalSeconds();
+
         logger.info("=== Weather Data Analysis Application ===");
-        logger.info("Bootstrap Servers: {}", BOOTSTRAP_SERVERS);
-        logger.info("Prometheus Metrics: http://localhost:{}/metrics", PROMETHEUS_PORT);
+        logger.info("Bootstrap Servers: {}", bootstrapServers);
+        logger.info("Stream threads: {}", config.getKafkaStreamsNumThreads());
+        logger.info("Prometheus Metrics: http://localhost:{}/metrics", prometheusPort);
 
         // Initialize components
         PrometheusMetricsServer metricsServer = null;
@@ -37,34 +48,44 @@ public class Main {
 
         try {
             // Start Prometheus metrics server
-            logger.info("\nStarting Prometheus Metrics Server...");
-            metricsServer = new PrometheusMetricsServer(PROMETHEUS_PORT);
-            metricsServer.start();
+            if (config.isPrometheusEnabled()) {
+                logger.info("\nStarting Prometheus Metrics Server...");
+                metricsServer = new PrometheusMetricsServer(prometheusPort);
+                metricsServer.start();
+            }
 
             // Start Kafka Streams processor
             logger.info("\nStarting Kafka Streams Processor...");
-            processor = new WeatherStreamsProcessor(BOOTSTRAP_SERVERS, APPLICATION_ID);
+            processor = new WeatherStreamsProcessor(config);
             processor.start();
 
+            // Serve station queries next to the metrics endpoint
+            if (config.isQueryEnabled() && metricsServer != null) {
+                new StationQueryService(processor.getStreams(), WeatherTopology.STATION_STATS_STORE,
+                        new HostInfo(config.getQueryAdvertisedHost(), prometheusPort), config.getQueryCacheTtlMs(),
+                        processor.getStationPartitionSerializer(), !config.isRegistryEnabled())
+                        .register(metricsServer.getHttpServer());
+            }
+
             // Wait a bit for streams to initialize
             Thread.sleep(2000);
 
             // Start weather data generator
             logger.info("\nStarting Weather Data Generator...");
-            generator = new WeatherDataGenerator(BOOTSTRAP_SERVERS);
+            generator = new WeatherDataGenerator(bootstrapServers);
 
             // Generate initial batch of data
             logger.info("\nGenerating initial data batch...");
             generator.generateBatch(3);
 
-            // Start continuous generation every 5 seconds
-            logger.info("\nStarting continuous data generation (every 5 seconds)...");
-            generator.startGenerating(5);
+            // Start continuous generation
+            logger.info("\nStarting continuous data generation (every {} seconds)...", generatorInterval);
+            generator.startGenerating(generatorInterval);
 
             logger.info("\nApplication is running!");
             logger.info("Watch the console for aggregated results.");
             logger.info("");
-            logger.info("Prometheus metrics: http://localhost:{}/metrics", PROMETHEUS_PORT);
+            logger.info("Prometheus metrics: http://localhost:{}/metrics", prometheusPort);
             logger.info("Grafana dashboard: http://localhost:3000 (admin/admin)");
             logger.info("");
             logger.info("Press ENTER to stop the application\n");
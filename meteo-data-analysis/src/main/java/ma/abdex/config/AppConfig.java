@@ -2,21 +2,36 @@ package ma.abdex.config;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 
 /**
  * Configuration manager for loading application properties
+ *
+ * Values are looked up, in order of precedence, in command-line arguments
+ * ({@code --key=value}), JVM system properties ({@code -Dkey=value}), environment
+ * variables (the key upper-cased with dots and dashes as underscores, e.g.
+ * KAFKA_STREAMS_NUM_STREAM_THREADS) and finally application.properties.
  */
 public class AppConfig {
     private static final String CONFIG_FILE = "application.properties";
     private static AppConfig instance;
     private final Properties properties;
+    private final Properties overrides = new Properties();
+    private final Map<String, String> environment;
 
     private AppConfig() {
         properties = new Properties();
+        environment = System.getenv();
         loadProperties();
     }
 
+    AppConfig(Properties properties, Map<String, String> environment) {
+        this.properties = properties;
+        this.environment = environment;
+    }
+
     public static synchronized AppConfig getInstance() {
         if (instance == null) {
             instance = new AppConfig();
@@ -24,6 +39,16 @@ public class AppConfig {
         return instance;
     }
 
+    /**
+     * A fresh configuration, independent of the shared instance, loaded the same
+     * way and with the given {@code --key=value} overrides applied
+     */
+    public static AppConfig load(String... args) {
+        AppConfig config = new AppConfig();
+        config.applyArguments(args);
+        return config;
+    }
+
     private void loadProperties() {
         try (InputStream input = getClass().getClassLoader().getResourceAsStream(CONFIG_FILE)) {
             if (input == null) {
@@ -35,6 +60,28 @@ public class AppConfig {
         }
     }
 
+    /**
+     * Apply {@code --key=value} command-line overrides
+     *
+     * @throws IllegalArgumentException for arguments not of that form
+     */
+    public void applyArguments(String... args) {
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator <= 2) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            overrides.setProperty(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+    }
+
+    /**
+     * Environment variable that overrides a key, e.g. kafka.bootstrap.servers -> KAFKA_BOOTSTRAP_SERVERS
+     */
+    static String environmentVariable(String key) {
+        return key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_');
+    }
+
     public String getKafkaBootstrapServers() {
         return getProperty("kafka.bootstrap.servers", "localhost:9092");
     }
@@ -51,10 +98,54 @@ public class AppConfig {
         return getLongProperty("kafka.streams.cache.max.bytes", 10485760L);
     }
 
+    public String getKafkaStreamsStateStoreType() {
+        return getProperty("kafka.streams.state.store.type", "rocksdb");
+    }
+
+    public String getKafkaStreamsStatsStoreType() {
+        return getProperty("kafka.streams.stats.store.type", getKafkaStreamsStateStoreType());
+    }
+
     public int getKafkaStreamsNumThreads() {
         return getIntProperty("kafka.streams.num.stream.threads", 2);
     }
 
+    public String getKafkaStreamsProcessingGuarantee() {
+        return getProperty("kafka.streams.processing.guarantee", "at_least_once");
+    }
+
+    public int getKafkaStreamsProducerBatchSize() {
+        return getIntProperty("kafka.streams.producer.batch.size", 65536);
+    }
+
+    public int getKafkaStreamsProducerLingerMs() {
+        return getIntProperty("kafka.streams.producer.linger.ms", 100);
+    }
+
+    public String getKafkaStreamsProducerCompressionType() {
+        return getProperty("kafka.streams.producer.compression.type", "lz4");
+    }
+
+    public int getKafkaStreamsConsumerFetchMinBytes() {
+        return getIntProperty("kafka.streams.consumer.fetch.min.bytes", 1);
+    }
+
+    public int getKafkaStreamsConsumerFetchMaxWaitMs() {
+        return getIntProperty("kafka.streams.consumer.fetch.max.wait.ms", 500);
+    }
+
+    public int getKafkaStreamsConsumerMaxPartitionFetchBytes() {
+        return getIntProperty("kafka.streams.consumer.max.partition.fetch.bytes", 1048576);
+    }
+
+    public int getKafkaStreamsConsumerMaxPollRecords() {
+        return getIntProperty("kafka.streams.consumer.max.poll.records", 1000);
+    }
+
+    public String getStreamsSerdeFormat() {
+        return getProperty("kafka.streams.serde.format", "binary");
+    }
+
     public String getInputTopic() {
         return getProperty("kafka.topic.input", "weather-data");
     }
@@ -75,6 +166,166 @@ public class AppConfig {
         return getDoubleProperty("weather.temperature.threshold", 30.0);
     }
 
+    public String getIngestParser() {
+        return getProperty("weather.ingest.parser", "bytes");
+    }
+
+    public int getIngestStationTableSize() {
+        return getIntProperty("weather.ingest.station.table.size", 4096);
+    }
+
+    public boolean isDebugEnabled() {
+        return getBooleanProperty("weather.debug.enabled", false);
+    }
+
+    public long getLogEventsIntervalMs() {
+        return getLongProperty("weather.log.events.interval.ms", 10000L);
+    }
+
+    public int getLogEventsSampleEvery() {
+        return getIntProperty("weather.log.events.sample.every", 1);
+    }
+
+    public int getLogEventsQueueSize() {
+        return getIntProperty("weather.log.events.queue.size", 1024);
+    }
+
+    public boolean isDlqEnabled() {
+        return getBooleanProperty("weather.dlq.enabled", true);
+    }
+
+    public String getDlqTopic() {
+        return getProperty("weather.dlq.topic", "weather-data-dlq");
+    }
+
+    public String getDlqDeserializationHandler() {
+        return getProperty("weather.dlq.deserialization.handler", "continue");
+    }
+
+    public boolean isBatchEnabled() {
+        return getBooleanProperty("weather.batch.enabled", false);
+    }
+
+    public String getBatchTopic() {
+        return getProperty("weather.batch.topic", "weather-data-batched");
+    }
+
+    public int getBatchMaxReadings() {
+        return getIntProperty("weather.batch.max.readings", 100);
+    }
+
+    public long getBatchLingerMs() {
+        return getLongProperty("weather.batch.linger.ms", 1000L);
+    }
+
+    public boolean isRegistryEnabled() {
+        return getBooleanProperty("weather.registry.enabled", false);
+    }
+
+    public String getRegistryTopic() {
+        return getProperty("weather.registry.topic", "station-registry");
+    }
+
+    public long getRegistryBufferMaxReadings() {
+        return getLongProperty("weather.registry.buffer.max.readings", 100000L);
+    }
+
+    public boolean isAnomalyEnabled() {
+        return getBooleanProperty("weather.anomaly.enabled", true);
+    }
+
+    public String getAnomalyTopic() {
+        return getProperty("weather.anomaly.topic", "weather-anomalies");
+    }
+
+    public double getAnomalyAlpha() {
+        return getDoubleProperty("weather.anomaly.alpha", 0.05);
+    }
+
+    public double getAnomalyZScoreThreshold() {
+        return getDoubleProperty("weather.anomaly.zscore.threshold", 3.0);
+    }
+
+    public long getAnomalyWarmupReadings() {
+        return getLongProperty("weather.anomaly.warmup.readings", 30L);
+    }
+
+    public String getTopologyGrouping() {
+        return getProperty("weather.topology.grouping", "repartition");
+    }
+
+    public String getOutputFormat() {
+        return getProperty("weather.output.format", "text");
+    }
+
+    public long getOutputEmitIntervalSeconds() {
+        return getLongProperty("weather.output.emit.interval.seconds", 0L);
+    }
+
+    public long getOutputEmitBufferMaxRecords() {
+        return getLongProperty("weather.output.emit.buffer.max.records", 100000L);
+    }
+
+    public double getOutputEmitMinTemperatureChange() {
+        return getDoubleProperty("weather.output.emit.min.change.celsius", 0.0);
+    }
+
+    public double getOutputEmitMinHumidityChange() {
+        return getDoubleProperty("weather.output.emit.min.change.humidity", 0.0);
+    }
+
+    public boolean isTopologyVerifyKey() {
+        return getBooleanProperty("weather.topology.grouping.verify.key", true);
+    }
+
+    public String getLatePolicy() {
+        return getProperty("weather.late.policy", "accept");
+    }
+
+    public long getLateAllowedLatenessSeconds() {
+        return getLongProperty("weather.late.allowed.lateness.seconds", 30L);
+    }
+
+    public long getLateMaxFutureSkewSeconds() {
+        return getLongProperty("weather.late.max.future.skew.seconds", 60L);
+    }
+
+    public String getLateTopic() {
+        return getProperty("weather.late.topic", "weather-data-late");
+    }
+
+    public boolean isWindowEnabled(String windowType) {
+        return getBooleanProperty("weather.window." + windowType + ".enabled", false);
+    }
+
+    public String getWindowTopic(String windowType) {
+        return getProperty("weather.window." + windowType + ".topic", "station-averages-" + windowType);
+    }
+
+    public long getWindowSizeSeconds(String windowType) {
+        return getLongProperty("weather.window." + windowType + ".size.seconds", 300L);
+    }
+
+    public long getWindowAdvanceSeconds(String windowType) {
+        return getLongProperty("weather.window." + windowType + ".advance.seconds", 60L);
+    }
+
+    public long getWindowInactivityGapSeconds(String windowType) {
+        return getLongProperty("weather.window." + windowType + ".inactivity.gap.seconds", 600L);
+    }
+
+    public long getWindowGraceSeconds(String windowType) {
+        return getLongProperty("weather.window." + windowType + ".grace.seconds", 30L);
+    }
+
+    public long getWindowRetentionSeconds() {
+        return getLongProperty("weather.window.retention.seconds", 3600L);
+    }
+
+    public boolean isWindowSuppressUntilClose() {
+        return getBooleanProperty("weather.window.suppress.until.close", true);
+    }
+
     public int getGeneratorIntervalSeconds() {
         return getIntProperty("weather.generator.interval.seconds", 5);
     }
@@ -84,6 +335,46 @@ public class AppConfig {
         return stationsStr.split(",");
     }
 
+    public double getLoadRate() {
+        return getDoubleProperty("weather.load.rate", 10000.0);
+    }
+
+    public long getLoadDurationSeconds() {
+        return getLongProperty("weather.load.duration.seconds", 60L);
+    }
+
+    public int getLoadStations() {
+        return getIntProperty("weather.load.stations", 10000);
+    }
+
+    public int getLoadThreads() {
+        return getIntProperty("weather.load.threads", 4);
+    }
+
+    public boolean isLoadVirtualThreads() {
+        return getBooleanProperty("weather.load.virtual.threads", false);
+    }
+
+    public String getLoadProducerAcks() {
+        return getProperty("weather.load.producer.acks", "1");
+    }
+
+    public int getLoadProducerLingerMs() {
+        return getIntProperty("weather.load.producer.linger.ms", 10);
+    }
+
+    public int getLoadProducerBatchSize() {
+        return getIntProperty("weather.load.producer.batch.size", 131072);
+    }
+
+    public String getLoadProducerCompressionType() {
+        return getProperty("weather.load.producer.compression.type", "lz4");
+    }
+
+    public long getLoadProducerBufferMemory() {
+        return getLongProperty("weather.load.producer.buffer.memory", 67108864L);
+    }
+
     public String getProducerAcks() {
         return getProperty("kafka.producer.acks", "all");
     }
@@ -104,17 +395,65 @@ public class AppConfig {
         return getBooleanProperty("prometheus.enabled", true);
     }
 
+    public int getPrometheusMaxStations() {
+        return getIntProperty("prometheus.stations.max", 10000);
+    }
+
+    public long getPrometheusStationIdleTimeoutSeconds() {
+        return getLongProperty("prometheus.stations.idle.timeout.seconds", 3600L);
+    }
+
+    public boolean isPrometheusAsyncEnabled() {
+        return getBooleanProperty("prometheus.async.enabled", true);
+    }
+
+    public int getPrometheusAsyncBufferSize() {
+        return getIntProperty("prometheus.async.buffer.size", 65536);
+    }
+
+    public int getPrometheusHistogramSampleEvery() {
+        return getIntProperty("prometheus.histogram.sample.every", 1);
+    }
+
+    public boolean isQueryEnabled() {
+        return getBooleanProperty("weather.query.enabled", true);
+    }
+
+    public String getQueryAdvertisedHost() {
+        return getProperty("weather.query.advertised.host", "localhost");
+    }
+
+    public long getQueryCacheTtlMs() {
+        return getLongProperty("weather.query.cache.ttl.ms", 500L);
+    }
+
     public int getShutdownTimeoutSeconds() {
         return getIntProperty("app.shutdown.timeout.seconds", 30);
     }
 
     // Helper methods
+
+    /**
+     * Look up a key through the command-line, system property, environment and file layers
+     */
+    private String lookup(String key) {
+        String value = overrides.getProperty(key);
+        if (value == null) {
+            value = System.getProperty(key);
+        }
+        if (value == null) {
+            value = environment.get(environmentVariable(key));
+        }
+        return value != null ? value : properties.getProperty(key);
+    }
+
     private String getProperty(String key, String defaultValue) {
-        return properties.getProperty(key, defaultValue);
+        String value = lookup(key);
+        return value != null ? value : defaultValue;
     }
 
     private int getIntProperty(String key, int defaultValue) {
-        String value = properties.getProperty(key);
+        String value = lookup(key);
         if (value != null) {
             try {
                 return Integer.parseInt(value.trim());
@@ -126,7 +465,7 @@ public class AppConfig {
     }
 
     private long getLongProperty(String key, long defaultValue) {
-        String value = properties.getProperty(key);
+        String value = lookup(key);
         if (value != null) {
             try {
                 return Long.parseLong(value.trim());
@@ -138,7 +477,7 @@ public class AppConfig {
     }
 
     private double getDoubleProperty(String key, double defaultValue) {
-        String value = properties.getProperty(key);
+        String value = lookup(key);
         if (value != null) {
             try {
                 return Double.parseDouble(value.trim());
@@ -150,7 +489,7 @@ public class AppConfig {
     }
 
     private boolean getBooleanProperty(String key, boolean defaultValue) {
-        String value = properties.getProperty(key);
+        String value = lookup(key);
         if (value != null) {
             return Boolean.parseBoolean(value.trim());
         }
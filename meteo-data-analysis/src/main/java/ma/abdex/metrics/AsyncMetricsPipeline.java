@@ -0,0 +1,258 @@
+package ma.abdex.metrics;
+
+import ma.abdex.model.StationStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves per-station metric updates off the stream threads.
+ *
+ * Stream threads publish readings and aggregates into a bounded, lock-free
+ * ring buffer (a Vyukov-style array queue: producers claim a slot with one CAS,
+ * the single consumer needs none). A dedicated daemon thread drains it in
+ * batches, folds each batch per station and applies it to a
+ * {@link StationMetricsRecorder}: counters advance once per station and batch,
+ * gauges take the last value, and only every {@code histogramSampleEvery}-th
+ * reading is observed in the distribution histograms. When the buffer is full
+ * the update is dropped and counted, so a slow consumer never blocks processing.
+ */
+public class AsyncMetricsPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncMetricsPipeline.class);
+
+    private static final int READING = 0;
+    private static final int AGGREGATE = 1;
+    private static final int QUANTILES = 2;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final StationMetricsRecorder recorder;
+    private final int histogramSampleEvery;
+
+    // Ring buffer: slot i holds an event when sequences[i] == position + 1
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private long dequeuePosition;
+    private final int[] kinds;
+    private final String[] stations;
+    private final double[] temperatures;
+    private final double[] humidities;
+    private final long[] counts;
+    private final StationStats[] aggregates;
+
+    private long readingsSinceSample;
+    private volatile boolean running;
+    private Thread drainThread;
+
+    /**
+     * @param capacity             buffer size in events, rounded up to a power of two
+     * @param histogramSampleEvery observe one reading in this many in the histograms (1 = all)
+     */
+    public AsyncMetricsPipeline(StationMetricsRecorder recorder, int capacity, int histogramSampleEvery) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.recorder = recorder;
+        this.histogramSampleEvery = Math.max(1, histogramSampleEvery);
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.kinds = new int[size];
+        this.stations = new String[size];
+        this.temperatures = new double[size];
+        this.humidities = new double[size];
+        this.counts = new long[size];
+        this.aggregates = new StationStats[size];
+    }
+
+    /**
+     * Start the drain thread
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        drainThread = new Thread(this::drainLoop, "metrics-drain");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Stop the drain thread after applying everything already buffered
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue a raw reading; never blocks
+     */
+    public void recordWeatherData(String station, double temperatureCelsius, double humidity) {
+        offer(READING, station, temperatureCelsius, humidity, 0);
+    }
+
+    /**
+     * Queue the current aggregate of a station; never blocks
+     */
+    public void recordAggregatedStats(String station, double avgTempCelsius, double avgHum, long count) {
+        offer(AGGREGATE, station, avgTempCelsius, avgHum, count);
+    }
+
+    /**
+     * Queue an aggregate whose quantiles are to be exported; never blocks. The
+     * sketches are read on the drain thread, only for a station's last aggregate
+     * in a batch, so the aggregate must not be modified afterwards.
+     */
+    public void recordAggregateQuantiles(StationStats stats) {
+        offer(QUANTILES, stats.getStation(), 0, 0, 0, stats);
+    }
+
+    private void offer(int kind, String station, double temperature, double humidity, long count) {
+        offer(kind, station, temperature, humidity, count, null);
+    }
+
+    private void offer(int kind, String station, double temperature, double humidity, long count,
+            StationStats aggregate) {
+        long position = enqueuePosition.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    kinds[index] = kind;
+                    stations[index] = station;
+                    temperatures[index] = temperature;
+                    humidities[index] = humidity;
+                    counts[index] = count;
+                    aggregates[index] = aggregate;
+                    // Publishes the slot fields to the drain thread
+                    sequences.lazySet(index, position + 1);
+                    return;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                PrometheusMetricsServer.metricsDropped.inc();
+                return;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error applying metrics batch", e);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Apply up to one buffer's worth of events, folded per station
+     *
+     * @return number of events applied
+     */
+    int drain() {
+        Map<String, StationBatch> batches = null;
+        int drained = 0;
+        while (drained <= mask) {
+            int index = (int) dequeuePosition & mask;
+            if (sequences.get(index) != dequeuePosition + 1) {
+                break;
+            }
+            String station = stations[index];
+            if (batches == null) {
+                batches = new HashMap<>();
+            }
+            StationBatch batch = batches.computeIfAbsent(station, key -> new StationBatch());
+            if (kinds[index] == READING) {
+                batch.addReading(temperatures[index], humidities[index],
+                        recorder.isHighTemperature(temperatures[index]));
+                if (++readingsSinceSample >= histogramSampleEvery) {
+                    readingsSinceSample = 0;
+                    recorder.observeDistribution(station, temperatures[index], humidities[index]);
+                }
+            } else if (kinds[index] == AGGREGATE) {
+                batch.setAggregate(temperatures[index], humidities[index], counts[index]);
+            } else {
+                batch.quantileSource = aggregates[index];
+                aggregates[index] = null;
+            }
+            stations[index] = null;
+            sequences.lazySet(index, dequeuePosition + mask + 1);
+            dequeuePosition++;
+            drained++;
+        }
+
+        if (batches != null) {
+            for (Map.Entry<String, StationBatch> entry : batches.entrySet()) {
+                entry.getValue().applyTo(recorder, entry.getKey());
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Updates of one station within a drained batch
+     */
+    private static final class StationBatch {
+        long readings;
+        long highTemperatureReadings;
+        double lastTemperature;
+        double lastHumidity;
+        boolean hasAggregate;
+        double avgTemperature;
+        double avgHumidity;
+        long count;
+        StationStats quantileSource; // latest aggregate to export quantiles of, if any
+
+        void addReading(double temperatureCelsius, double humidity, boolean high) {
+            readings++;
+            if (high) {
+                highTemperatureReadings++;
+            }
+            lastTemperature = temperatureCelsius;
+            lastHumidity = humidity;
+        }
+
+        void setAggregate(double avgTempCelsius, double avgHum, long aggregationCount) {
+            hasAggregate = true;
+            avgTemperature = avgTempCelsius;
+            avgHumidity = avgHum;
+            count = aggregationCount;
+        }
+
+        void applyTo(StationMetricsRecorder recorder, String station) {
+            if (readings > 0) {
+                recorder.recordReadings(station, readings, highTemperatureReadings, lastTemperature, lastHumidity);
+            }
+            if (hasAggregate) {
+                recorder.recordAggregatedStats(station, avgTemperature, avgHumidity, count);
+            }
+            if (quantileSource != null) {
+                recorder.recordAggregateQuantiles(station, quantileSource);
+            }
+        }
+    }
+}
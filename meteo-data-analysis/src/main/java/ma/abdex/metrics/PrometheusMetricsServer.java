@@ -1,5 +1,8 @@
 package ma.abdex.metrics;
 
+import com.sun.net.httpserver.HttpServer;
+import ma.abdex.config.AppConfig;
+import ma.abdex.model.StationStats;
 import io.prometheus.client.Counter;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
@@ -8,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 
 /**
  * Prometheus server that exposes weather metrics
@@ -17,6 +21,7 @@ public class PrometheusMetricsServer {
     private static final Logger logger = LoggerFactory.getLogger(PrometheusMetricsServer.class);
 
     private HTTPServer server;
+    private HttpServer httpServer;
     private final int port;
 
     // Prometheus Metrics
@@ -31,7 +36,7 @@ public class PrometheusMetricsServer {
     // Counter: Number of high temperatures detected (> 30°C)
     public static final Counter highTemperatureDetected = Counter.build()
             .name("weather_high_temperature_detected_total")
-            .help("Number of high temperatures detected (> 30°C)")
+            .help("Number of readings above the temperature threshold (weather.temperature.threshold)")
             .labelNames("station")
             .register();
 
@@ -70,6 +75,20 @@ public class PrometheusMetricsServer {
             .labelNames("station")
             .register();
 
+    // Gauge: Aggregated temperature quantiles (p50, p95, p99) per station, from the aggregate's sketch
+    public static final Gauge temperatureQuantileCelsius = Gauge.build()
+            .name("weather_temperature_quantile_celsius")
+            .help("Aggregated temperature quantiles in Celsius, from the station's quantile sketch")
+            .labelNames("station", "quantile")
+            .register();
+
+    // Gauge: Aggregated humidity quantiles (p50, p95, p99) per station, from the aggregate's sketch
+    public static final Gauge humidityQuantile = Gauge.build()
+            .name("weather_humidity_quantile_percent")
+            .help("Aggregated humidity quantiles in percentage, from the station's quantile sketch")
+            .labelNames("station", "quantile")
+            .register();
+
     // Histogram: Temperature distribution
     public static final Histogram temperatureDistribution = Histogram.build()
             .name("weather_temperature_distribution_celsius")
@@ -86,6 +105,21 @@ public class PrometheusMetricsServer {
             .labelNames("station")
             .register();
 
+    // Counter: Readings flagged by the anomaly detector, per metric (temperature, humidity)
+    public static final Counter anomaliesDetected = Counter.build()
+            .name("weather_anomalies_detected_total")
+            .help("Readings deviating from their station's baseline by more than the z-score threshold")
+            .labelNames("metric")
+            .register();
+
+    // Counter: All-time aggregate updates by outcome (received, below_min_change, emitted)
+    public static final Counter aggregateUpdates = Counter.build()
+            .name("weather_aggregate_updates_total")
+            .help("All-time aggregate updates reaching the output (received), dropped for changing too little "
+                    + "(below_min_change) and written to the output topic (emitted)")
+            .labelNames("outcome")
+            .register();
+
     // Counter: Messages produits dans Kafka
     public static final Counter kafkaMessagesProduced = Counter.build()
             .name("kafka_messages_produced_total")
@@ -100,6 +134,65 @@ public class PrometheusMetricsServer {
             .labelNames("topic")
             .register();
 
+    // Counter: Readings arriving after the allowed event-time lateness
+    public static final Counter lateArrivals = Counter.build()
+            .name("weather_late_arrivals_total")
+            .help("Number of readings arriving after the allowed lateness")
+            .labelNames("action")
+            .register();
+
+    // Histogram: Time from producer send to each stage of the topology
+    public static final Histogram endToEndLatency = Histogram.build()
+            .name("weather_end_to_end_latency_seconds")
+            .help("Time from producer send to the stage (parse, repartition, aggregate, output)")
+            .buckets(0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60)
+            .labelNames("stage")
+            .register();
+
+    // Counter: Readings whose record key does not match their station (key grouping mode)
+    public static final Counter keyMismatches = Counter.build()
+            .name("weather_key_mismatch_total")
+            .help("Number of readings whose record key does not match their station")
+            .register();
+
+    // Counter: Readings dropped because the registration buffer was full
+    public static final Counter registrationBufferDrops = Counter.build()
+            .name("weather_registration_buffer_dropped_total")
+            .help("Readings of stations without an ID dropped because the registration buffer was full")
+            .register();
+
+    // Counter: Per-station updates folded into the overflow series because of the station cap
+    public static final Counter metricsStationOverflow = Counter.build()
+            .name("weather_metrics_station_overflow_total")
+            .help("Per-station metric updates recorded under the overflow station")
+            .register();
+
+    // Counter: Per-station updates dropped because the async metrics buffer was full
+    public static final Counter metricsDropped = Counter.build()
+            .name("weather_metrics_dropped_total")
+            .help("Per-station metric updates dropped because the async metrics buffer was full")
+            .register();
+
+    // Counter: Input records rejected by parsing or validation, or failing deserialization
+    public static final Counter parseErrors = Counter.build()
+            .name("weather_parse_errors_total")
+            .help("Records rejected by parsing or validation, or failing deserialization, by reason")
+            .labelNames("reason")
+            .register();
+
+    // Counter: Hot-path log events by outcome (written, suppressed, sampled_out, dropped)
+    public static final Counter logEvents = Counter.build()
+            .name("weather_log_events_total")
+            .help("Hot-path log events by outcome (written, suppressed, sampled_out, dropped)")
+            .labelNames("outcome")
+            .register();
+
+    // Cached per-station children, bounded by prometheus.stations.max
+    private static final StationMetricsRecorder stationRecorder = createStationRecorder();
+
+    // Buffers per-station updates for a drain thread; null when prometheus.async.enabled=false
+    private static final AsyncMetricsPipeline asyncPipeline = createAsyncPipeline();
+
     public PrometheusMetricsServer(int port) {
         this.port = port;
     }
@@ -108,14 +201,28 @@ public class PrometheusMetricsServer {
      * Start the HTTP server to expose metrics
      */
     public void start() throws IOException {
-        server = new HTTPServer(port);
+        httpServer = HttpServer.create(new InetSocketAddress(port), 3);
+        server = new HTTPServer.Builder()
+                .withHttpServer(httpServer)
+                .build();
         logger.info("Prometheus metrics server started on port {} (endpoint: http://localhost:{}/metrics)", port, port);
     }
 
+    /**
+     * The underlying HTTP server, so other endpoints can be served on the metrics port
+     * (null until started)
+     */
+    public HttpServer getHttpServer() {
+        return httpServer;
+    }
+
     /**
      * Stop the HTTP server
      */
     public void stop() {
+        if (asyncPipeline != null) {
+            asyncPipeline.stop();
+        }
         if (server != null) {
             try {
                 server.close();
@@ -126,34 +233,58 @@ public class PrometheusMetricsServer {
         }
     }
 
+    private static StationMetricsRecorder createStationRecorder() {
+        AppConfig config = AppConfig.getInstance();
+        StationMetricsRecorder recorder = new StationMetricsRecorder(config.getPrometheusMaxStations(),
+                config.getPrometheusStationIdleTimeoutSeconds() * 1000L, config.getTemperatureThreshold());
+        recorder.startEviction();
+        return recorder;
+    }
+
+    private static AsyncMetricsPipeline createAsyncPipeline() {
+        AppConfig config = AppConfig.getInstance();
+        if (!config.isPrometheusAsyncEnabled()) {
+            return null;
+        }
+        AsyncMetricsPipeline pipeline = new AsyncMetricsPipeline(stationRecorder,
+                config.getPrometheusAsyncBufferSize(), config.getPrometheusHistogramSampleEvery());
+        pipeline.start();
+        return pipeline;
+    }
+
     /**
      * Record new weather data
      */
     public static void recordWeatherData(String station, double temperatureCelsius, double humidity) {
-        // Increment counter
-        weatherDataReceived.labels(station).inc();
-
-        // Update gauges
-        currentTemperatureCelsius.labels(station).set(temperatureCelsius);
-        currentHumidity.labels(station).set(humidity);
-
-        // Record in histograms
-        temperatureDistribution.labels(station).observe(temperatureCelsius);
-        humidityDistribution.labels(station).observe(humidity);
-
-        // If high temperature
-        if (temperatureCelsius > 30.0) {
-            highTemperatureDetected.labels(station).inc();
+        if (asyncPipeline != null) {
+            asyncPipeline.recordWeatherData(station, temperatureCelsius, humidity);
+        } else {
+            stationRecorder.recordWeatherData(station, temperatureCelsius, humidity);
         }
     }
 
     /**
      * Record aggregated statistics
      */
-    public static void recordAggregatedStats(String station, double avgTempCelsius, double avgHum, int count) {
-        avgTemperatureCelsius.labels(station).set(avgTempCelsius);
-        avgHumidity.labels(station).set(avgHum);
-        aggregationCount.labels(station).set(count);
+    public static void recordAggregatedStats(String station, double avgTempCelsius, double avgHum, long count) {
+        if (asyncPipeline != null) {
+            asyncPipeline.recordAggregatedStats(station, avgTempCelsius, avgHum, count);
+        } else {
+            stationRecorder.recordAggregatedStats(station, avgTempCelsius, avgHum, count);
+        }
+    }
+
+    /**
+     * Record the temperature and humidity quantiles of a station's aggregate. With the
+     * async pipeline the sketches are read on its drain thread, so the aggregate must not
+     * be modified afterwards: aggregates leaving the store are freshly deserialized ones.
+     */
+    public static void recordAggregateQuantiles(StationStats stats) {
+        if (asyncPipeline != null) {
+            asyncPipeline.recordAggregateQuantiles(stats);
+        } else {
+            stationRecorder.recordAggregateQuantiles(stats.getStation(), stats);
+        }
     }
 
     /**
@@ -163,6 +294,59 @@ public class PrometheusMetricsServer {
         kafkaMessagesProduced.labels(topic, station).inc();
     }
 
+    /**
+     * Record a late reading and what was done with it (dropped, side_output)
+     */
+    public static void recordLateArrival(String action) {
+        lateArrivals.labels(action).inc();
+    }
+
+    /**
+     * Record the time since a reading was sent, as seen at a topology stage.
+     * Readings without a known send time (0) are ignored.
+     */
+    public static void recordEndToEndLatency(String stage, long sentAtMillis) {
+        if (sentAtMillis > 0) {
+            long elapsedMs = Math.max(0, System.currentTimeMillis() - sentAtMillis);
+            endToEndLatency.labels(stage).observe(elapsedMs / 1000.0);
+        }
+    }
+
+    /**
+     * Record an anomalous reading of a metric
+     */
+    public static void recordAnomaly(String metric) {
+        anomaliesDetected.labels(metric).inc();
+    }
+
+    /**
+     * Count an all-time aggregate update under its outcome
+     */
+    public static void recordAggregateUpdate(String outcome) {
+        aggregateUpdates.labels(outcome).inc();
+    }
+
+    /**
+     * Record a reading keyed under a different (or no) station
+     */
+    public static void recordKeyMismatch() {
+        keyMismatches.inc();
+    }
+
+    /**
+     * Record a reading dropped because the registration buffer was full
+     */
+    public static void recordRegistrationBufferDrop() {
+        registrationBufferDrops.inc();
+    }
+
+    /**
+     * Count a rejected input record under its reason
+     */
+    public static void recordParseError(String reason) {
+        parseErrors.labels(reason).inc();
+    }
+
     /**
      * Record a Kafka message consumed
      */
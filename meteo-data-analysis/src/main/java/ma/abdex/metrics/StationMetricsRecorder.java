@@ -0,0 +1,328 @@
+package ma.abdex.metrics;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import ma.abdex.model.Metric;
+import ma.abdex.model.StationStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records per-station metrics through cached label children.
+ *
+ * Resolving {@code collector.labels(station)} costs a map lookup and a varargs
+ * array per collector; here the children of a station are resolved once and
+ * kept in a {@link StationHandles}, so recording is one map lookup plus field
+ * accesses. At most {@code maxStations} stations get their own series; readings
+ * of further stations are recorded under {@link #OVERFLOW_STATION}. Stations not
+ * updated for the idle timeout are evicted together with their series.
+ */
+public class StationMetricsRecorder {
+    private static final Logger logger = LoggerFactory.getLogger(StationMetricsRecorder.class);
+
+    /** Label of the shared series for stations beyond the cap (not a valid station name) */
+    public static final String OVERFLOW_STATION = "(other)";
+
+    /** Quantiles exported from station aggregates */
+    public static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.95", "0.99" };
+
+    private final ConcurrentHashMap<String, StationHandles> stations = new ConcurrentHashMap<>();
+    private final StationHandles overflow = new StationHandles(OVERFLOW_STATION);
+    private final int maxStations;
+    private final long idleTimeoutMs;
+    private final double highTemperatureCelsius;
+    private volatile long clockMillis = System.currentTimeMillis();
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * @param maxStations   number of stations with their own series
+     * @param idleTimeoutMs evict stations not updated for this long; 0 disables eviction
+     * @param highTemperatureCelsius readings above this count as high temperatures
+     */
+    public StationMetricsRecorder(int maxStations, long idleTimeoutMs, double highTemperatureCelsius) {
+        this.maxStations = maxStations;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.highTemperatureCelsius = highTemperatureCelsius;
+    }
+
+    /**
+     * Start evicting idle stations in the background (no-op when eviction is disabled)
+     */
+    public synchronized void startEviction() {
+        if (idleTimeoutMs <= 0 || sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "station-metrics-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMs = Math.max(1000, idleTimeoutMs / 10);
+        sweeper.scheduleAtFixedRate(() -> evictIdle(System.currentTimeMillis()),
+                periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Record a raw reading
+     */
+    public void recordWeatherData(String station, double temperatureCelsius, double humidity) {
+        StationHandles handles = handles(station);
+        handles.lastUpdated = clockMillis;
+        handles.readings().record(temperatureCelsius, humidity, isHighTemperature(temperatureCelsius));
+    }
+
+    boolean isHighTemperature(double temperatureCelsius) {
+        return temperatureCelsius > highTemperatureCelsius;
+    }
+
+    /**
+     * Record a batch of readings of one station: counters advance by the batch
+     * size and the gauges take the last reading. Distributions are recorded
+     * separately through {@link #observeDistribution}, so they can be sampled.
+     */
+    public void recordReadings(String station, long readings, long highTemperatureReadings,
+            double lastTemperatureCelsius, double lastHumidity) {
+        StationHandles handles = handles(station);
+        handles.lastUpdated = clockMillis;
+        handles.readings().recordBatch(readings, highTemperatureReadings, lastTemperatureCelsius, lastHumidity);
+    }
+
+    /**
+     * Add one reading to the temperature and humidity distributions of a station
+     */
+    public void observeDistribution(String station, double temperatureCelsius, double humidity) {
+        handles(station).readings().observe(temperatureCelsius, humidity);
+    }
+
+    /**
+     * Record the current aggregate of a station
+     */
+    public void recordAggregatedStats(String station, double avgTempCelsius, double avgHum, long count) {
+        StationHandles handles = handles(station);
+        handles.lastUpdated = clockMillis;
+        handles.aggregates().record(avgTempCelsius, avgHum, count);
+    }
+
+    /**
+     * Record the {@link #QUANTILES} of the current aggregate of a station. The
+     * aggregate must not change meanwhile; it is read from the calling thread.
+     */
+    public void recordAggregateQuantiles(String station, StationStats stats) {
+        StationHandles handles = handles(station);
+        handles.lastUpdated = clockMillis;
+        handles.quantiles().record(stats);
+    }
+
+    /**
+     * Number of stations currently holding their own series
+     */
+    public int size() {
+        return stations.size();
+    }
+
+    private StationHandles handles(String station) {
+        StationHandles handles = stations.get(station);
+        if (handles != null) {
+            return handles;
+        }
+        if (stations.size() >= maxStations) {
+            PrometheusMetricsServer.metricsStationOverflow.inc();
+            return overflow;
+        }
+        return stations.computeIfAbsent(station, StationHandles::new);
+    }
+
+    /**
+     * Drop stations not updated since {@code now - idleTimeout} and remove their series
+     */
+    void evictIdle(long now) {
+        clockMillis = now;
+        long cutoff = now - idleTimeoutMs;
+        int evicted = 0;
+        for (Iterator<Map.Entry<String, StationHandles>> it = stations.entrySet().iterator(); it.hasNext(); ) {
+            StationHandles handles = it.next().getValue();
+            if (handles.lastUpdated < cutoff) {
+                it.remove();
+                handles.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("Evicted metrics of {} idle stations", evicted);
+        }
+    }
+
+    /**
+     * Cached label children of one station. Readings and aggregates are resolved
+     * separately so a producer-only process does not export empty aggregate series.
+     * An update racing with eviction may land on a removed child and be lost,
+     * which only affects stations that were idle.
+     */
+    private static final class StationHandles {
+        final String station;
+        volatile long lastUpdated;
+        private volatile ReadingHandles readings;
+        private volatile AggregateHandles aggregates;
+        private volatile QuantileHandles quantiles;
+
+        StationHandles(String station) {
+            this.station = station;
+            this.lastUpdated = System.currentTimeMillis();
+        }
+
+        ReadingHandles readings() {
+            ReadingHandles current = readings;
+            if (current == null) {
+                synchronized (this) {
+                    if (readings == null) {
+                        readings = new ReadingHandles(station);
+                    }
+                    current = readings;
+                }
+            }
+            return current;
+        }
+
+        AggregateHandles aggregates() {
+            AggregateHandles current = aggregates;
+            if (current == null) {
+                synchronized (this) {
+                    if (aggregates == null) {
+                        aggregates = new AggregateHandles(station);
+                    }
+                    current = aggregates;
+                }
+            }
+            return current;
+        }
+
+        QuantileHandles quantiles() {
+            QuantileHandles current = quantiles;
+            if (current == null) {
+                synchronized (this) {
+                    if (quantiles == null) {
+                        quantiles = new QuantileHandles(station);
+                    }
+                    current = quantiles;
+                }
+            }
+            return current;
+        }
+
+        synchronized void remove() {
+            if (readings != null) {
+                PrometheusMetricsServer.weatherDataReceived.remove(station);
+                PrometheusMetricsServer.highTemperatureDetected.remove(station);
+                PrometheusMetricsServer.currentTemperatureCelsius.remove(station);
+                PrometheusMetricsServer.currentHumidity.remove(station);
+                PrometheusMetricsServer.temperatureDistribution.remove(station);
+                PrometheusMetricsServer.humidityDistribution.remove(station);
+            }
+            if (aggregates != null) {
+                PrometheusMetricsServer.avgTemperatureCelsius.remove(station);
+                PrometheusMetricsServer.avgHumidity.remove(station);
+                PrometheusMetricsServer.aggregationCount.remove(station);
+            }
+            if (quantiles != null) {
+                for (String quantile : QUANTILE_LABELS) {
+                    PrometheusMetricsServer.temperatureQuantileCelsius.remove(station, quantile);
+                    PrometheusMetricsServer.humidityQuantile.remove(station, quantile);
+                }
+            }
+        }
+    }
+
+    private static final class ReadingHandles {
+        final Counter.Child received;
+        final Counter.Child highTemperature;
+        final Gauge.Child currentTemperature;
+        final Gauge.Child currentHumidity;
+        final Histogram.Child temperatureDistribution;
+        final Histogram.Child humidityDistribution;
+
+        ReadingHandles(String station) {
+            received = PrometheusMetricsServer.weatherDataReceived.labels(station);
+            highTemperature = PrometheusMetricsServer.highTemperatureDetected.labels(station);
+            currentTemperature = PrometheusMetricsServer.currentTemperatureCelsius.labels(station);
+            currentHumidity = PrometheusMetricsServer.currentHumidity.labels(station);
+            temperatureDistribution = PrometheusMetricsServer.temperatureDistribution.labels(station);
+            humidityDistribution = PrometheusMetricsServer.humidityDistribution.labels(station);
+        }
+
+        void record(double temperatureCelsius, double humidity, boolean high) {
+            received.inc();
+            currentTemperature.set(temperatureCelsius);
+            currentHumidity.set(humidity);
+            observe(temperatureCelsius, humidity);
+            if (high) {
+                highTemperature.inc();
+            }
+        }
+
+        void recordBatch(long readings, long highTemperatureReadings, double lastTemperature, double lastHumidity) {
+            received.inc(readings);
+            if (highTemperatureReadings > 0) {
+                highTemperature.inc(highTemperatureReadings);
+            }
+            currentTemperature.set(lastTemperature);
+            currentHumidity.set(lastHumidity);
+        }
+
+        void observe(double temperatureCelsius, double humidity) {
+            temperatureDistribution.observe(temperatureCelsius);
+            humidityDistribution.observe(humidity);
+        }
+    }
+
+    private static final class AggregateHandles {
+        final Gauge.Child avgTemperature;
+        final Gauge.Child avgHumidity;
+        final Gauge.Child count;
+
+        AggregateHandles(String station) {
+            avgTemperature = PrometheusMetricsServer.avgTemperatureCelsius.labels(station);
+            avgHumidity = PrometheusMetricsServer.avgHumidity.labels(station);
+            count = PrometheusMetricsServer.aggregationCount.labels(station);
+        }
+
+        void record(double avgTempCelsius, double avgHum, long aggregationCount) {
+            avgTemperature.set(avgTempCelsius);
+            avgHumidity.set(avgHum);
+            count.set(aggregationCount);
+        }
+    }
+
+    private static final class QuantileHandles {
+        final Gauge.Child[] temperature = new Gauge.Child[QUANTILES.length];
+        final Gauge.Child[] humidity = new Gauge.Child[QUANTILES.length];
+        // Scratch for the computed quantiles, guarded by this
+        private final double[] values = new double[QUANTILES.length];
+
+        QuantileHandles(String station) {
+            for (int i = 0; i < QUANTILES.length; i++) {
+                temperature[i] = PrometheusMetricsServer.temperatureQuantileCelsius.labels(station, QUANTILE_LABELS[i]);
+                humidity[i] = PrometheusMetricsServer.humidityQuantile.labels(station, QUANTILE_LABELS[i]);
+            }
+        }
+
+        synchronized void record(StationStats stats) {
+            stats.quantiles(Metric.TEMPERATURE, QUANTILES, values);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                temperature[i].set(values[i]);
+            }
+            stats.quantiles(Metric.HUMIDITY, QUANTILES, values);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                humidity[i].set(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ma.abdex.model;
+
+/**
+ * Exponentially weighted mean and variance of a single measured quantity.
+ *
+ * Each update moves the mean a fraction alpha towards the new value, so the
+ * baseline follows slow drifts (seasons, time of day) while a sudden jump
+ * still stands out. State is three numbers whatever the number of readings.
+ */
+public class EwmaStats {
+    private long count;
+    private double mean;
+    private double variance;
+
+    public EwmaStats() {
+    }
+
+    public EwmaStats(long count, double mean, double variance) {
+        this.count = count;
+        this.mean = mean;
+        this.variance = variance;
+    }
+
+    /**
+     * Fold a value into the baseline. The first value seeds the mean.
+     */
+    public void update(double value, double alpha) {
+        if (count == 0) {
+            mean = value;
+            variance = 0.0;
+        } else {
+            double diff = value - mean;
+            double increment = alpha * diff;
+            mean += increment;
+            variance = (1 - alpha) * (variance + diff * increment);
+        }
+        count++;
+    }
+
+    /**
+     * Standard deviations between a value and the current mean, 0 while the
+     * baseline has no spread yet
+     */
+    public double zScore(double value) {
+        double stdDev = stdDev();
+        return stdDev == 0.0 ? 0.0 : (value - mean) / stdDev;
+    }
+
+    public double stdDev() {
+        return Math.sqrt(variance);
+    }
+
+    // Getters (raw state, used by the serdes)
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getVariance() {
+        return variance;
+    }
+}
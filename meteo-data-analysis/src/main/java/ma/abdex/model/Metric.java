@@ -0,0 +1,112 @@
+package ma.abdex.model;
+
+/**
+ * Quantities a weather reading can carry.
+ *
+ * Temperature and humidity are reported by every sensor; the other metrics are
+ * optional and often sparse. A metric's ordinal is its bit in the presence
+ * bitmap of a reading and its slot in the per-metric arrays of readings and
+ * aggregates, so new metrics must only ever be appended.
+ */
+public enum Metric {
+    /** Degrees Celsius */
+    TEMPERATURE("temperature", "°C", -100, 100, true),
+    /** Relative humidity in percent */
+    HUMIDITY("humidity", "%", 0, 100, true),
+    /** Atmospheric pressure in hPa */
+    PRESSURE("pressure", " hPa", 800, 1100, false),
+    /** Wind speed in m/s */
+    WIND_SPEED("windSpeed", " m/s", 0, 120, false),
+    /** Direction the wind blows from, in degrees clockwise from north */
+    WIND_DIRECTION("windDirection", "°", 0, 360, false),
+    /** Precipitation since the previous reading, in mm */
+    PRECIPITATION("precipitation", " mm", 0, 500, false);
+
+    private static final Metric[] VALUES = values();
+
+    /** Number of metrics, the size of per-metric arrays */
+    public static final int COUNT = VALUES.length;
+    /** Bits of the metrics every reading must carry */
+    public static final int REQUIRED = TEMPERATURE.bit() | HUMIDITY.bit();
+    /** Bits of all known metrics */
+    public static final int ALL = (1 << COUNT) - 1;
+
+    private final String key;
+    private final String label;
+    private final String unit;
+    private final double min;
+    private final double max;
+    private final boolean required;
+
+    Metric(String key, String unit, double min, double max, boolean required) {
+        this.key = key;
+        this.label = Character.toUpperCase(key.charAt(0)) + key.substring(1);
+        this.unit = unit;
+        this.min = min;
+        this.max = max;
+        this.required = required;
+    }
+
+    /**
+     * Metric with the given ordinal, as found in a presence bitmap
+     */
+    public static Metric of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Metric named by a CSV tag or JSON property, or null if unknown
+     */
+    public static Metric fromKey(String key) {
+        for (Metric metric : VALUES) {
+            if (metric.key.equals(key)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Name in CSV tags and JSON properties, e.g. {@code windSpeed}
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Capitalized key, for composed JSON names such as {@code avgWindSpeed}
+     */
+    public String label() {
+        return label;
+    }
+
+    /**
+     * Unit suffix for display, including any separating space
+     */
+    public String unit() {
+        return unit;
+    }
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    /**
+     * Whether the value lies in the metric's valid range (false for NaN)
+     */
+    public boolean inRange(double value) {
+        return value >= min && value <= max;
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+}
@@ -0,0 +1,168 @@
+package ma.abdex.model;
+
+/**
+ * Mergeable running statistics for a single measured quantity.
+ *
+ * Keeps count, min, max and Kahan-compensated sums of values and squared values,
+ * so mean and variance stay accurate over long runs without storing readings.
+ * Two accumulators can be merged in any order, e.g. across partitions or windows.
+ */
+public class MetricAccumulator {
+    private long count;
+    private double sum;
+    private double sumCompensation;
+    private double sumOfSquares;
+    private double sumOfSquaresCompensation;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public MetricAccumulator() {
+    }
+
+    /**
+     * Seed an accumulator from a previously computed mean, for records that
+     * only carried averages. Min and max are unknown and start over; the
+     * variance of the seeded part is taken as zero.
+     */
+    public static MetricAccumulator fromMean(double mean, long count) {
+        MetricAccumulator accumulator = new MetricAccumulator();
+        if (count > 0) {
+            accumulator.count = count;
+            accumulator.sum = mean * count;
+            accumulator.sumOfSquares = mean * mean * count;
+        }
+        return accumulator;
+    }
+
+    /**
+     * Add a single value
+     */
+    public void add(double value) {
+        count++;
+        addToSum(value);
+        addToSumOfSquares(value * value);
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Fold another accumulator into this one
+     */
+    public void merge(MetricAccumulator other) {
+        if (other.count == 0) {
+            return;
+        }
+        count += other.count;
+        addToSum(other.sum);
+        addToSum(other.sumCompensation);
+        addToSumOfSquares(other.sumOfSquares);
+        addToSumOfSquares(other.sumOfSquaresCompensation);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Neumaier variant of Kahan summation: also exact when the addend is larger than the running sum
+    private void addToSum(double value) {
+        double t = sum + value;
+        if (Math.abs(sum) >= Math.abs(value)) {
+            sumCompensation += (sum - t) + value;
+        } else {
+            sumCompensation += (value - t) + sum;
+        }
+        sum = t;
+    }
+
+    private void addToSumOfSquares(double value) {
+        double t = sumOfSquares + value;
+        if (Math.abs(sumOfSquares) >= Math.abs(value)) {
+            sumOfSquaresCompensation += (sumOfSquares - t) + value;
+        } else {
+            sumOfSquaresCompensation += (value - t) + sumOfSquares;
+        }
+        sumOfSquares = t;
+    }
+
+    /**
+     * Mean of all values, 0 when empty
+     */
+    public double mean() {
+        return count == 0 ? 0.0 : (sum + sumCompensation) / count;
+    }
+
+    /**
+     * Population variance of all values, 0 when empty
+     */
+    public double variance() {
+        if (count == 0) {
+            return 0.0;
+        }
+        double mean = mean();
+        double variance = (sumOfSquares + sumOfSquaresCompensation) / count - mean * mean;
+        return Math.max(variance, 0.0);
+    }
+
+    public double stdDev() {
+        return Math.sqrt(variance());
+    }
+
+    // Getters and Setters (raw state, used by the serdes)
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public void setSum(double sum) {
+        this.sum = sum;
+    }
+
+    public double getSumCompensation() {
+        return sumCompensation;
+    }
+
+    public void setSumCompensation(double sumCompensation) {
+        this.sumCompensation = sumCompensation;
+    }
+
+    public double getSumOfSquares() {
+        return sumOfSquares;
+    }
+
+    public void setSumOfSquares(double sumOfSquares) {
+        this.sumOfSquares = sumOfSquares;
+    }
+
+    public double getSumOfSquaresCompensation() {
+        return sumOfSquaresCompensation;
+    }
+
+    public void setSumOfSquaresCompensation(double sumOfSquaresCompensation) {
+        this.sumOfSquaresCompensation = sumOfSquaresCompensation;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public void setMin(double min) {
+        this.min = min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public void setMax(double max) {
+        this.max = max;
+    }
+}
@@ -0,0 +1,29 @@
+package ma.abdex.model;
+
+/**
+ * Why a weather-data record was rejected; the label is used in metrics and dead-letter headers
+ */
+public enum ParseError {
+    /** Missing fields or a field that is not a number */
+    MALFORMED("malformed"),
+    /** Empty, too long, or containing characters other than letters, digits, '_' and '-' */
+    INVALID_STATION("invalid_station"),
+    /** Temperature outside [-100, 100] */
+    TEMPERATURE_OUT_OF_RANGE("temperature_out_of_range"),
+    /** Humidity outside [0, 100] */
+    HUMIDITY_OUT_OF_RANGE("humidity_out_of_range"),
+    /** Pressure, wind or precipitation outside its valid range (see {@link Metric}) */
+    METRIC_OUT_OF_RANGE("metric_out_of_range"),
+    /** Measurement time not a number or more than a year from now */
+    INVALID_TIMESTAMP("invalid_timestamp");
+
+    private final String label;
+
+    ParseError(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,199 @@
+package ma.abdex.model;
+
+import ma.abdex.util.ValidationUtils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Outcome of parsing one weather-data record: the reading, or the reason it was
+ * rejected together with the original payload. Returned instead of throwing, so
+ * a flood of invalid records costs no exception construction or stack traces.
+ */
+public final class ParseResult {
+    private static final ParseResult[] FAILURES = new ParseResult[ParseError.values().length];
+
+    static {
+        for (ParseError error : ParseError.values()) {
+            FAILURES[error.ordinal()] = new ParseResult(null, error, null);
+        }
+    }
+
+    private final WeatherData value;
+    private final ParseError error;
+    private final byte[] payload;
+
+    private ParseResult(WeatherData value, ParseError error, byte[] payload) {
+        this.value = value;
+        this.error = error;
+        this.payload = payload;
+    }
+
+    public static ParseResult ok(WeatherData value) {
+        return new ParseResult(value, null, null);
+    }
+
+    /**
+     * Shared failure without payload (no allocation)
+     */
+    public static ParseResult failed(ParseError error) {
+        return FAILURES[error.ordinal()];
+    }
+
+    /**
+     * Failure carrying the original record value
+     */
+    public static ParseResult failed(ParseError error, byte[] payload) {
+        return new ParseResult(null, error, payload);
+    }
+
+    /**
+     * Parses station,temperature,humidity[,timestamp[,key=value...]] and reports why a
+     * line is rejected, without throwing; {@link WeatherData#fromCsv(String)} wraps it.
+     * Failures carry the line as payload.
+     */
+    public static ParseResult fromCsv(String csv) {
+        ParseResult result = parseCsv(csv);
+        return result.isOk() || csv == null ? result : result.withPayload(csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ParseResult parseCsv(String csv) {
+        if (csv == null) {
+            return failed(ParseError.MALFORMED);
+        }
+        int stationEnd = csv.indexOf(',');
+        int temperatureEnd = stationEnd < 0 ? -1 : csv.indexOf(',', stationEnd + 1);
+        if (temperatureEnd < 0) {
+            return failed(ParseError.MALFORMED);
+        }
+        int humidityEnd = csv.indexOf(',', temperatureEnd + 1);
+
+        String station = csv.substring(0, stationEnd).trim();
+        ParseError error = ValidationUtils.checkStation(station);
+        if (error != null) {
+            return failed(error);
+        }
+        double temperature = parseDouble(csv.substring(stationEnd + 1, temperatureEnd));
+        double humidity = parseDouble(humidityEnd < 0
+                ? csv.substring(temperatureEnd + 1)
+                : csv.substring(temperatureEnd + 1, humidityEnd));
+        if (Double.isNaN(temperature) || Double.isNaN(humidity)) {
+            return failed(ParseError.MALFORMED);
+        }
+        error = ValidationUtils.checkTemperature(temperature);
+        if (error == null) {
+            error = ValidationUtils.checkHumidity(humidity);
+        }
+        if (error != null) {
+            return failed(error);
+        }
+
+        if (humidityEnd < 0) {
+            return ok(new WeatherData(station, temperature, humidity));
+        }
+        int timestampEnd = csv.indexOf(',', humidityEnd + 1);
+        String field = (timestampEnd < 0 ? csv.substring(humidityEnd + 1)
+                : csv.substring(humidityEnd + 1, timestampEnd)).trim();
+        WeatherData data;
+        if (!field.isEmpty()) {
+            long timestamp = parseLong(field);
+            if (timestamp < 0 || ValidationUtils.checkTimestamp(timestamp) != null) {
+                return failed(ParseError.INVALID_TIMESTAMP);
+            }
+            data = new WeatherData(station, temperature, humidity, timestamp);
+        } else {
+            data = new WeatherData(station, temperature, humidity);
+        }
+
+        // Optional metrics as key=value tags; bare fields and unknown keys are ignored
+        for (int from = timestampEnd + 1; from > 0; ) {
+            int to = csv.indexOf(',', from);
+            String tag = to < 0 ? csv.substring(from) : csv.substring(from, to);
+            from = to + 1;
+            int separator = tag.indexOf('=');
+            Metric metric = separator < 0 ? null : Metric.fromKey(tag.substring(0, separator).trim());
+            if (metric == null || metric.isRequired()) {
+                continue;
+            }
+            double value = parseDouble(tag.substring(separator + 1));
+            if (Double.isNaN(value)) {
+                return failed(ParseError.MALFORMED);
+            }
+            error = ValidationUtils.checkMetric(metric, value);
+            if (error != null) {
+                return failed(error);
+            }
+            data.set(metric, value);
+        }
+        return ok(data);
+    }
+
+    private static double parseDouble(String field) {
+        String trimmed = field.trim();
+        if (trimmed.isEmpty()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(trimmed);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Non-negative decimal long, or -1
+     */
+    private static long parseLong(String field) {
+        if (field.length() > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    public boolean isOk() {
+        return error == null;
+    }
+
+    /**
+     * The parsed reading, or null if parsing failed
+     */
+    public WeatherData value() {
+        return value;
+    }
+
+    /**
+     * The rejection reason, or null if parsing succeeded
+     */
+    public ParseError error() {
+        return error;
+    }
+
+    /**
+     * The original record value of a failure, or null
+     */
+    public byte[] payload() {
+        return payload;
+    }
+
+    /**
+     * Same failure with the original record value attached
+     */
+    public ParseResult withPayload(byte[] payload) {
+        return isOk() ? this : new ParseResult(null, error, payload);
+    }
+
+    @Override
+    public String toString() {
+        if (isOk()) {
+            return String.valueOf(value);
+        }
+        return error.label() + (payload == null ? "" : ": " + new String(payload, StandardCharsets.UTF_8));
+    }
+}
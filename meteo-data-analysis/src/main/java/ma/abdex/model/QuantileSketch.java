@@ -0,0 +1,294 @@
+package ma.abdex.model;
+
+/**
+ * Mergeable quantile sketch with relative-error guarantees (DDSketch).
+ *
+ * Values are counted in logarithmically sized bins, so any quantile is known
+ * to within the relative accuracy of its true value without keeping readings.
+ * Positive and negative values have their own bins and values close to zero
+ * share one bin. Each side keeps at most {@code maxBins} bins; beyond that the
+ * bins closest to zero are folded together, which only degrades the quantiles
+ * of the smallest magnitudes. Sketches with the same accuracy merge exactly.
+ */
+public class QuantileSketch {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 256;
+
+    /** Magnitudes below this count as zero */
+    private static final double MIN_INDEXABLE = 1e-3;
+
+    private double relativeAccuracy;
+    private int maxBins;
+    private double gamma;
+    private double logGamma;
+    private long zeroCount;
+    private Bins positive = new Bins();
+    private Bins negative = new Bins();
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (maxBins <= 0) {
+            throw new IllegalArgumentException("Sketch bin limit must be positive: " + maxBins);
+        }
+        setRelativeAccuracy(relativeAccuracy);
+        this.maxBins = maxBins;
+    }
+
+    /**
+     * Add a single value
+     */
+    public void add(double value) {
+        if (value >= MIN_INDEXABLE) {
+            positive.add(index(value), 1, maxBins);
+        } else if (value <= -MIN_INDEXABLE) {
+            negative.add(index(-value), 1, maxBins);
+        } else {
+            zeroCount++;
+        }
+    }
+
+    /**
+     * Fold another sketch into this one
+     *
+     * @throws IllegalArgumentException when the sketches have different accuracies
+     */
+    public void merge(QuantileSketch other) {
+        if (other.count() == 0) {
+            return;
+        }
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches of relative accuracy "
+                    + relativeAccuracy + " and " + other.relativeAccuracy);
+        }
+        zeroCount += other.zeroCount;
+        positive.merge(other.positive, maxBins);
+        negative.merge(other.negative, maxBins);
+    }
+
+    /**
+     * Number of values added
+     */
+    public long count() {
+        return zeroCount + positive.total() + negative.total();
+    }
+
+    /**
+     * Value at quantile q (0 to 1) by nearest rank, 0 when empty
+     */
+    public double quantile(double q) {
+        long count = count();
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = rank(q, count);
+
+        // Most negative first: negative bins from the largest magnitude down
+        long seen = 0;
+        long[] counts = negative.counts;
+        for (int i = counts.length - 1; i >= 0; i--) {
+            seen += counts[i];
+            if (seen > rank) {
+                return -value(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0.0;
+        }
+        counts = positive.counts;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return value(positive.offset + i);
+            }
+        }
+        return value(positive.offset + counts.length - 1);
+    }
+
+    /**
+     * Values at several quantiles in one pass over the bins, same results as
+     * {@link #quantile(double)} for each
+     *
+     * @param qs  quantiles in ascending order
+     * @param out receives the value at qs[i] in out[i]
+     * @return false, leaving out untouched, when the sketch is empty
+     */
+    public boolean quantiles(double[] qs, double[] out) {
+        long count = count();
+        if (count == 0) {
+            return false;
+        }
+        int next = 0;
+        long rank = rank(qs[0], count);
+        long seen = 0;
+        long[] counts = negative.counts;
+        for (int i = counts.length - 1; i >= 0 && next < qs.length; i--) {
+            seen += counts[i];
+            while (next < qs.length && seen > rank) {
+                out[next] = -value(negative.offset + i);
+                rank = ++next < qs.length ? rank(qs[next], count) : 0;
+            }
+        }
+        seen += zeroCount;
+        while (next < qs.length && seen > rank) {
+            out[next] = 0.0;
+            rank = ++next < qs.length ? rank(qs[next], count) : 0;
+        }
+        counts = positive.counts;
+        for (int i = 0; i < counts.length && next < qs.length; i++) {
+            seen += counts[i];
+            while (next < qs.length && seen > rank) {
+                out[next] = value(positive.offset + i);
+                rank = ++next < qs.length ? rank(qs[next], count) : 0;
+            }
+        }
+        for (; next < qs.length; next++) {
+            out[next] = value(positive.offset + counts.length - 1);
+        }
+        return true;
+    }
+
+    private static long rank(double q, long count) {
+        return Math.max(0, (long) Math.ceil(Math.min(1.0, q) * count) - 1);
+    }
+
+    // Bin i holds magnitudes in (gamma^(i-1), gamma^i]
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // Midpoint of bin i in relative terms, within the relative accuracy of anything in the bin
+    private double value(int index) {
+        return Math.exp(index * logGamma) * 2 / (1 + gamma);
+    }
+
+    // Getters and Setters (raw state, used by the serdes)
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public void setRelativeAccuracy(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Sketch relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    public int getMaxBins() {
+        return maxBins;
+    }
+
+    public void setMaxBins(int maxBins) {
+        this.maxBins = maxBins;
+    }
+
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    public void setZeroCount(long zeroCount) {
+        this.zeroCount = zeroCount;
+    }
+
+    public Bins getPositive() {
+        return positive;
+    }
+
+    public void setPositive(Bins positive) {
+        this.positive = positive;
+    }
+
+    public Bins getNegative() {
+        return negative;
+    }
+
+    public void setNegative(Bins negative) {
+        this.negative = negative;
+    }
+
+    /**
+     * Counts of a contiguous range of bin indexes, starting at {@code offset}
+     */
+    public static final class Bins {
+        private static final long[] EMPTY = new long[0];
+
+        private int offset;
+        private long[] counts = EMPTY;
+
+        public Bins() {
+        }
+
+        public Bins(int offset, long[] counts) {
+            this.offset = offset;
+            this.counts = counts;
+        }
+
+        void add(int index, long count, int maxBins) {
+            if (counts.length == 0) {
+                offset = index;
+                counts = new long[1];
+            } else if (index < offset || index >= offset + counts.length) {
+                extend(Math.min(offset, index), Math.max(offset + counts.length, index + 1), maxBins);
+            }
+            counts[Math.max(index, offset) - offset] += count;
+        }
+
+        void merge(Bins other, int maxBins) {
+            if (other.counts.length == 0) {
+                return;
+            }
+            if (counts.length == 0) {
+                offset = other.offset;
+                counts = new long[Math.min(other.counts.length, maxBins)];
+            }
+            extend(Math.min(offset, other.offset),
+                    Math.max(offset + counts.length, other.offset + other.counts.length), maxBins);
+            for (int i = 0; i < other.counts.length; i++) {
+                counts[Math.max(other.offset + i, offset) - offset] += other.counts[i];
+            }
+        }
+
+        // Cover [low, high), folding the lowest bins together when that exceeds maxBins
+        private void extend(int low, int high, int maxBins) {
+            low = Math.max(low, high - maxBins);
+            if (low == offset && high == offset + counts.length) {
+                return;
+            }
+            long[] resized = new long[high - low];
+            for (int i = 0; i < counts.length; i++) {
+                resized[Math.max(offset + i, low) - low] += counts[i];
+            }
+            offset = low;
+            counts = resized;
+        }
+
+        long total() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public void setOffset(int offset) {
+            this.offset = offset;
+        }
+
+        public long[] getCounts() {
+            return counts;
+        }
+
+        public void setCounts(long[] counts) {
+            this.counts = counts;
+        }
+    }
+}
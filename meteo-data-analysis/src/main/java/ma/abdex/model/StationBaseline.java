@@ -0,0 +1,32 @@
+package ma.abdex.model;
+
+/**
+ * Per-station baseline the anomaly detector compares new readings against:
+ * the exponentially weighted temperature and humidity of the station
+ */
+public class StationBaseline {
+    private final EwmaStats temperature;
+    private final EwmaStats humidity;
+
+    public StationBaseline() {
+        this(new EwmaStats(), new EwmaStats());
+    }
+
+    public StationBaseline(EwmaStats temperature, EwmaStats humidity) {
+        this.temperature = temperature;
+        this.humidity = humidity;
+    }
+
+    public void update(WeatherData data, double alpha) {
+        temperature.update(data.getTemperature(), alpha);
+        humidity.update(data.getHumidity(), alpha);
+    }
+
+    public EwmaStats getTemperature() {
+        return temperature;
+    }
+
+    public EwmaStats getHumidity() {
+        return humidity;
+    }
+}
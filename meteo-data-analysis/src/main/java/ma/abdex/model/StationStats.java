@@ -1,22 +1,160 @@
 package ma.abdex.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
- * Model class representing aggregated statistics for a station
+ * Model class representing aggregated statistics for a station.
+ * Backed by one mergeable {@link MetricAccumulator} and {@link QuantileSketch}
+ * per measured quantity and updated in place as readings arrive. Temperature
+ * and humidity always have both; optional metrics get theirs with the first
+ * reading that carries them, so metrics a station never reports cost nothing.
  */
 public class StationStats {
     private String station;
-    private double avgTemperatureCelsius;
-    private double avgHumidity;
-    private int count;
+    private long count;
+    // By metric ordinal, null for optional metrics without readings
+    private final MetricAccumulator[] accumulators;
+    private final QuantileSketch[] sketches;
+    private long latestSentAt; // newest producer send time among the readings, 0 if unknown
 
     public StationStats() {
+        this("");
+    }
+
+    public StationStats(String station) {
+        this(station, 0, new MetricAccumulator(), new MetricAccumulator());
+    }
+
+    /**
+     * Build statistics from averages only, as carried by records written before
+     * the accumulators were introduced
+     */
+    public StationStats(String station, double avgTemperatureCelsius, double avgHumidity, long count) {
+        this(station, count, MetricAccumulator.fromMean(avgTemperatureCelsius, count),
+                MetricAccumulator.fromMean(avgHumidity, count));
+    }
+
+    /**
+     * Build statistics without quantile sketches, as carried by records written
+     * before they were introduced; quantiles then cover later readings only
+     */
+    public StationStats(String station, long count, MetricAccumulator temperature, MetricAccumulator humidity) {
+        this(station, count, temperature, humidity, new QuantileSketch(), new QuantileSketch());
     }
 
-    public StationStats(String station, double avgTemperatureCelsius, double avgHumidity, int count) {
+    public StationStats(String station, long count, MetricAccumulator temperature, MetricAccumulator humidity,
+            QuantileSketch temperatureSketch, QuantileSketch humiditySketch) {
+        this(station, count, new MetricAccumulator[Metric.COUNT], new QuantileSketch[Metric.COUNT]);
+        accumulators[Metric.TEMPERATURE.ordinal()] = temperature;
+        accumulators[Metric.HUMIDITY.ordinal()] = humidity;
+        sketches[Metric.TEMPERATURE.ordinal()] = temperatureSketch;
+        sketches[Metric.HUMIDITY.ordinal()] = humiditySketch;
+    }
+
+    /**
+     * Build statistics from per-metric arrays indexed by {@link Metric} ordinal,
+     * which are adopted rather than copied. Null slots are metrics without
+     * readings; temperature and humidity get empty accumulators and sketches.
+     */
+    public StationStats(String station, long count, MetricAccumulator[] accumulators, QuantileSketch[] sketches) {
+        if (accumulators.length != Metric.COUNT || sketches.length != Metric.COUNT) {
+            throw new IllegalArgumentException("Expected " + Metric.COUNT + " metric slots");
+        }
         this.station = station;
-        this.avgTemperatureCelsius = avgTemperatureCelsius;
-        this.avgHumidity = avgHumidity;
         this.count = count;
+        this.accumulators = accumulators;
+        this.sketches = sketches;
+        for (int i = 0; i < Metric.COUNT; i++) {
+            if (accumulators[i] == null && Metric.of(i).isRequired()) {
+                accumulators[i] = new MetricAccumulator();
+            }
+            if (accumulators[i] != null && sketches[i] == null) {
+                sketches[i] = new QuantileSketch();
+            }
+        }
+    }
+
+    @JsonCreator
+    static StationStats fromJson(@JsonProperty("station") String station,
+            @JsonProperty("count") long count,
+            @JsonProperty("temperature") MetricAccumulator temperature,
+            @JsonProperty("humidity") MetricAccumulator humidity,
+            @JsonProperty("temperatureSketch") QuantileSketch temperatureSketch,
+            @JsonProperty("humiditySketch") QuantileSketch humiditySketch,
+            @JsonProperty("avgTemperatureCelsius") double avgTemperatureCelsius,
+            @JsonProperty("avgHumidity") double avgHumidity,
+            @JsonProperty("latestSentAt") long latestSentAt,
+            @JsonProperty("metrics") Map<String, MetricAccumulator> metrics,
+            @JsonProperty("metricSketches") Map<String, QuantileSketch> metricSketches) {
+        StationStats stats;
+        if (temperature == null || humidity == null) {
+            // Legacy JSON: {station, avgTemperatureCelsius, avgHumidity, count}
+            stats = new StationStats(station, avgTemperatureCelsius, avgHumidity, count);
+        } else if (temperatureSketch == null || humiditySketch == null) {
+            stats = new StationStats(station, count, temperature, humidity);
+        } else {
+            stats = new StationStats(station, count, temperature, humidity, temperatureSketch, humiditySketch);
+        }
+        stats.latestSentAt = latestSentAt;
+        if (metrics != null) {
+            // Optional metrics unknown to this version are dropped
+            metrics.forEach((key, accumulator) -> {
+                Metric metric = Metric.fromKey(key);
+                if (metric != null && !metric.isRequired() && accumulator != null) {
+                    QuantileSketch sketch = metricSketches == null ? null : metricSketches.get(key);
+                    stats.accumulators[metric.ordinal()] = accumulator;
+                    stats.sketches[metric.ordinal()] = sketch == null ? new QuantileSketch() : sketch;
+                }
+            });
+        }
+        return stats;
+    }
+
+    /**
+     * Fold a single reading into the statistics, touching only the metrics it carries
+     */
+    public void add(WeatherData data) {
+        count++;
+        for (int bits = data.presentMetrics(); bits != 0; bits &= bits - 1) {
+            int i = Integer.numberOfTrailingZeros(bits);
+            if (accumulators[i] == null) {
+                accumulators[i] = new MetricAccumulator();
+                sketches[i] = new QuantileSketch();
+            }
+            double value = data.value(i);
+            accumulators[i].add(value);
+            sketches[i].add(value);
+        }
+        latestSentAt = Math.max(latestSentAt, data.getSentAt());
+    }
+
+    /**
+     * Fold statistics of the same station (another partition, window or session) into these
+     */
+    public void merge(StationStats other) {
+        if (station == null || station.isEmpty()) {
+            station = other.station;
+        }
+        count += other.count;
+        for (int i = 0; i < Metric.COUNT; i++) {
+            if (other.accumulators[i] == null) {
+                continue;
+            }
+            if (accumulators[i] == null) {
+                QuantileSketch sketch = other.sketches[i];
+                accumulators[i] = new MetricAccumulator();
+                sketches[i] = new QuantileSketch(sketch.getRelativeAccuracy(), sketch.getMaxBins());
+            }
+            accumulators[i].merge(other.accumulators[i]);
+            sketches[i].merge(other.sketches[i]);
+        }
+        latestSentAt = Math.max(latestSentAt, other.latestSentAt);
     }
 
     // Getters and Setters
@@ -28,38 +166,259 @@ public class StationStats {
         this.station = station;
     }
 
-    public double getAvgTemperatureCelsius() {
-        return avgTemperatureCelsius;
+    public long getCount() {
+        return count;
+    }
+
+    public MetricAccumulator getTemperature() {
+        return accumulators[Metric.TEMPERATURE.ordinal()];
+    }
+
+    public MetricAccumulator getHumidity() {
+        return accumulators[Metric.HUMIDITY.ordinal()];
     }
 
-    public void setAvgTemperatureCelsius(double avgTemperatureCelsius) {
-        this.avgTemperatureCelsius = avgTemperatureCelsius;
+    public QuantileSketch getTemperatureSketch() {
+        return sketches[Metric.TEMPERATURE.ordinal()];
+    }
+
+    public QuantileSketch getHumiditySketch() {
+        return sketches[Metric.HUMIDITY.ordinal()];
+    }
+
+    /**
+     * Bitmap of the metrics with an accumulator, bit i for the metric of ordinal i;
+     * always includes temperature and humidity
+     */
+    public int reportedMetrics() {
+        int reported = 0;
+        for (int i = 0; i < Metric.COUNT; i++) {
+            if (accumulators[i] != null) {
+                reported |= 1 << i;
+            }
+        }
+        return reported;
+    }
+
+    /**
+     * Accumulator of a metric, null for an optional metric the station has not reported
+     */
+    public MetricAccumulator getAccumulator(Metric metric) {
+        return accumulators[metric.ordinal()];
+    }
+
+    /**
+     * Sketch of a metric, null for an optional metric the station has not reported
+     */
+    public QuantileSketch getSketch(Metric metric) {
+        return sketches[metric.ordinal()];
+    }
+
+    public long getLatestSentAt() {
+        return latestSentAt;
+    }
+
+    public void setLatestSentAt(long latestSentAt) {
+        this.latestSentAt = latestSentAt;
+    }
+
+    public double getAvgTemperatureCelsius() {
+        return mean(Metric.TEMPERATURE);
     }
 
     public double getAvgHumidity() {
-        return avgHumidity;
+        return mean(Metric.HUMIDITY);
     }
 
-    public void setAvgHumidity(double avgHumidity) {
-        this.avgHumidity = avgHumidity;
+    /**
+     * Mean of a metric, NaN for an optional metric the station has not reported
+     */
+    public double mean(Metric metric) {
+        MetricAccumulator accumulator = accumulators[metric.ordinal()];
+        return accumulator == null ? Double.NaN : accumulator.mean();
     }
 
-    public int getCount() {
-        return count;
+    /**
+     * Temperature at quantile q, kept within the exact minimum and maximum
+     */
+    public double temperatureQuantile(double q) {
+        return quantile(Metric.TEMPERATURE, q);
     }
 
-    public void setCount(int count) {
-        this.count = count;
+    /**
+     * Humidity at quantile q, kept within the exact minimum and maximum
+     */
+    public double humidityQuantile(double q) {
+        return quantile(Metric.HUMIDITY, q);
+    }
+
+    /**
+     * A metric at quantile q, kept within the exact minimum and maximum;
+     * NaN for an optional metric the station has not reported
+     */
+    public double quantile(Metric metric, double q) {
+        MetricAccumulator accumulator = accumulators[metric.ordinal()];
+        if (accumulator == null) {
+            return Double.NaN;
+        }
+        QuantileSketch sketch = sketches[metric.ordinal()];
+        if (sketch.count() == 0) {
+            return accumulator.mean();
+        }
+        return Math.max(accumulator.getMin(), Math.min(accumulator.getMax(), sketch.quantile(q)));
+    }
+
+    /**
+     * A metric at several quantiles (ascending) in one pass over its sketch, each
+     * as {@link #quantile(Metric, double)} would return it; the caller provides
+     * the output array so nothing is allocated
+     */
+    public void quantiles(Metric metric, double[] qs, double[] out) {
+        MetricAccumulator accumulator = accumulators[metric.ordinal()];
+        if (accumulator == null) {
+            Arrays.fill(out, 0, qs.length, Double.NaN);
+            return;
+        }
+        if (!sketches[metric.ordinal()].quantiles(qs, out)) {
+            Arrays.fill(out, 0, qs.length, accumulator.mean());
+            return;
+        }
+        for (int i = 0; i < qs.length; i++) {
+            out[i] = Math.max(accumulator.getMin(), Math.min(accumulator.getMax(), out[i]));
+        }
+    }
+
+    // JSON (Jackson) form of the optional metrics, keyed by Metric#key(); omitted when there are none
+    @JsonProperty("metrics")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<String, MetricAccumulator> optionalAccumulators() {
+        Map<String, MetricAccumulator> metrics = new LinkedHashMap<>();
+        for (int bits = reportedMetrics() & ~Metric.REQUIRED; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            metrics.put(metric.key(), accumulators[metric.ordinal()]);
+        }
+        return metrics;
+    }
+
+    @JsonProperty("metricSketches")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<String, QuantileSketch> optionalSketches() {
+        Map<String, QuantileSketch> metricSketches = new LinkedHashMap<>();
+        for (int bits = reportedMetrics() & ~Metric.REQUIRED; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            metricSketches.put(metric.key(), sketches[metric.ordinal()]);
+        }
+        return metricSketches;
     }
 
     @Override
     public String toString() {
-        return String.format("%s : Average Temperature = %.1f°C, Average Humidity = %.1f%% (Count: %d)",
-                station, avgTemperatureCelsius, avgHumidity, count);
+        String text = String.format("%s : Average Temperature = %.1f°C (p50/p95/p99 %.1f/%.1f/%.1f), "
+                + "Average Humidity = %.1f%% (p50/p95/p99 %.1f/%.1f/%.1f) (Count: %d)",
+                station, getAvgTemperatureCelsius(), temperatureQuantile(0.5), temperatureQuantile(0.95),
+                temperatureQuantile(0.99), getAvgHumidity(), humidityQuantile(0.5), humidityQuantile(0.95),
+                humidityQuantile(0.99), count);
+        int optional = reportedMetrics() & ~Metric.REQUIRED;
+        if (optional == 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text);
+        for (int bits = optional; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            builder.append(String.format(", Average %s = %.1f%s", metric.label(), mean(metric), metric.unit()));
+        }
+        return builder.toString();
     }
 
+    /**
+     * JSON of the aggregate, built without String.format: numbers always use a
+     * dot and two decimals, whatever the default locale
+     */
     public String toJson() {
-        return String.format("{\"station\":\"%s\",\"avgTemperature\":%.2f,\"avgHumidity\":%.2f,\"count\":%d}",
-                station, avgTemperatureCelsius, avgHumidity, count);
+        StringBuilder json = new StringBuilder(320).append("{\"station\":");
+        appendString(json, station);
+        appendNumber(json.append(",\"avgTemperature\":"), getAvgTemperatureCelsius());
+        appendNumber(json.append(",\"avgHumidity\":"), getAvgHumidity());
+        json.append(",\"count\":").append(count);
+        return appendOptionalMetrics(appendQuantiles(json), false).append('}').toString();
+    }
+
+    /**
+     * JSON for a windowed aggregate, including the window bounds (epoch millis)
+     */
+    public String toJson(long windowStart, long windowEnd) {
+        StringBuilder json = new StringBuilder(384).append("{\"station\":");
+        appendString(json, station);
+        json.append(",\"windowStart\":").append(windowStart).append(",\"windowEnd\":").append(windowEnd);
+        appendNumber(json.append(",\"avgTemperature\":"), getAvgTemperatureCelsius());
+        appendNumber(json.append(",\"minTemperature\":"), getTemperature().getMin());
+        appendNumber(json.append(",\"maxTemperature\":"), getTemperature().getMax());
+        appendNumber(json.append(",\"avgHumidity\":"), getAvgHumidity());
+        json.append(",\"count\":").append(count);
+        return appendOptionalMetrics(appendQuantiles(json), true).append('}').toString();
+    }
+
+    private StringBuilder appendQuantiles(StringBuilder json) {
+        appendNumber(json.append(",\"p50Temperature\":"), temperatureQuantile(0.5));
+        appendNumber(json.append(",\"p95Temperature\":"), temperatureQuantile(0.95));
+        appendNumber(json.append(",\"p99Temperature\":"), temperatureQuantile(0.99));
+        appendNumber(json.append(",\"p50Humidity\":"), humidityQuantile(0.5));
+        appendNumber(json.append(",\"p95Humidity\":"), humidityQuantile(0.95));
+        appendNumber(json.append(",\"p99Humidity\":"), humidityQuantile(0.99));
+        return json;
+    }
+
+    // Average (and with bounds, minimum and maximum) of each optional metric reported, e.g. avgPressure
+    private StringBuilder appendOptionalMetrics(StringBuilder json, boolean bounds) {
+        for (int bits = reportedMetrics() & ~Metric.REQUIRED; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            MetricAccumulator accumulator = accumulators[metric.ordinal()];
+            appendNumber(json.append(",\"avg").append(metric.label()).append("\":"), accumulator.mean());
+            if (bounds) {
+                appendNumber(json.append(",\"min").append(metric.label()).append("\":"), accumulator.getMin());
+                appendNumber(json.append(",\"max").append(metric.label()).append("\":"), accumulator.getMax());
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Append a JSON number with two decimals, rounded half up, whatever the
+     * default locale; null for NaN and infinities, which JSON cannot express
+     */
+    public static void appendNumber(StringBuilder json, double value) {
+        if (!Double.isFinite(value)) {
+            json.append("null");
+            return;
+        }
+        long hundredths = Math.round(value * 100);
+        if (hundredths < 0) {
+            json.append('-');
+            hundredths = -hundredths;
+        }
+        long fraction = hundredths % 100;
+        json.append(hundredths / 100).append(fraction < 10 ? ".0" : ".").append(fraction);
+    }
+
+    /**
+     * Append a quoted, escaped JSON string, or null
+     */
+    public static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
     }
 }
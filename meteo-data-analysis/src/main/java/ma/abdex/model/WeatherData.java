@@ -1,63 +1,75 @@
 package ma.abdex.model;
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
- * Model class representing weather data from a station
+ * Model class representing weather data from a station.
+ *
+ * Metric values are kept in a primitive array indexed by {@link Metric} ordinal,
+ * with a bitmap of the metrics the reading carries, so optional metrics cost
+ * neither boxing nor extra objects. Absent metrics read as NaN.
  */
 public class WeatherData {
     private String station;
-    private double temperature; // in Celsius
-    private double humidity; // percentage
+    private final double[] values = new double[Metric.COUNT]; // by metric ordinal, NaN when absent
+    private int present; // bit per metric carried, see Metric#bit()
     private long timestamp; // for time series data
+    private long sentAt; // producer send time in epoch millis, 0 if unknown
 
     public WeatherData() {
+        Arrays.fill(values, Double.NaN);
     }
 
     public WeatherData(String station, double temperature, double humidity) {
-        this.station = station;
-        this.temperature = temperature;
-        this.humidity = humidity;
-        this.timestamp = System.currentTimeMillis();
+        this(station, temperature, humidity, System.currentTimeMillis());
     }
 
     public WeatherData(String station, double temperature, double humidity, long timestamp) {
+        this();
         this.station = station;
-        this.temperature = temperature;
-        this.humidity = humidity;
+        set(Metric.TEMPERATURE, temperature);
+        set(Metric.HUMIDITY, humidity);
         this.timestamp = timestamp;
     }
 
-    // Parse from CSV format: station,temperature,humidity
+    // Parse from CSV format: station,temperature,humidity[,timestamp[,key=value...]]
+    // The optional timestamp is the measurement time in epoch milliseconds and may be
+    // left empty; optional metrics follow as key=value tags (see Metric#key()).
+    // Fields without '=' and unknown keys are ignored. Throwing wrapper of ParseResult#fromCsv.
     public static WeatherData fromCsv(String csv) {
-        if (csv == null || csv.trim().isEmpty()) {
-            throw new IllegalArgumentException("CSV string cannot be null or empty");
-        }
-
-        String[] parts = csv.split(",");
-        if (parts.length < 3) {
-            throw new IllegalArgumentException("Invalid CSV format (expected 3 fields): " + csv);
-        }
-
-        try {
-            String station = parts[0].trim();
-            double temperature = Double.parseDouble(parts[1].trim());
-            double humidity = Double.parseDouble(parts[2].trim());
-
-            // Validate the parsed data
-            ma.abdex.util.ValidationUtils.validateStation(station);
-            ma.abdex.util.ValidationUtils.validateTemperature(temperature);
-            ma.abdex.util.ValidationUtils.validateHumidity(humidity);
-
-            return new WeatherData(station, temperature, humidity);
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Invalid number format in CSV: " + csv, e);
+        ParseResult result = ParseResult.fromCsv(csv);
+        if (!result.isOk()) {
+            throw new IllegalArgumentException("Invalid CSV (" + result.error().label() + "): " + csv);
         }
+        return result.value();
     }
 
-    // Convert to CSV format
+    // Convert to CSV format, including the measurement time when known
+    // and the optional metrics as key=value tags
     public String toCsv() {
-        return String.format("%s,%.1f,%.1f", station, temperature, humidity);
+        int optional = present & ~Metric.REQUIRED;
+        if (optional == 0) {
+            if (timestamp <= 0) {
+                return String.format("%s,%.1f,%.1f", station, getTemperature(), getHumidity());
+            }
+            return String.format("%s,%.1f,%.1f,%d", station, getTemperature(), getHumidity(), timestamp);
+        }
+        StringBuilder csv = new StringBuilder(String.format("%s,%.1f,%.1f,", station, getTemperature(),
+                getHumidity()));
+        if (timestamp > 0) {
+            csv.append(timestamp);
+        }
+        for (int bits = optional; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            csv.append(String.format(",%s=%.1f", metric.key(), values[metric.ordinal()]));
+        }
+        return csv.toString();
     }
 
     // Getters and Setters
@@ -70,19 +82,77 @@ public class WeatherData {
     }
 
     public double getTemperature() {
-        return temperature;
+        return values[Metric.TEMPERATURE.ordinal()];
     }
 
     public void setTemperature(double temperature) {
-        this.temperature = temperature;
+        set(Metric.TEMPERATURE, temperature);
     }
 
     public double getHumidity() {
-        return humidity;
+        return values[Metric.HUMIDITY.ordinal()];
     }
 
     public void setHumidity(double humidity) {
-        this.humidity = humidity;
+        set(Metric.HUMIDITY, humidity);
+    }
+
+    public boolean has(Metric metric) {
+        return (present & metric.bit()) != 0;
+    }
+
+    /**
+     * Value of a metric, NaN if the reading does not carry it
+     */
+    public double get(Metric metric) {
+        return values[metric.ordinal()];
+    }
+
+    /**
+     * Set a metric's value; NaN removes the metric from the reading
+     */
+    public void set(Metric metric, double value) {
+        if (Double.isNaN(value)) {
+            values[metric.ordinal()] = Double.NaN;
+            present &= ~metric.bit();
+        } else {
+            values[metric.ordinal()] = value;
+            present |= metric.bit();
+        }
+    }
+
+    /**
+     * Bitmap of the metrics the reading carries, bit i for the metric of ordinal i
+     */
+    public int presentMetrics() {
+        return present;
+    }
+
+    // Value by metric ordinal, for loops over presentMetrics()
+    double value(int ordinal) {
+        return values[ordinal];
+    }
+
+    /**
+     * Optional metrics carried by the reading, as JSON properties next to temperature and humidity
+     */
+    @JsonAnyGetter
+    public Map<String, Double> optionalMetrics() {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        for (int bits = present & ~Metric.REQUIRED; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            metrics.put(metric.key(), values[metric.ordinal()]);
+        }
+        return metrics;
+    }
+
+    // Unknown JSON properties are ignored, so newer writers can add metrics
+    @JsonAnySetter
+    void setOptionalMetric(String key, Object value) {
+        Metric metric = Metric.fromKey(key);
+        if (metric != null && !metric.isRequired() && value instanceof Number) {
+            set(metric, ((Number) value).doubleValue());
+        }
     }
 
     public long getTimestamp() {
@@ -93,10 +163,23 @@ public class WeatherData {
         this.timestamp = timestamp;
     }
 
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(long sentAt) {
+        this.sentAt = sentAt;
+    }
+
     @Override
     public String toString() {
-        return String.format("WeatherData{station='%s', temp=%.1f°C, humidity=%.1f%%, timestamp=%d}",
-                station, temperature, humidity, timestamp);
+        StringBuilder text = new StringBuilder(String.format("WeatherData{station='%s', temp=%.1f°C, humidity=%.1f%%",
+                station, getTemperature(), getHumidity()));
+        for (int bits = present & ~Metric.REQUIRED; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            text.append(String.format(", %s=%.1f%s", metric.key(), values[metric.ordinal()], metric.unit()));
+        }
+        return text.append(", timestamp=").append(timestamp).append('}').toString();
     }
 
     @Override
@@ -106,13 +189,13 @@ public class WeatherData {
         if (o == null || getClass() != o.getClass())
             return false;
         WeatherData that = (WeatherData) o;
-        return Double.compare(that.temperature, temperature) == 0 &&
-                Double.compare(that.humidity, humidity) == 0 &&
+        return present == that.present &&
+                Arrays.equals(values, that.values) &&
                 Objects.equals(station, that.station);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(station, temperature, humidity);
+        return 31 * Objects.hash(station, present) + Arrays.hashCode(values);
     }
 }
@@ -0,0 +1,173 @@
+package ma.abdex.producer;
+
+import ma.abdex.config.AppConfig;
+import ma.abdex.streams.SendTimeHeader;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * High-throughput load generator for capacity planning of the streams processor.
+ *
+ * Sends readings of {@code weather.load.stations} stations at a target rate
+ * for a fixed duration, from several sender threads sharing one producer.
+ * Pacing is open-loop: reading n is due at {@code start + n / rate} whatever
+ * happened to earlier sends, and its latency is measured from that due time to
+ * the broker acknowledgement. A producer that falls behind therefore shows up
+ * as latency instead of silently lowering the offered load (coordinated omission).
+ *
+ * Run with: java -cp meteo-data-analysis.jar ma.abdex.producer.LoadGenerator [--key=value ...]
+ */
+public class LoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final AppConfig config;
+    private final String topic;
+    private final String[] stations;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public LoadGenerator(AppConfig config) {
+        this.config = config;
+        this.topic = config.getInputTopic();
+        this.stations = new String[config.getLoadStations()];
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = "Station" + i;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        AppConfig config = AppConfig.getInstance();
+        config.applyArguments(args);
+        new LoadGenerator(config).run();
+    }
+
+    /**
+     * Generate load for the configured duration, then print the report
+     */
+    public void run() throws InterruptedException {
+        double rate = config.getLoadRate();
+        int threads = config.getLoadThreads();
+        long durationNanos = TimeUnit.SECONDS.toNanos(config.getLoadDurationSeconds());
+        long total = (long) (rate * durationNanos / 1e9);
+        logger.info("Sending {} readings of {} stations to {} at {}/s from {} {}threads",
+                total, stations.length, topic, rate, threads, config.isLoadVirtualThreads() ? "virtual " : "");
+
+        ExecutorService executor = config.isLoadVirtualThreads()
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(threads);
+        long sent;
+        long elapsedNanos;
+        try (KafkaProducer<String, String> producer = new KafkaProducer<>(createProducerConfig())) {
+            long startNanos = System.nanoTime();
+            long startMillis = System.currentTimeMillis();
+            List<Future<Long>> senders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                senders.add(executor.submit(() ->
+                        send(producer, first, threads, total, rate, startNanos, startMillis)));
+            }
+            sent = 0;
+            for (Future<Long> sender : senders) {
+                try {
+                    sent += sender.get();
+                } catch (Exception e) {
+                    logger.error("Sender thread failed", e);
+                }
+            }
+            producer.flush();
+            elapsedNanos = System.nanoTime() - startNanos;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report(rate, sent, elapsedNanos);
+    }
+
+    /**
+     * Send readings first, first + stride, ... each at its due time
+     *
+     * @return number of readings handed to the producer
+     */
+    private long send(KafkaProducer<String, String> producer, long first, int stride, long total,
+            double rate, long startNanos, long startMillis) {
+        double nanosPerReading = 1e9 / rate;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder value = new StringBuilder(64);
+        long sent = 0;
+        for (long n = first; n < total; n += stride) {
+            long offsetNanos = (long) (n * nanosPerReading);
+            long dueNanos = startNanos + offsetNanos;
+            long wait = dueNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String station = stations[random.nextInt(stations.length)];
+            // Tenths of a unit: 15.0-45.0 °C and 30.0-90.0 %
+            int temperature = 150 + random.nextInt(301);
+            int humidity = 300 + random.nextInt(601);
+            value.setLength(0);
+            value.append(station).append(',')
+                    .append(temperature / 10).append('.').append(temperature % 10).append(',')
+                    .append(humidity / 10).append('.').append(humidity % 10).append(',')
+                    .append(startMillis + offsetNanos / 1_000_000);
+
+            ProducerRecord<String, String> record = new ProducerRecord<>(topic, station, value.toString());
+            SendTimeHeader.stamp(record.headers(), System.currentTimeMillis());
+            producer.send(record, (metadata, exception) -> {
+                if (exception != null) {
+                    failed.incrementAndGet();
+                } else {
+                    acknowledged.incrementAndGet();
+                    latencies.record((System.nanoTime() - dueNanos) / 1000);
+                }
+            });
+            sent++;
+        }
+        return sent;
+    }
+
+    private Properties createProducerConfig() {
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBootstrapServers());
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        props.put(ProducerConfig.ACKS_CONFIG, config.getLoadProducerAcks());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, config.getLoadProducerLingerMs());
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, config.getLoadProducerBatchSize());
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, config.getLoadProducerCompressionType());
+        props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, config.getLoadProducerBufferMemory());
+        return props;
+    }
+
+    private void report(double targetRate, long sent, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.println();
+        System.out.println("=== Load Generator Report ===");
+        System.out.printf("Target rate:      %,.0f readings/s%n", targetRate);
+        System.out.printf("Achieved rate:    %,.0f readings/s (%,d acknowledged in %.1f s)%n",
+                acknowledged.get() / seconds, acknowledged.get(), seconds);
+        System.out.printf("Sent / failed:    %,d / %,d%n", sent, failed.get());
+        System.out.println("Send latency from due time to acknowledgement (ms):");
+        System.out.printf("  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                latencies.percentile(0.50) / 1000.0, latencies.percentile(0.90) / 1000.0,
+                latencies.percentile(0.99) / 1000.0, latencies.percentile(0.999) / 1000.0,
+                latencies.percentile(1.0) / 1000.0);
+    }
+}
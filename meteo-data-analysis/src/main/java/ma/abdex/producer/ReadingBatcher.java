@@ -0,0 +1,107 @@
+package ma.abdex.producer;
+
+import ma.abdex.model.WeatherData;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces readings per station before they are sent.
+ *
+ * A station's pending readings are handed to the sink as one batch once it
+ * holds {@code maxReadings} readings, or by {@link #flushExpired} once its
+ * oldest reading has waited {@code lingerMs}. Sending one packed record per
+ * batch instead of one record per reading cuts the per-message overhead on
+ * the producer, the broker and the streams consumer by about the batch size.
+ * Only stations with pending readings are tracked, in the order their oldest
+ * reading was added, so expiry checks stop at the first batch still lingering.
+ */
+public class ReadingBatcher {
+
+    /**
+     * Receives full or expired batches; called with the batcher's lock held
+     */
+    public interface Sink {
+        void send(String station, List<WeatherData> readings);
+    }
+
+    private final int maxReadings;
+    private final long lingerMs;
+    private final Sink sink;
+    // Batches leave once sent and are re-created by the station's next reading: first-added order
+    private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+
+    public ReadingBatcher(int maxReadings, long lingerMs, Sink sink) {
+        this.maxReadings = Math.max(1, maxReadings);
+        this.lingerMs = lingerMs;
+        this.sink = sink;
+    }
+
+    public void add(WeatherData reading) {
+        add(reading, System.currentTimeMillis());
+    }
+
+    synchronized void add(WeatherData reading, long now) {
+        String station = reading.getStation();
+        Pending batch = pending.get(station);
+        if (batch == null) {
+            batch = new Pending(Math.min(maxReadings, 16), now);
+            pending.put(station, batch);
+        }
+        batch.readings.add(reading);
+        if (batch.readings.size() >= maxReadings) {
+            pending.remove(station);
+            sink.send(station, batch.readings);
+        }
+    }
+
+    /**
+     * Send every batch whose oldest reading was added at least the linger time ago
+     *
+     * @return number of batches sent
+     */
+    public synchronized int flushExpired(long now) {
+        int sent = 0;
+        Iterator<Map.Entry<String, Pending>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Pending> entry = entries.next();
+            if (now - entry.getValue().firstAddedAt < lingerMs) {
+                break; // the remaining batches are younger
+            }
+            entries.remove();
+            sink.send(entry.getKey(), entry.getValue().readings);
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * Send all pending readings regardless of age
+     */
+    public synchronized void flushAll() {
+        for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+            sink.send(entry.getKey(), entry.getValue().readings);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Number of stations with pending readings
+     */
+    synchronized int pendingStations() {
+        return pending.size();
+    }
+
+    private static final class Pending {
+        final List<WeatherData> readings;
+        final long firstAddedAt;
+
+        Pending(int capacity, long firstAddedAt) {
+            this.readings = new ArrayList<>(capacity);
+            this.firstAddedAt = firstAddedAt;
+        }
+    }
+}
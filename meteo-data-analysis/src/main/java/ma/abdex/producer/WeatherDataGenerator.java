@@ -1,7 +1,11 @@
 package ma.abdex.producer;
 
+import ma.abdex.config.AppConfig;
 import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.Metric;
 import ma.abdex.model.WeatherData;
+import ma.abdex.streams.ReadingBatchSerializer;
+import ma.abdex.streams.SendTimeHeader;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -9,6 +13,7 @@ import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.Executors;
@@ -17,7 +22,8 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * Generator for weather data time series
- * Produces data to Kafka topic 'weather-data'
+ * Produces data to Kafka topic 'weather-data', or with weather.batch.enabled
+ * coalesces readings per station and produces packed batches to the batch topic
  */
 public class WeatherDataGenerator {
     private static final Logger logger = LoggerFactory.getLogger(WeatherDataGenerator.class);
@@ -26,6 +32,10 @@ public class WeatherDataGenerator {
     private static final String[] STATIONS = { "Station1", "Station2", "Station3", "Station4", "Station5" };
 
     private final KafkaProducer<String, String> producer;
+    private final KafkaProducer<String, List<WeatherData>> batchProducer;
+    private final ReadingBatcher batcher;
+    private final String batchTopic;
+    private final long batchLingerMs;
     private final Random random;
     private final ScheduledExecutorService scheduler;
     private volatile boolean running;
@@ -34,11 +44,25 @@ public class WeatherDataGenerator {
         Properties props = new Properties();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
         props.put(ProducerConfig.ACKS_CONFIG, "all");
         props.put(ProducerConfig.RETRIES_CONFIG, 3);
 
-        this.producer = new KafkaProducer<>(props);
+        AppConfig config = AppConfig.getInstance();
+        this.batchTopic = config.getBatchTopic();
+        this.batchLingerMs = config.getBatchLingerMs();
+        if (config.isBatchEnabled()) {
+            props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ReadingBatchSerializer.class.getName());
+            this.producer = null;
+            this.batchProducer = new KafkaProducer<>(props);
+            this.batcher = new ReadingBatcher(config.getBatchMaxReadings(), batchLingerMs, this::sendBatch);
+            logger.info("Batching up to {} readings per station for {} ms to {}",
+                    config.getBatchMaxReadings(), batchLingerMs, batchTopic);
+        } else {
+            props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+            this.producer = new KafkaProducer<>(props);
+            this.batchProducer = null;
+            this.batcher = null;
+        }
         this.random = new Random();
         this.scheduler = Executors.newScheduledThreadPool(1);
         this.running = false;
@@ -65,6 +89,17 @@ public class WeatherDataGenerator {
                 logger.error("Error generating weather data", e);
             }
         }, 0, intervalSeconds, TimeUnit.SECONDS);
+
+        if (batcher != null) {
+            long flushPeriodMs = Math.max(10, batchLingerMs / 4);
+            scheduler.scheduleAtFixedRate(() -> {
+                try {
+                    batcher.flushExpired(System.currentTimeMillis());
+                } catch (Exception e) {
+                    logger.error("Error sending reading batches", e);
+                }
+            }, flushPeriodMs, flushPeriodMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     /**
@@ -99,15 +134,34 @@ public class WeatherDataGenerator {
         temperature = Math.round(temperature * 10.0) / 10.0;
         humidity = Math.round(humidity * 10.0) / 10.0;
 
-        return new WeatherData(station, temperature, humidity);
+        WeatherData data = new WeatherData(station, temperature, humidity);
+
+        // Optional metrics, reported sparsely as real sensors do
+        if (random.nextDouble() < 0.5) {
+            data.set(Metric.PRESSURE, Math.round((1000.0 + random.nextDouble() * 30.0) * 10.0) / 10.0);
+        }
+        if (random.nextDouble() < 0.3) {
+            data.set(Metric.WIND_SPEED, Math.round(random.nextDouble() * 150.0) / 10.0);
+            data.set(Metric.WIND_DIRECTION, Math.round(random.nextDouble() * 3590.0) / 10.0);
+        }
+        if (random.nextDouble() < 0.1) {
+            data.set(Metric.PRECIPITATION, Math.round(random.nextDouble() * 100.0) / 10.0);
+        }
+        return data;
     }
 
     /**
      * Send weather data to Kafka topic
      */
     private void sendData(WeatherData data) {
+        if (batcher != null) {
+            PrometheusMetricsServer.recordWeatherData(data.getStation(), data.getTemperature(), data.getHumidity());
+            batcher.add(data);
+            return;
+        }
         String value = data.toCsv();
         ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, data.getStation(), value);
+        SendTimeHeader.stamp(record.headers(), System.currentTimeMillis());
 
         // Record Prometheus metrics
         PrometheusMetricsServer.recordWeatherData(data.getStation(), data.getTemperature(), data.getHumidity());
@@ -116,14 +170,28 @@ public class WeatherDataGenerator {
             if (exception != null) {
                 logger.error("Error sending data: {}", value, exception);
             } else {
-                logger.info("Sent: {} -> partition: {}, offset: {}",
-                        value, metadata.partition(), metadata.offset());
                 // Enregistrer le message produit
                 PrometheusMetricsServer.recordKafkaProduced(TOPIC, data.getStation());
             }
         });
     }
 
+    /**
+     * Send one station's coalesced readings as a single record
+     */
+    private void sendBatch(String station, List<WeatherData> readings) {
+        ProducerRecord<String, List<WeatherData>> record = new ProducerRecord<>(batchTopic, station, readings);
+        SendTimeHeader.stamp(record.headers(), System.currentTimeMillis());
+
+        batchProducer.send(record, (metadata, exception) -> {
+            if (exception != null) {
+                logger.error("Error sending batch of {} readings of {}", readings.size(), station, exception);
+            } else {
+                PrometheusMetricsServer.recordKafkaProduced(batchTopic, station);
+            }
+        });
+    }
+
     /**
      * Stop the generator
      */
@@ -145,8 +213,14 @@ public class WeatherDataGenerator {
             Thread.currentThread().interrupt();
         }
 
-        producer.flush();
-        producer.close();
+        if (batcher != null) {
+            batcher.flushAll();
+            batchProducer.flush();
+            batchProducer.close();
+        } else {
+            producer.flush();
+            producer.close();
+        }
         logger.info("Weather data generator stopped");
     }
 
@@ -164,6 +238,11 @@ public class WeatherDataGenerator {
                 break;
             }
         }
-        producer.flush();
+        if (batcher != null) {
+            batcher.flushAll();
+            batchProducer.flush();
+        } else {
+            producer.flush();
+        }
     }
 }
@@ -0,0 +1,251 @@
+package ma.abdex.query;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ma.abdex.model.StationStats;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP endpoint over the station aggregate store (interactive queries).
+ *
+ * <pre>
+ * GET /stations                   all stations
+ * GET /stations?from=A&amp;to=B   stations in the key range [A, B] (either bound optional)
+ * GET /stations/{station}         one station
+ * </pre>
+ *
+ * Point lookups are routed to the instance hosting the station's partition;
+ * listings and range scans fan out to every instance and concatenate their
+ * results (ordered per instance when keys are station names; with the station
+ * registry on, keys are IDs, so range scans filter a full scan instead and
+ * come back unordered). Forwarded requests carry {@code local=true}
+ * so they are answered from the local store only. Responses are cached for a
+ * short TTL, so bursts of dashboard requests hit the store once.
+ */
+public class StationQueryService {
+    private static final Logger logger = LoggerFactory.getLogger(StationQueryService.class);
+
+    private static final String CONTEXT = "/stations";
+    private static final int MAX_CACHED_RESPONSES = 10_000;
+    private static final Duration REMOTE_TIMEOUT = Duration.ofSeconds(2);
+
+    private final KafkaStreams streams;
+    private final String storeName;
+    private final HostInfo self;
+    private final long cacheTtlMs;
+    private final Serializer<String> keySerializer;
+    private final boolean keysOrderedByName;
+    private final Map<String, CachedResponse> cache = new ConcurrentHashMap<>();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(REMOTE_TIMEOUT).build();
+
+    public StationQueryService(KafkaStreams streams, String storeName, HostInfo self, long cacheTtlMs) {
+        this(streams, storeName, self, cacheTtlMs, Serdes.String().serializer(), true);
+    }
+
+    /**
+     * @param keySerializer      serializer the store's keys are partitioned with
+     * @param keysOrderedByName  whether the store iterates in station name order (false with ID keys)
+     */
+    public StationQueryService(KafkaStreams streams, String storeName, HostInfo self, long cacheTtlMs,
+            Serializer<String> keySerializer, boolean keysOrderedByName) {
+        this.streams = streams;
+        this.storeName = storeName;
+        this.self = self;
+        this.cacheTtlMs = cacheTtlMs;
+        this.keySerializer = keySerializer;
+        this.keysOrderedByName = keysOrderedByName;
+    }
+
+    /**
+     * Serve the endpoint on the given server (typically the Prometheus metrics server)
+     */
+    public void register(HttpServer server) {
+        server.createContext(CONTEXT, this::handle);
+        logger.info("Station queries served at http://{}:{}{}", self.host(), self.port(), CONTEXT);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, new Response(405, error("method not allowed")));
+                return;
+            }
+            String cacheKey = exchange.getRequestURI().toString();
+            long now = System.currentTimeMillis();
+            CachedResponse cached = cache.get(cacheKey);
+            if (cached != null && cached.expiresAt > now) {
+                send(exchange, cached.response);
+                return;
+            }
+
+            Response response = query(exchange.getRequestURI());
+            if (response.status == 200 || response.status == 404) {
+                if (cache.size() >= MAX_CACHED_RESPONSES) {
+                    cache.clear();
+                }
+                cache.put(cacheKey, new CachedResponse(response, now + cacheTtlMs));
+            }
+            send(exchange, response);
+        } catch (InvalidStateStoreException e) {
+            // Store migrating or restoring during a rebalance
+            send(exchange, new Response(503, error("store not available, retry shortly")));
+        } catch (Exception e) {
+            logger.error("Error answering {}", exchange.getRequestURI(), e);
+            send(exchange, new Response(500, error("internal error")));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Response query(URI uri) throws IOException, InterruptedException {
+        String path = uri.getRawPath();
+        Map<String, String> params = parseQuery(uri.getRawQuery());
+        boolean localOnly = "true".equals(params.get("local"));
+
+        if (path.equals(CONTEXT) || path.equals(CONTEXT + "/")) {
+            return scan(params.get("from"), params.get("to"), localOnly, uri.getRawQuery());
+        }
+        if (path.startsWith(CONTEXT + "/") && path.indexOf('/', CONTEXT.length() + 1) < 0) {
+            String station = URLDecoder.decode(path.substring(CONTEXT.length() + 1), StandardCharsets.UTF_8);
+            return lookup(station, localOnly);
+        }
+        return new Response(404, error("not found"));
+    }
+
+    private Response lookup(String station, boolean localOnly) throws IOException, InterruptedException {
+        if (!localOnly) {
+            KeyQueryMetadata metadata = streams.queryMetadataForKey(storeName, station, keySerializer);
+            if (metadata == null || metadata == KeyQueryMetadata.NOT_AVAILABLE) {
+                return new Response(503, error("store not available, retry shortly"));
+            }
+            if (!self.equals(metadata.activeHost())) {
+                return fetch(metadata.activeHost(),
+                        CONTEXT + "/" + URLEncoder.encode(station, StandardCharsets.UTF_8) + "?local=true");
+            }
+        }
+        StationStats stats = localStore().get(station);
+        return stats == null ? new Response(404, error("unknown station")) : new Response(200, stats.toJson());
+    }
+
+    private Response scan(String from, String to, boolean localOnly, String rawQuery)
+            throws IOException, InterruptedException {
+        StringJoiner body = new StringJoiner(",", "[", "]");
+        boolean filter = !keysOrderedByName && (from != null || to != null);
+        try (KeyValueIterator<String, StationStats> iterator = from == null && to == null || filter
+                ? localStore().all()
+                : localStore().range(from, to)) {
+            while (iterator.hasNext()) {
+                KeyValue<String, StationStats> entry = iterator.next();
+                if (filter && !inRange(entry.value.getStation(), from, to)) {
+                    continue;
+                }
+                body.add(entry.value.toJson());
+            }
+        }
+
+        if (!localOnly) {
+            String forwarded = CONTEXT + "?local=true" + (rawQuery == null ? "" : "&" + rawQuery);
+            for (StreamsMetadata instance : streams.streamsMetadataForStore(storeName)) {
+                if (self.equals(instance.hostInfo())) {
+                    continue;
+                }
+                Response remote = fetch(instance.hostInfo(), forwarded);
+                if (remote.status != 200) {
+                    return remote;
+                }
+                // Remote body is a JSON array: splice its elements into ours
+                String elements = remote.body.substring(1, remote.body.length() - 1);
+                if (!elements.isEmpty()) {
+                    body.add(elements);
+                }
+            }
+        }
+        return new Response(200, body.toString());
+    }
+
+    private static boolean inRange(String station, String from, String to) {
+        return (from == null || station.compareTo(from) >= 0) && (to == null || station.compareTo(to) <= 0);
+    }
+
+    private ReadOnlyKeyValueStore<String, StationStats> localStore() {
+        return streams.store(StoreQueryParameters.fromNameAndType(storeName,
+                QueryableStoreTypes.keyValueStore()));
+    }
+
+    private Response fetch(HostInfo host, String pathAndQuery) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://" + host.host() + ":" + host.port() + pathAndQuery))
+                .timeout(REMOTE_TIMEOUT)
+                .GET()
+                .build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            return new Response(response.statusCode(), response.body());
+        } catch (IOException e) {
+            logger.warn("Instance {}:{} did not answer: {}", host.host(), host.port(), e.getMessage());
+            return new Response(502, error("instance " + host.host() + ":" + host.port() + " unavailable"));
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message + "\"}";
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private record Response(int status, String body) {
+    }
+
+    private record CachedResponse(Response response, long expiresAt) {
+    }
+}
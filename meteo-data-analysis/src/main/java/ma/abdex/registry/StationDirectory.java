@@ -0,0 +1,143 @@
+package ma.abdex.registry;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Two-way station name / ID lookup over the station registry.
+ *
+ * Backed by the local copy of the registry GlobalKTable, which a
+ * {@link StationIdResolver} binds once its task is initialized, and fronted by
+ * concurrent caches so repeated lookups are a single map access. An ID not yet
+ * in the local registry (another instance registered it moments ago) resolves
+ * to a {@code #id} placeholder, which {@link #idOf} maps back to the same ID,
+ * so keys always round-trip. Station names cannot contain '#'. Reverse
+ * lookups that miss reload the whole local registry, at most once a second,
+ * so an ID still missing costs a map access between reloads.
+ */
+public class StationDirectory {
+    /** Prefix of the placeholder name of an ID missing from the local registry */
+    static final char PLACEHOLDER_PREFIX = '#';
+    /** Interval between registration requests for a station still without an ID */
+    private static final long REQUEST_RETRY_MS = 5000;
+    /** Minimum interval between full reloads of the local registry on reverse-lookup misses */
+    static final long RELOAD_INTERVAL_MS = 1000;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> names = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> requested = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private volatile ReadOnlyKeyValueStore<String, ValueAndTimestamp<Integer>> registry;
+    private volatile long reloadedAt = -RELOAD_INTERVAL_MS;
+
+    public StationDirectory() {
+        this(System::currentTimeMillis);
+    }
+
+    StationDirectory(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Attach the local registry store (idempotent)
+     */
+    public void bind(ReadOnlyKeyValueStore<String, ValueAndTimestamp<Integer>> store) {
+        this.registry = store;
+    }
+
+    /**
+     * ID of a registered station, or 0 if it has none yet
+     */
+    public int idOf(String station) {
+        Integer cached = ids.get(station);
+        if (cached != null) {
+            return cached;
+        }
+        if (!station.isEmpty() && station.charAt(0) == PLACEHOLDER_PREFIX) {
+            return parsePlaceholder(station);
+        }
+        ReadOnlyKeyValueStore<String, ValueAndTimestamp<Integer>> store = registry;
+        ValueAndTimestamp<Integer> registered = store == null ? null : store.get(station);
+        if (registered == null || registered.value() == null) {
+            return 0;
+        }
+        remember(station, registered.value());
+        return registered.value();
+    }
+
+    /**
+     * Name of a station ID, or its {@code #id} placeholder if not in the local registry yet
+     */
+    public String nameOf(int id) {
+        String cached = names.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        ReadOnlyKeyValueStore<String, ValueAndTimestamp<Integer>> store = registry;
+        if (store != null && clock.getAsLong() - reloadedAt >= RELOAD_INTERVAL_MS) {
+            reload(store);
+            cached = names.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return PLACEHOLDER_PREFIX + Integer.toString(id);
+    }
+
+    /**
+     * Whether a registration request should be sent for a station: it has no
+     * ID yet and was not requested within the last few seconds
+     */
+    public boolean needsRegistration(String station) {
+        if (ids.containsKey(station) || idOf(station) > 0) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        Long last = requested.get(station);
+        if (last != null && now - last < REQUEST_RETRY_MS) {
+            return false;
+        }
+        requested.put(station, now);
+        return true;
+    }
+
+    /**
+     * Record a known assignment, e.g. one just read from the registry
+     */
+    public void remember(String station, int id) {
+        ids.put(station, id);
+        names.put(id, station);
+        requested.remove(station);
+    }
+
+    // Reverse lookups miss once per station and instance, or repeatedly for an ID
+    // registered elsewhere and not replicated here yet: reload everything, rate-limited
+    private synchronized void reload(ReadOnlyKeyValueStore<String, ValueAndTimestamp<Integer>> store) {
+        long now = clock.getAsLong();
+        if (now - reloadedAt < RELOAD_INTERVAL_MS) {
+            return;
+        }
+        reloadedAt = now;
+        try (KeyValueIterator<String, ValueAndTimestamp<Integer>> all = store.all()) {
+            while (all.hasNext()) {
+                KeyValue<String, ValueAndTimestamp<Integer>> entry = all.next();
+                if (entry.value != null && entry.value.value() != null) {
+                    remember(entry.key, entry.value.value());
+                }
+            }
+        }
+    }
+
+    private static int parsePlaceholder(String placeholder) {
+        try {
+            return Integer.parseInt(placeholder, 1, placeholder.length(), 10);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ma.abdex.registry;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.WeatherData;
+import ma.abdex.util.EventLogger;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.processor.api.InternalFixedKeyRecordFactory;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds back readings of stations without an ID until they are registered.
+ *
+ * Placed right before grouping, so every reading reaching a station-keyed
+ * store or repartition topic has an ID and the station is always encoded the
+ * same way. Readings of registered stations pass straight through. The others
+ * are kept, in arrival order, in a changelogged buffer keyed
+ * {@code station#sequence}; readings arriving meanwhile queue behind them.
+ * Every 100 ms of wall-clock time a punctuator checks whether buffered
+ * stations have shown up in the registry and releases their readings, keyed
+ * by station name and stamped with their own measurement time, so a station
+ * that sends once, a quiet partition and readings restored from the changelog
+ * are all released without waiting for further input. A station may never
+ * get an ID (the registrar has run out of them), so the buffer is capped:
+ * once it holds {@code maxBuffered} readings, further ones are dropped and
+ * counted until releases make room.
+ *
+ * Given child names, readings passing through go to the first child and
+ * released ones to the second, so the topology can route releases (which
+ * have no source record context) through an internal topic.
+ */
+public class StationIdResolver implements FixedKeyProcessor<String, WeatherData, WeatherData> {
+    private static final EventLogger events = EventLogger.getLogger(StationIdResolver.class);
+    private static final Duration RELEASE_INTERVAL = Duration.ofMillis(100);
+    private static final int SEQUENCE_DIGITS = 19;
+
+    private final StationDirectory directory;
+    private final String registryStoreName;
+    private final String bufferStoreName;
+    private final long maxBuffered;
+    private final String passedChild;
+    private final String releasedChild;
+    private final Set<String> pending = new HashSet<>();
+    private FixedKeyProcessorContext<String, WeatherData> context;
+    private KeyValueStore<String, WeatherData> buffer;
+    private long sequence;
+    private long buffered;
+
+    public StationIdResolver(StationDirectory directory, String registryStoreName, String bufferStoreName,
+            long maxBuffered) {
+        this(directory, registryStoreName, bufferStoreName, maxBuffered, null, null);
+    }
+
+    public StationIdResolver(StationDirectory directory, String registryStoreName, String bufferStoreName,
+            long maxBuffered, String passedChild, String releasedChild) {
+        this.directory = directory;
+        this.registryStoreName = registryStoreName;
+        this.bufferStoreName = bufferStoreName;
+        this.maxBuffered = maxBuffered;
+        this.passedChild = passedChild;
+        this.releasedChild = releasedChild;
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, WeatherData> context) {
+        this.context = context;
+        this.buffer = context.getStateStore(bufferStoreName);
+        directory.bind(context.getStateStore(registryStoreName));
+
+        // Readings restored from the changelog are released like any other
+        try (KeyValueIterator<String, WeatherData> all = buffer.all()) {
+            while (all.hasNext()) {
+                String key = all.next().key;
+                int separator = key.lastIndexOf('#');
+                pending.add(key.substring(0, separator));
+                sequence = Math.max(sequence, Long.parseLong(key, separator + 1, key.length(), 10) + 1);
+                buffered++;
+            }
+        }
+        context.schedule(RELEASE_INTERVAL, PunctuationType.WALL_CLOCK_TIME, now -> release());
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, WeatherData> record) {
+        WeatherData reading = record.value();
+        String station = reading.getStation();
+        if (!pending.contains(station) && directory.idOf(station) > 0) {
+            forward(record, passedChild);
+            return;
+        }
+        if (buffered >= maxBuffered) {
+            PrometheusMetricsServer.recordRegistrationBufferDrop();
+            events.event("registration_buffer_full", station, reading);
+            return;
+        }
+        if (reading.getTimestamp() <= 0) {
+            reading.setTimestamp(record.timestamp());
+        }
+        buffer.put(bufferKey(station, sequence++), reading);
+        buffered++;
+        pending.add(station);
+    }
+
+    private void release() {
+        Iterator<String> stations = pending.iterator();
+        while (stations.hasNext()) {
+            String station = stations.next();
+            if (directory.idOf(station) <= 0) {
+                continue;
+            }
+            List<KeyValue<String, WeatherData>> readings = new ArrayList<>();
+            try (KeyValueIterator<String, WeatherData> range = buffer.range(station + "#", station + "#~")) {
+                range.forEachRemaining(readings::add);
+            }
+            for (KeyValue<String, WeatherData> reading : readings) {
+                buffer.delete(reading.key);
+                buffered--;
+                // No input record to derive from in a punctuation, so the record is built from the reading
+                forward(InternalFixedKeyRecordFactory.create(
+                        new Record<>(station, reading.value, reading.value.getTimestamp())), releasedChild);
+            }
+            stations.remove();
+        }
+    }
+
+    private void forward(FixedKeyRecord<String, WeatherData> record, String child) {
+        if (child == null) {
+            context.forward(record);
+        } else {
+            context.forward(record, child);
+        }
+    }
+
+    // Zero-padded so the buffer iterates a station's readings in arrival order
+    private static String bufferKey(String station, long sequence) {
+        String digits = Long.toString(sequence);
+        StringBuilder key = new StringBuilder(station.length() + 1 + SEQUENCE_DIGITS).append(station).append('#');
+        for (int i = digits.length(); i < SEQUENCE_DIGITS; i++) {
+            key.append('0');
+        }
+        return key.append(digits).toString();
+    }
+}
@@ -0,0 +1,28 @@
+package ma.abdex.registry;
+
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Restores station names from keys written by {@link StationKeySerializer}
+ */
+public class StationKeyDeserializer implements Deserializer<String> {
+    private final StationDirectory directory;
+
+    public StationKeyDeserializer(StationDirectory directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 4 && data[0] == 0) {
+            int id = (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF);
+            return directory.nameOf(id);
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
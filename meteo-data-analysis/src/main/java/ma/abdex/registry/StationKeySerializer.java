@@ -0,0 +1,34 @@
+package ma.abdex.registry;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializes station-name keys as their registry ID.
+ *
+ * Registered stations are written as a 4-byte big-endian ID, whose first byte
+ * is 0 for any ID below {@link StationRegistrar#MAX_ID}. Unregistered names
+ * (only seen by interactive queries for unknown stations, since readings wait
+ * for registration before grouping) fall back to their UTF-8 bytes, which
+ * always start with a printable character.
+ */
+public class StationKeySerializer implements Serializer<String> {
+    private final StationDirectory directory;
+
+    public StationKeySerializer(StationDirectory directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public byte[] serialize(String topic, String station) {
+        if (station == null) {
+            return null;
+        }
+        int id = directory.idOf(station);
+        if (id <= 0) {
+            return station.getBytes(StandardCharsets.UTF_8);
+        }
+        return new byte[] { (byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id };
+    }
+}
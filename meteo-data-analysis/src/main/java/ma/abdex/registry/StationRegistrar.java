@@ -0,0 +1,60 @@
+package ma.abdex.registry;
+
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Assigns station IDs from registration requests.
+ *
+ * Runs on a single-partition request topic, so exactly one task hands out
+ * IDs, sequentially from 1, keeping its assignments (and the next free ID
+ * under a '#' key no station can have) in a changelogged store. Every request
+ * is answered with the station's ID, new or existing, for the compacted
+ * registry topic; repeated requests rewrite the same assignment.
+ */
+public class StationRegistrar implements Processor<String, String, String, Integer> {
+    private static final Logger logger = LoggerFactory.getLogger(StationRegistrar.class);
+
+    /** Largest assignable ID: keys encode IDs in 4 bytes with a zero first byte */
+    public static final int MAX_ID = (1 << 24) - 1;
+    private static final String NEXT_ID_KEY = "#next";
+
+    private final String storeName;
+    private ProcessorContext<String, Integer> context;
+    private KeyValueStore<String, Integer> assignments;
+
+    public StationRegistrar(String storeName) {
+        this.storeName = storeName;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, Integer> context) {
+        this.context = context;
+        this.assignments = context.getStateStore(storeName);
+    }
+
+    @Override
+    public void process(Record<String, String> record) {
+        String station = record.key();
+        if (station == null || station.indexOf(StationDirectory.PLACEHOLDER_PREFIX) >= 0) {
+            return;
+        }
+        Integer id = assignments.get(station);
+        if (id == null) {
+            Integer next = assignments.get(NEXT_ID_KEY);
+            id = next == null ? 1 : next;
+            if (id > MAX_ID) {
+                logger.error("Station ID space exhausted, cannot register {}", station);
+                return;
+            }
+            assignments.put(station, id);
+            assignments.put(NEXT_ID_KEY, id + 1);
+            logger.info("Registered station {} as {}", station, id);
+        }
+        context.forward(record.withValue(id));
+    }
+}
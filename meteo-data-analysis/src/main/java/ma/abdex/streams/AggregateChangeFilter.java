@@ -0,0 +1,83 @@
+package ma.abdex.streams;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.StationStats;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Forwards a station's aggregate only when its average temperature or humidity
+ * has moved by at least the minimum change since the last forwarded one.
+ *
+ * The averages of every station's last forwarded aggregate are kept in a state
+ * store, so small changes accumulate until they add up to the minimum. A minimum
+ * of 0 ignores that metric; the first aggregate of a station is always forwarded.
+ */
+public class AggregateChangeFilter implements FixedKeyProcessor<String, StationStats, StationStats> {
+    private final String storeName;
+    private final double minTemperatureChange;
+    private final double minHumidityChange;
+    private FixedKeyProcessorContext<String, StationStats> context;
+    private KeyValueStore<String, Published> emitted;
+
+    public AggregateChangeFilter(String storeName, double minTemperatureChange, double minHumidityChange) {
+        this.storeName = storeName;
+        this.minTemperatureChange = minTemperatureChange;
+        this.minHumidityChange = minHumidityChange;
+    }
+
+    /**
+     * Averages of a station's last forwarded aggregate
+     */
+    public record Published(double avgTemperatureCelsius, double avgHumidity) {
+    }
+
+    /**
+     * Serde for the store values: the two averages, 16 bytes
+     */
+    public static Serde<Published> publishedSerde() {
+        return Serdes.serdeFrom(
+                (topic, data) -> data == null ? null : ByteBuffer.allocate(2 * Double.BYTES)
+                        .putDouble(data.avgTemperatureCelsius())
+                        .putDouble(data.avgHumidity())
+                        .array(),
+                (topic, data) -> {
+                    if (data == null) {
+                        return null;
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(data);
+                    return new Published(buffer.getDouble(), buffer.getDouble());
+                });
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, StationStats> context) {
+        this.context = context;
+        this.emitted = context.getStateStore(storeName);
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, StationStats> record) {
+        StationStats stats = record.value();
+        double temperature = stats.getAvgTemperatureCelsius();
+        double humidity = stats.getAvgHumidity();
+        Published last = emitted.get(record.key());
+        if (last != null && !changed(last.avgTemperatureCelsius(), temperature, minTemperatureChange)
+                && !changed(last.avgHumidity(), humidity, minHumidityChange)) {
+            PrometheusMetricsServer.recordAggregateUpdate("below_min_change");
+            return;
+        }
+        emitted.put(record.key(), new Published(temperature, humidity));
+        context.forward(record);
+    }
+
+    private static boolean changed(double last, double current, double minChange) {
+        return minChange > 0 && Math.abs(current - last) >= minChange;
+    }
+}
@@ -0,0 +1,95 @@
+package ma.abdex.streams;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.EwmaStats;
+import ma.abdex.model.StationBaseline;
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import ma.abdex.util.EventLogger;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+/**
+ * Flags readings that stray too far from their station's recent behaviour.
+ *
+ * Every reading is compared against the station's exponentially weighted
+ * temperature and humidity baseline, kept in a state store keyed by station,
+ * and then folded into it. A metric whose z-score exceeds the threshold is
+ * forwarded, keyed by station, as a JSON anomaly record; nothing else is
+ * forwarded. Stations are only judged once their baseline has seen the
+ * warm-up number of readings.
+ *
+ * Baselines are local to the task, so a station's readings are expected on
+ * a single input partition, as when the producer keys them by station.
+ */
+public class AnomalyDetector implements Processor<String, WeatherData, String, String> {
+    private static final EventLogger events = EventLogger.getLogger(AnomalyDetector.class);
+
+    private final String storeName;
+    private final double alpha;
+    private final double zScoreThreshold;
+    private final long warmupReadings;
+    private ProcessorContext<String, String> context;
+    private KeyValueStore<String, StationBaseline> baselines;
+
+    public AnomalyDetector(String storeName, double alpha, double zScoreThreshold, long warmupReadings) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Anomaly alpha must be in (0, 1]: " + alpha);
+        }
+        this.storeName = storeName;
+        this.alpha = alpha;
+        this.zScoreThreshold = zScoreThreshold;
+        this.warmupReadings = warmupReadings;
+    }
+
+    @Override
+    public void init(ProcessorContext<String, String> context) {
+        this.context = context;
+        this.baselines = context.getStateStore(storeName);
+    }
+
+    @Override
+    public void process(Record<String, WeatherData> record) {
+        WeatherData reading = record.value();
+        String station = reading.getStation();
+        StationBaseline baseline = baselines.get(station);
+        if (baseline == null) {
+            baseline = new StationBaseline();
+        }
+
+        check(record, "temperature", baseline.getTemperature(), reading.getTemperature());
+        check(record, "humidity", baseline.getHumidity(), reading.getHumidity());
+
+        baseline.update(reading, alpha);
+        baselines.put(station, baseline);
+    }
+
+    private void check(Record<String, WeatherData> record, String metric, EwmaStats baseline, double value) {
+        if (baseline.getCount() < warmupReadings) {
+            return;
+        }
+        double zScore = baseline.zScore(value);
+        if (Math.abs(zScore) <= zScoreThreshold) {
+            return;
+        }
+        String station = record.value().getStation();
+        String anomaly = toJson(station, metric, record.timestamp(), value, baseline, zScore);
+        PrometheusMetricsServer.recordAnomaly(metric);
+        events.event("anomaly", station, anomaly);
+        context.forward(record.withKey(station).withValue(anomaly));
+    }
+
+    static String toJson(String station, String metric, long timestamp, double value,
+            EwmaStats baseline, double zScore) {
+        StringBuilder json = new StringBuilder(160).append("{\"station\":");
+        StationStats.appendString(json, station);
+        json.append(",\"metric\":\"").append(metric).append("\",\"timestamp\":").append(timestamp);
+        StationStats.appendNumber(json.append(",\"value\":"), value);
+        StationStats.appendNumber(json.append(",\"mean\":"), baseline.getMean());
+        StationStats.appendNumber(json.append(",\"stdDev\":"), baseline.stdDev());
+        StationStats.appendNumber(json.append(",\"zScore\":"), zScore);
+        return json.append('}').toString();
+    }
+}
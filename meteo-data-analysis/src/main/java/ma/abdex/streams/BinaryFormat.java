@@ -0,0 +1,293 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.EwmaStats;
+import ma.abdex.model.Metric;
+import ma.abdex.model.MetricAccumulator;
+import ma.abdex.model.QuantileSketch;
+import ma.abdex.model.WeatherData;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for the compact binary wire format.
+ *
+ * Every binary record starts with a schema-version byte. Versions are kept below
+ * 0x20 so they can never be confused with a JSON document (which starts with '{'),
+ * letting deserializers read changelogs written before the format was switched.
+ */
+public final class BinaryFormat {
+    /** WeatherData: station, temperature, humidity, timestamp */
+    public static final byte WEATHER_DATA_V1 = 0x01;
+    /** WeatherData: v1 followed by the producer send time */
+    public static final byte WEATHER_DATA_V2 = 0x02;
+    /** WeatherData: station, metrics (bitmap and present values), timestamp, sent-at */
+    public static final byte WEATHER_DATA_V3 = 0x03;
+    /** StationStats: station, average temperature, average humidity, count */
+    public static final byte STATION_STATS_V1 = 0x01;
+    /** StationStats: station, count, temperature and humidity accumulators */
+    public static final byte STATION_STATS_V2 = 0x02;
+    /** StationStats: v2 followed by the newest contributing send time (varlong) */
+    public static final byte STATION_STATS_V3 = 0x03;
+    /** StationStats: v3 followed by the temperature and humidity quantile sketches */
+    public static final byte STATION_STATS_V4 = 0x04;
+    /** StationStats: station, count, newest send time, then an accumulator and sketch per reported metric */
+    public static final byte STATION_STATS_V5 = 0x05;
+    /** Reading batch: station, count, base timestamp, then per reading a timestamp delta, temperature, humidity */
+    public static final byte READING_BATCH_V1 = 0x01;
+    /** Reading batch: v1 with the metrics (bitmap and present values) of each reading */
+    public static final byte READING_BATCH_V2 = 0x02;
+    /** StationBaseline: temperature and humidity, each as count (varlong), mean, variance */
+    public static final byte STATION_BASELINE_V1 = 0x01;
+
+    /** Encoded size of a MetricAccumulator, excluding its varint count */
+    public static final int ACCUMULATOR_FIXED_SIZE = 6 * Double.BYTES;
+    /** Encoded size of an EwmaStats, excluding its varlong count */
+    public static final int EWMA_FIXED_SIZE = 2 * Double.BYTES;
+
+    private static final byte JSON_START = '{';
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Whether the record was written by the Jackson serializers
+     */
+    public static boolean isJson(byte[] data) {
+        return data.length > 0 && data[0] == JSON_START;
+    }
+
+    public static boolean isJson(ByteBuffer data) {
+        return data.hasRemaining() && data.get(data.position()) == JSON_START;
+    }
+
+    public static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void writeVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    public static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varlong");
+    }
+
+    /**
+     * Metrics layout: presence bitmap (varint, bit i for the metric of ordinal i),
+     * then the value of every present metric as a double, in ordinal order
+     */
+    public static int metricsSize(WeatherData data) {
+        int present = data.presentMetrics();
+        return varIntSize(present) + Integer.bitCount(present) * Double.BYTES;
+    }
+
+    public static void writeMetrics(ByteBuffer buffer, WeatherData data) {
+        int present = data.presentMetrics();
+        writeVarInt(buffer, present);
+        for (int bits = present; bits != 0; bits &= bits - 1) {
+            buffer.putDouble(data.get(Metric.of(Integer.numberOfTrailingZeros(bits))));
+        }
+    }
+
+    /**
+     * Read metrics into a reading, rejecting bitmaps with metrics this version does not know
+     */
+    public static void readMetrics(ByteBuffer buffer, WeatherData data) {
+        int present = readMetricBitmap(buffer);
+        for (int bits = present; bits != 0; bits &= bits - 1) {
+            data.set(Metric.of(Integer.numberOfTrailingZeros(bits)), buffer.getDouble());
+        }
+    }
+
+    public static int readMetricBitmap(ByteBuffer buffer) {
+        int present = readVarInt(buffer);
+        if ((present & ~Metric.ALL) != 0) {
+            throw new IllegalArgumentException("Unknown metrics in bitmap: 0x" + Integer.toHexString(present));
+        }
+        return present;
+    }
+
+    public static int accumulatorSize(MetricAccumulator accumulator) {
+        return varLongSize(accumulator.getCount()) + ACCUMULATOR_FIXED_SIZE;
+    }
+
+    public static void writeAccumulator(ByteBuffer buffer, MetricAccumulator accumulator) {
+        writeVarLong(buffer, accumulator.getCount());
+        buffer.putDouble(accumulator.getSum());
+        buffer.putDouble(accumulator.getSumCompensation());
+        buffer.putDouble(accumulator.getSumOfSquares());
+        buffer.putDouble(accumulator.getSumOfSquaresCompensation());
+        buffer.putDouble(accumulator.getMin());
+        buffer.putDouble(accumulator.getMax());
+    }
+
+    public static MetricAccumulator readAccumulator(ByteBuffer buffer) {
+        MetricAccumulator accumulator = new MetricAccumulator();
+        accumulator.setCount(readVarLong(buffer));
+        accumulator.setSum(buffer.getDouble());
+        accumulator.setSumCompensation(buffer.getDouble());
+        accumulator.setSumOfSquares(buffer.getDouble());
+        accumulator.setSumOfSquaresCompensation(buffer.getDouble());
+        accumulator.setMin(buffer.getDouble());
+        accumulator.setMax(buffer.getDouble());
+        return accumulator;
+    }
+
+    /**
+     * Sketch layout: relative accuracy (double), max bins (varint), zero count (varlong),
+     * then positive and negative bins, each as zigzag offset (varlong), bin count (varint)
+     * and the bin counts (varlong)
+     */
+    public static int sketchSize(QuantileSketch sketch) {
+        return Double.BYTES + varIntSize(sketch.getMaxBins()) + varLongSize(sketch.getZeroCount())
+                + binsSize(sketch.getPositive()) + binsSize(sketch.getNegative());
+    }
+
+    private static int binsSize(QuantileSketch.Bins bins) {
+        long[] counts = bins.getCounts();
+        int size = varLongSize(zigZag(bins.getOffset())) + varIntSize(counts.length);
+        for (long count : counts) {
+            size += varLongSize(count);
+        }
+        return size;
+    }
+
+    public static void writeSketch(ByteBuffer buffer, QuantileSketch sketch) {
+        buffer.putDouble(sketch.getRelativeAccuracy());
+        writeVarInt(buffer, sketch.getMaxBins());
+        writeVarLong(buffer, sketch.getZeroCount());
+        writeBins(buffer, sketch.getPositive());
+        writeBins(buffer, sketch.getNegative());
+    }
+
+    private static void writeBins(ByteBuffer buffer, QuantileSketch.Bins bins) {
+        long[] counts = bins.getCounts();
+        writeVarLong(buffer, zigZag(bins.getOffset()));
+        writeVarInt(buffer, counts.length);
+        for (long count : counts) {
+            writeVarLong(buffer, count);
+        }
+    }
+
+    public static QuantileSketch readSketch(ByteBuffer buffer) {
+        double relativeAccuracy = buffer.getDouble();
+        QuantileSketch sketch = new QuantileSketch(relativeAccuracy, readVarInt(buffer));
+        sketch.setZeroCount(readVarLong(buffer));
+        sketch.setPositive(readBins(buffer));
+        sketch.setNegative(readBins(buffer));
+        return sketch;
+    }
+
+    private static QuantileSketch.Bins readBins(ByteBuffer buffer) {
+        int offset = (int) unZigZag(readVarLong(buffer));
+        long[] counts = new long[readVarInt(buffer)];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = readVarLong(buffer);
+        }
+        return new QuantileSketch.Bins(offset, counts);
+    }
+
+    public static int ewmaSize(EwmaStats stats) {
+        return varLongSize(stats.getCount()) + EWMA_FIXED_SIZE;
+    }
+
+    public static void writeEwma(ByteBuffer buffer, EwmaStats stats) {
+        writeVarLong(buffer, stats.getCount());
+        buffer.putDouble(stats.getMean());
+        buffer.putDouble(stats.getVariance());
+    }
+
+    public static EwmaStats readEwma(ByteBuffer buffer) {
+        long count = readVarLong(buffer);
+        return new EwmaStats(count, buffer.getDouble(), buffer.getDouble());
+    }
+
+    /**
+     * Zigzag encoding, so small negative deltas also take few varlong bytes
+     */
+    public static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static byte[] encodeString(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Size of a length-prefixed string whose UTF-8 bytes are given
+     */
+    public static int stringSize(byte[] utf8) {
+        return varIntSize(utf8.length) + utf8.length;
+    }
+
+    public static void writeString(ByteBuffer buffer, byte[] utf8) {
+        writeVarInt(buffer, utf8.length);
+        buffer.put(utf8);
+    }
+
+    /**
+     * Read a length-prefixed station name, interning it through the given table
+     */
+    public static String readStation(ByteBuffer buffer, StationNameTable stations) {
+        int length = readVarInt(buffer);
+        int from = buffer.arrayOffset() + buffer.position();
+        String station = stations.intern(buffer.array(), from, from + length);
+        buffer.position(buffer.position() + length);
+        return station;
+    }
+
+    public static IllegalArgumentException unsupportedVersion(String type, byte version) {
+        return new IllegalArgumentException("Unsupported " + type + " schema version: " + version);
+    }
+}
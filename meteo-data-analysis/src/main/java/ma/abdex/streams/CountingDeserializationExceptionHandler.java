@@ -0,0 +1,37 @@
+package ma.abdex.streams;
+
+import ma.abdex.config.AppConfig;
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.ParseError;
+import ma.abdex.util.EventLogger;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.errors.DeserializationExceptionHandler;
+import org.apache.kafka.streams.errors.ErrorHandlerContext;
+
+import java.util.Map;
+
+/**
+ * Handles records that fail deserialization (repartition topics, changelogs):
+ * counts them under the {@code deserialization} reason, logs them rate-limited
+ * without a stack trace, and then skips them or stops the stream thread
+ * according to {@code weather.dlq.deserialization.handler} (continue or fail).
+ */
+public class CountingDeserializationExceptionHandler implements DeserializationExceptionHandler {
+    private static final EventLogger events = EventLogger.getLogger(CountingDeserializationExceptionHandler.class);
+
+    private boolean fail;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        fail = "fail".equalsIgnoreCase(AppConfig.getInstance().getDlqDeserializationHandler().trim());
+    }
+
+    @Override
+    public DeserializationHandlerResponse handle(ErrorHandlerContext context, ConsumerRecord<byte[], byte[]> record,
+            Exception exception) {
+        PrometheusMetricsServer.recordParseError("deserialization");
+        events.event("deserialization_error", context.topic(),
+                context.topic() + "-" + context.partition() + "@" + context.offset() + ": " + exception);
+        return fail ? DeserializationHandlerResponse.FAIL : DeserializationHandlerResponse.CONTINUE;
+    }
+}
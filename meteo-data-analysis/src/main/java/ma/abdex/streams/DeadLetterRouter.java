@@ -0,0 +1,71 @@
+package ma.abdex.streams;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.ParseError;
+import ma.abdex.model.ParseResult;
+import ma.abdex.util.EventLogger;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.processor.api.RecordMetadata;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns rejected records into dead-letter records: the original payload, with
+ * headers telling why and where it was rejected. Every rejection is counted per
+ * reason; with no dead-letter topic configured the records are only counted.
+ */
+public class DeadLetterRouter implements FixedKeyProcessor<String, ParseResult, byte[]> {
+    /** Rejection reason, a {@link ParseError} label */
+    public static final String REASON_HEADER = "weather-error-reason";
+    /** Topic, partition and offset the rejected record was read from */
+    public static final String SOURCE_TOPIC_HEADER = "weather-error-source-topic";
+    public static final String SOURCE_PARTITION_HEADER = "weather-error-source-partition";
+    public static final String SOURCE_OFFSET_HEADER = "weather-error-source-offset";
+
+    private static final EventLogger events = EventLogger.getLogger(DeadLetterRouter.class);
+
+    private final boolean forward;
+    private FixedKeyProcessorContext<String, byte[]> context;
+
+    /**
+     * @param forward whether to forward dead-letter records downstream, or only count them
+     */
+    public DeadLetterRouter(boolean forward) {
+        this.forward = forward;
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, byte[]> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, ParseResult> record) {
+        ParseResult result = record.value();
+        String reason = result.error().label();
+        PrometheusMetricsServer.recordParseError(reason);
+        events.event("parse_error", reason, result);
+        if (!forward) {
+            return;
+        }
+
+        // Copy: the incoming headers are those of the source record
+        RecordHeaders headers = new RecordHeaders(record.headers().toArray());
+        headers.add(REASON_HEADER, utf8(reason));
+        context.recordMetadata().ifPresent(source -> addSource(headers, source));
+        context.forward(record.withValue(result.payload()).withHeaders(headers));
+    }
+
+    private static void addSource(RecordHeaders headers, RecordMetadata source) {
+        headers.add(SOURCE_TOPIC_HEADER, utf8(source.topic()));
+        headers.add(SOURCE_PARTITION_HEADER, utf8(Integer.toString(source.partition())));
+        headers.add(SOURCE_OFFSET_HEADER, utf8(Long.toString(source.offset())));
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
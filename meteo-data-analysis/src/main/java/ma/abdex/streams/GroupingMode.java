@@ -0,0 +1,17 @@
+package ma.abdex.streams;
+
+import java.util.Locale;
+
+/**
+ * How readings are grouped by station before aggregation
+ */
+public enum GroupingMode {
+    /** Re-key by the station field, repartitioning through an internal topic */
+    REPARTITION,
+    /** Trust the record key set by the producer and group without repartitioning */
+    KEY;
+
+    public static GroupingMode fromConfig(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
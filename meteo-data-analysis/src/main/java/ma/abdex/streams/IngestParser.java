@@ -0,0 +1,19 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.ParseResult;
+
+import java.util.Locale;
+
+/**
+ * Parser used to turn raw weather-data records into WeatherData
+ */
+public enum IngestParser {
+    /** Byte-level CSV parsing through {@link WeatherDataCsvDeserializer} */
+    BYTES,
+    /** String deserialization followed by {@link ParseResult#fromCsv(String)} */
+    STRING;
+
+    public static IngestParser fromConfig(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
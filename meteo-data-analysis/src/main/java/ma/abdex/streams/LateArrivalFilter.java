@@ -0,0 +1,58 @@
+package ma.abdex.streams;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.WeatherData;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+/**
+ * Splits readings by event-time lateness relative to the task's stream time.
+ *
+ * A reading is late when its timestamp is older than stream time minus the
+ * allowed lateness. One instance forwards on-time readings, another forwards
+ * the late ones; both see the same stream time, so every reading goes to
+ * exactly one of them.
+ */
+public class LateArrivalFilter implements FixedKeyProcessor<String, WeatherData, WeatherData> {
+    private final long allowedLatenessMs;
+    private final boolean forwardLate;
+    private final String lateAction;
+    private FixedKeyProcessorContext<String, WeatherData> context;
+
+    private LateArrivalFilter(long allowedLatenessMs, boolean forwardLate, String lateAction) {
+        this.allowedLatenessMs = allowedLatenessMs;
+        this.forwardLate = forwardLate;
+        this.lateAction = lateAction;
+    }
+
+    /**
+     * Forwards on-time readings; late ones are discarded and, if an action is
+     * given, counted under it
+     */
+    public static LateArrivalFilter onTime(long allowedLatenessMs, String lateAction) {
+        return new LateArrivalFilter(allowedLatenessMs, false, lateAction);
+    }
+
+    /**
+     * Forwards only late readings
+     */
+    public static LateArrivalFilter late(long allowedLatenessMs) {
+        return new LateArrivalFilter(allowedLatenessMs, true, null);
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, WeatherData> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, WeatherData> record) {
+        boolean late = record.timestamp() < context.currentStreamTimeMs() - allowedLatenessMs;
+        if (late == forwardLate) {
+            context.forward(record);
+        } else if (late && lateAction != null) {
+            PrometheusMetricsServer.recordLateArrival(lateAction);
+        }
+    }
+}
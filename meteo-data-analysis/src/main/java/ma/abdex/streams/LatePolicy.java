@@ -0,0 +1,19 @@
+package ma.abdex.streams;
+
+import java.util.Locale;
+
+/**
+ * What to do with readings that arrive after the allowed lateness
+ */
+public enum LatePolicy {
+    /** Pass everything through; windows still drop records past their grace period */
+    ACCEPT,
+    /** Drop late readings before aggregation */
+    DROP,
+    /** Route late readings to a separate topic instead of aggregating them */
+    SIDE_OUTPUT;
+
+    public static LatePolicy fromConfig(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,31 @@
+package ma.abdex.streams;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+/**
+ * Supplies {@link OffHeapKeyValueStore}s, for use with {@code Materialized.as(supplier)}
+ */
+public class OffHeapKeyValueBytesStoreSupplier implements KeyValueBytesStoreSupplier {
+    private final String name;
+
+    public OffHeapKeyValueBytesStoreSupplier(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public KeyValueStore<Bytes, byte[]> get() {
+        return new OffHeapKeyValueStore(name);
+    }
+
+    @Override
+    public String metricsScope() {
+        return "off-heap";
+    }
+}
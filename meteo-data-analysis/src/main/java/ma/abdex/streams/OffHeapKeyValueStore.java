@@ -0,0 +1,450 @@
+package ma.abdex.streams;
+
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.query.Position;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Key-value store holding its entries outside the Java heap, so that millions
+ * of station aggregates neither weigh on the garbage collector nor pay RocksDB's
+ * JNI calls.
+ *
+ * Entries are appended to direct-memory pages and found through an
+ * open-addressing index (linear probing, backward-shift deletion) that is
+ * itself off-heap. Each entry reserves a quarter more room than its value
+ * needs, so aggregates that grow a little are rewritten in place; one that
+ * outgrows its room moves to the end of the arena, and the arena is compacted
+ * once moved and deleted entries outweigh the live ones.
+ *
+ * Nothing is written to disk: the store is not persistent, and after a restart
+ * Kafka Streams rebuilds it from its changelog topic. Lookups and writes are
+ * hash-based; range scans sort a snapshot of the entries, which suits the
+ * occasional interactive query. Methods are synchronized, as queries read the
+ * store from other threads.
+ */
+public class OffHeapKeyValueStore implements KeyValueStore<Bytes, byte[]> {
+    // Entry header: key length, value capacity, value length
+    private static final int HEADER = 12;
+    private static final int MIN_PAGE_SIZE = 1 << 16;
+    private static final int MAX_PAGE_SIZE = 1 << 26;
+    private static final int INITIAL_SLOTS = 1 << 10;
+    private static final float MAX_LOAD = 0.6f;
+    // Compaction threshold, so that small stores do not compact over and over
+    private static final long MIN_GARBAGE_BYTES = 1 << 20;
+
+    private final String name;
+    private Position position = Position.emptyPosition();
+    private StateStoreContext context;
+    private volatile boolean open;
+
+    // Index slot i holds the address of its entry plus one (0 when empty) and the key's hash
+    private ByteBuffer slots;
+    private ByteBuffer hashes;
+    private int mask;
+    private int size;
+
+    // Entry address: page index in the high 32 bits, offset in the page in the low 32 bits
+    private List<ByteBuffer> pages = new ArrayList<>();
+    private long liveBytes;
+    private long garbageBytes;
+
+    public OffHeapKeyValueStore(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public synchronized void init(StateStoreContext context, StateStore root) {
+        this.context = context;
+        allocateIndex(INITIAL_SLOTS);
+        if (root != null) {
+            context.register(root, (key, value) -> {
+                if (value == null) {
+                    remove(key);
+                } else {
+                    write(key, value);
+                }
+            });
+        }
+        open = true;
+    }
+
+    @Override
+    public synchronized byte[] get(Bytes key) {
+        int slot = find(key.get(), hash(key.get()));
+        if (slot < 0) {
+            return null;
+        }
+        long address = slots.getLong(slot * 8) - 1;
+        ByteBuffer page = page(address);
+        int offset = offset(address);
+        byte[] value = new byte[page.getInt(offset + 8)];
+        page.get(offset + HEADER + page.getInt(offset), value);
+        return value;
+    }
+
+    @Override
+    public synchronized void put(Bytes key, byte[] value) {
+        if (value == null) {
+            remove(key.get());
+        } else {
+            write(key.get(), value);
+        }
+        updatePosition();
+    }
+
+    @Override
+    public synchronized byte[] putIfAbsent(Bytes key, byte[] value) {
+        byte[] existing = get(key);
+        if (existing == null && value != null) {
+            put(key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public synchronized void putAll(List<KeyValue<Bytes, byte[]>> entries) {
+        for (KeyValue<Bytes, byte[]> entry : entries) {
+            put(entry.key, entry.value);
+        }
+    }
+
+    @Override
+    public synchronized byte[] delete(Bytes key) {
+        byte[] existing = get(key);
+        remove(key.get());
+        updatePosition();
+        return existing;
+    }
+
+    @Override
+    public synchronized KeyValueIterator<Bytes, byte[]> range(Bytes from, Bytes to) {
+        return new SnapshotIterator(scan(from, to, null, false));
+    }
+
+    @Override
+    public synchronized KeyValueIterator<Bytes, byte[]> reverseRange(Bytes from, Bytes to) {
+        return new SnapshotIterator(scan(from, to, null, true));
+    }
+
+    @Override
+    public synchronized KeyValueIterator<Bytes, byte[]> all() {
+        return new SnapshotIterator(scan(null, null, null, false));
+    }
+
+    @Override
+    public synchronized KeyValueIterator<Bytes, byte[]> reverseAll() {
+        return new SnapshotIterator(scan(null, null, null, true));
+    }
+
+    @Override
+    public synchronized <PS extends Serializer<P>, P> KeyValueIterator<Bytes, byte[]> prefixScan(P prefix,
+            PS prefixKeySerializer) {
+        byte[] prefixBytes = prefixKeySerializer.serialize(null, prefix);
+        return new SnapshotIterator(scan(null, null, prefixBytes, false));
+    }
+
+    @Override
+    public long approximateNumEntries() {
+        return size;
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to flush: recovery relies on the changelog
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        // Direct memory is released once the buffers are collected
+        slots = null;
+        hashes = null;
+        pages = new ArrayList<>();
+        size = 0;
+        liveBytes = 0;
+        garbageBytes = 0;
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Position getPosition() {
+        return position;
+    }
+
+    private void updatePosition() {
+        if (context != null) {
+            context.recordMetadata().ifPresent(metadata ->
+                    position = position.withComponent(metadata.topic(), metadata.partition(), metadata.offset()));
+        }
+    }
+
+    private void write(byte[] key, byte[] value) {
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot >= 0) {
+            long address = slots.getLong(slot * 8) - 1;
+            ByteBuffer page = page(address);
+            int offset = offset(address);
+            if (value.length <= page.getInt(offset + 4)) {
+                page.putInt(offset + 8, value.length);
+                page.put(offset + HEADER + key.length, value);
+                return;
+            }
+            // Outgrew its room: leave the old entry behind and append a larger one
+            int entrySize = entrySize(page, offset);
+            liveBytes -= entrySize;
+            garbageBytes += entrySize;
+            slots.putLong(slot * 8, append(key, value, capacity(value.length)) + 1);
+            maybeCompact();
+            return;
+        }
+
+        slot = -slot - 1;
+        slots.putLong(slot * 8, append(key, value, capacity(value.length)) + 1);
+        hashes.putInt(slot * 4, hash);
+        if (++size > (mask + 1) * MAX_LOAD) {
+            resize((mask + 1) * 2);
+        }
+    }
+
+    private void remove(byte[] key) {
+        int slot = find(key, hash(key));
+        if (slot < 0) {
+            return;
+        }
+        long address = slots.getLong(slot * 8) - 1;
+        int entrySize = entrySize(page(address), offset(address));
+        liveBytes -= entrySize;
+        garbageBytes += entrySize;
+        size--;
+
+        // Backward-shift deletion: pull later entries of the probe run into the hole
+        int hole = slot;
+        for (int i = (slot + 1) & mask; slots.getLong(i * 8) != 0; i = (i + 1) & mask) {
+            int home = hashes.getInt(i * 4) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                slots.putLong(hole * 8, slots.getLong(i * 8));
+                hashes.putInt(hole * 4, hashes.getInt(i * 4));
+                hole = i;
+            }
+        }
+        slots.putLong(hole * 8, 0);
+        maybeCompact();
+    }
+
+    /**
+     * Slot holding the key, or {@code -(insertion slot) - 1} when absent
+     */
+    private int find(byte[] key, int hash) {
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            long entry = slots.getLong(i * 8);
+            if (entry == 0) {
+                return -i - 1;
+            }
+            if (hashes.getInt(i * 4) == hash && keyEquals(entry - 1, key)) {
+                return i;
+            }
+        }
+    }
+
+    private boolean keyEquals(long address, byte[] key) {
+        ByteBuffer page = page(address);
+        int offset = offset(address);
+        if (page.getInt(offset) != key.length) {
+            return false;
+        }
+        int start = offset + HEADER;
+        for (int i = 0; i < key.length; i++) {
+            if (page.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long append(byte[] key, byte[] value, int capacity) {
+        int entrySize = HEADER + key.length + capacity;
+        ByteBuffer page = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+        if (page == null || page.remaining() < entrySize) {
+            int pageSize = page == null ? MIN_PAGE_SIZE : Math.min(page.capacity() * 2, MAX_PAGE_SIZE);
+            page = ByteBuffer.allocateDirect(Math.max(pageSize, entrySize));
+            pages.add(page);
+        }
+        int offset = page.position();
+        page.putInt(offset, key.length);
+        page.putInt(offset + 4, capacity);
+        page.putInt(offset + 8, value.length);
+        page.put(offset + HEADER, key);
+        page.put(offset + HEADER + key.length, value);
+        page.position(offset + entrySize);
+        liveBytes += entrySize;
+        return (long) (pages.size() - 1) << 32 | offset;
+    }
+
+    private void allocateIndex(int capacity) {
+        slots = ByteBuffer.allocateDirect(capacity * 8);
+        hashes = ByteBuffer.allocateDirect(capacity * 4);
+        mask = capacity - 1;
+    }
+
+    private void resize(int capacity) {
+        ByteBuffer oldSlots = slots;
+        ByteBuffer oldHashes = hashes;
+        int oldCapacity = mask + 1;
+        allocateIndex(capacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            long entry = oldSlots.getLong(i * 8);
+            if (entry != 0) {
+                int hash = oldHashes.getInt(i * 4);
+                int slot = hash & mask;
+                while (slots.getLong(slot * 8) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots.putLong(slot * 8, entry);
+                hashes.putInt(slot * 4, hash);
+            }
+        }
+    }
+
+    // Copy live entries into fresh pages once moved and deleted ones outweigh them
+    private void maybeCompact() {
+        if (garbageBytes < MIN_GARBAGE_BYTES || garbageBytes < liveBytes) {
+            return;
+        }
+        List<ByteBuffer> oldPages = pages;
+        pages = new ArrayList<>();
+        liveBytes = 0;
+        garbageBytes = 0;
+        for (int i = 0; i <= mask; i++) {
+            long entry = slots.getLong(i * 8);
+            if (entry != 0) {
+                ByteBuffer page = oldPages.get((int) ((entry - 1) >>> 32));
+                int offset = (int) (entry - 1);
+                byte[] key = new byte[page.getInt(offset)];
+                byte[] value = new byte[page.getInt(offset + 8)];
+                page.get(offset + HEADER, key);
+                page.get(offset + HEADER + key.length, value);
+                slots.putLong(i * 8, append(key, value, page.getInt(offset + 4)) + 1);
+            }
+        }
+    }
+
+    private List<KeyValue<Bytes, byte[]>> scan(Bytes from, Bytes to, byte[] prefix, boolean reverse) {
+        List<KeyValue<Bytes, byte[]>> entries = new ArrayList<>();
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            return entries;
+        }
+        for (int i = 0; i <= mask; i++) {
+            long entry = slots.getLong(i * 8);
+            if (entry == 0) {
+                continue;
+            }
+            ByteBuffer page = page(entry - 1);
+            int offset = offset(entry - 1);
+            byte[] key = new byte[page.getInt(offset)];
+            page.get(offset + HEADER, key);
+            Bytes wrapped = Bytes.wrap(key);
+            if (from != null && wrapped.compareTo(from) < 0 || to != null && wrapped.compareTo(to) > 0
+                    || prefix != null && !startsWith(key, prefix)) {
+                continue;
+            }
+            byte[] value = new byte[page.getInt(offset + 8)];
+            page.get(offset + HEADER + key.length, value);
+            entries.add(KeyValue.pair(wrapped, value));
+        }
+        entries.sort((a, b) -> a.key.compareTo(b.key));
+        if (reverse) {
+            Collections.reverse(entries);
+        }
+        return entries;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private ByteBuffer page(long address) {
+        return pages.get((int) (address >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int entrySize(ByteBuffer page, int offset) {
+        return HEADER + page.getInt(offset) + page.getInt(offset + 4);
+    }
+
+    // Room for the value plus a quarter, rounded up to 8 bytes
+    private static int capacity(int valueLength) {
+        return (valueLength + (valueLength >> 2) + 7) & ~7;
+    }
+
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Iterator over entries copied out of the store when the scan started
+     */
+    private static final class SnapshotIterator implements KeyValueIterator<Bytes, byte[]> {
+        private final List<KeyValue<Bytes, byte[]>> entries;
+        private int next;
+
+        SnapshotIterator(List<KeyValue<Bytes, byte[]>> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < entries.size();
+        }
+
+        @Override
+        public KeyValue<Bytes, byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return entries.get(next++);
+        }
+
+        @Override
+        public Bytes peekNextKey() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return entries.get(next).key;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ma.abdex.streams;
+
+import java.util.Locale;
+
+/**
+ * Encoding of the all-time aggregates written to the output topic
+ */
+public enum OutputFormat {
+    /** Human-readable sentence (StationStats.toString()), for the console consumer */
+    TEXT,
+    /** Flat JSON object (StationStats.toJson()), locale-independent */
+    JSON,
+    /** The versioned binary aggregate encoding, read back by StationStatsDeserializer */
+    BINARY;
+
+    public static OutputFormat fromConfig(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
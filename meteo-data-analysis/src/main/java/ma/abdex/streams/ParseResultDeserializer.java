@@ -0,0 +1,25 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.ParseError;
+import ma.abdex.model.ParseResult;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Parses weather-data CSV records into a {@link ParseResult}; never throws.
+ * Failures carry the original record value so it can be dead-lettered.
+ */
+public class ParseResultDeserializer implements Deserializer<ParseResult> {
+    private final WeatherDataCsvDeserializer csv;
+
+    public ParseResultDeserializer(StationNameTable stations) {
+        this.csv = new WeatherDataCsvDeserializer(stations);
+    }
+
+    @Override
+    public ParseResult deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return ParseResult.failed(ParseError.MALFORMED);
+        }
+        return csv.tryParse(data, 0, data.length).withPayload(data);
+    }
+}
@@ -0,0 +1,24 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.ParseResult;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a parse result back as it was read: the original payload of a
+ * failure, or the CSV form of a parsed reading
+ */
+public class ParseResultSerializer implements Serializer<ParseResult> {
+
+    @Override
+    public byte[] serialize(String topic, ParseResult result) {
+        if (result == null) {
+            return null;
+        }
+        if (!result.isOk()) {
+            return result.payload();
+        }
+        return result.value().toCsv().getBytes(StandardCharsets.UTF_8);
+    }
+}
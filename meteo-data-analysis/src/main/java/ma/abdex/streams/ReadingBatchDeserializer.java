@@ -0,0 +1,131 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.Metric;
+import ma.abdex.model.ParseError;
+import ma.abdex.model.ParseResult;
+import ma.abdex.model.WeatherData;
+import ma.abdex.util.EventLogger;
+import ma.abdex.util.ValidationUtils;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deserializer for batches written by {@link ReadingBatchSerializer}.
+ *
+ * Like {@link WeatherDataCsvDeserializer} it never throws. {@link #tryParse}
+ * reports every rejection as a failed {@link ParseResult}, so batches go
+ * through the same dead-letter routing as CSV records: a malformed batch or
+ * one with an invalid station is a single failure carrying the whole batch,
+ * and a reading without temperature and humidity, with a metric outside its
+ * valid range or with a measurement time rejected by
+ * {@link ValidationUtils#checkTimestamp} is a failure carrying the reading as CSV.
+ */
+public class ReadingBatchDeserializer implements Deserializer<List<WeatherData>> {
+    private static final EventLogger events = EventLogger.getLogger(ReadingBatchDeserializer.class);
+
+    // Smallest encoded reading: one-byte delta and two doubles (v1), or one-byte delta and bitmap (v2)
+    private static final int MIN_READING_SIZE_V1 = 1 + 2 * Double.BYTES;
+    private static final int MIN_READING_SIZE_V2 = 2;
+
+    private final StationNameTable stations;
+
+    public ReadingBatchDeserializer() {
+        this(new StationNameTable());
+    }
+
+    public ReadingBatchDeserializer(StationNameTable stations) {
+        this.stations = stations;
+    }
+
+    /**
+     * The valid readings of a batch, or null if the batch is rejected as a whole
+     */
+    @Override
+    public List<WeatherData> deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        List<ParseResult> results = tryParse(data);
+        List<WeatherData> readings = new ArrayList<>(results.size());
+        for (ParseResult result : results) {
+            if (result.isOk()) {
+                readings.add(result.value());
+            } else {
+                events.event("parse_error", result.error().label(), result);
+            }
+        }
+        // A batch rejected as a whole is a single failure carrying the batch
+        return results.size() == 1 && results.get(0).payload() == data ? null : readings;
+    }
+
+    /**
+     * Decode a batch into one result per reading, in batch order
+     */
+    public List<ParseResult> tryParse(byte[] data) {
+        try {
+            return parseBinary(ByteBuffer.wrap(data), data);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | BufferUnderflowException e) {
+            return List.of(ParseResult.failed(ParseError.MALFORMED, data));
+        }
+    }
+
+    private List<ParseResult> parseBinary(ByteBuffer buffer, byte[] data) {
+        byte version = buffer.get();
+        if (version != BinaryFormat.READING_BATCH_V1 && version != BinaryFormat.READING_BATCH_V2) {
+            throw BinaryFormat.unsupportedVersion("ReadingBatch", version);
+        }
+        String station = BinaryFormat.readStation(buffer, stations);
+        ParseError error = ValidationUtils.checkStation(station);
+        if (error != null) {
+            return List.of(ParseResult.failed(error, data));
+        }
+        int count = BinaryFormat.readVarInt(buffer);
+        int minReadingSize = version == BinaryFormat.READING_BATCH_V1 ? MIN_READING_SIZE_V1 : MIN_READING_SIZE_V2;
+        if (count < 0 || count > buffer.remaining() / minReadingSize) {
+            throw new IllegalArgumentException("Reading count " + count + " exceeds batch size");
+        }
+
+        List<ParseResult> results = new ArrayList<>(count);
+        long timestamp = BinaryFormat.readVarLong(buffer);
+        for (int i = 0; i < count; i++) {
+            timestamp += BinaryFormat.unZigZag(BinaryFormat.readVarLong(buffer));
+            WeatherData reading = new WeatherData();
+            reading.setStation(station);
+            reading.setTimestamp(timestamp);
+            if (version == BinaryFormat.READING_BATCH_V1) {
+                reading.setTemperature(buffer.getDouble());
+                reading.setHumidity(buffer.getDouble());
+            } else {
+                BinaryFormat.readMetrics(buffer, reading);
+            }
+            error = check(reading);
+            results.add(error == null ? ParseResult.ok(reading)
+                    : ParseResult.failed(error, reading.toCsv().getBytes(StandardCharsets.UTF_8)));
+        }
+        return results;
+    }
+
+    private static ParseError check(WeatherData reading) {
+        // Readings without a measurement time fall back to the record time
+        if (reading.getTimestamp() > 0 && ValidationUtils.checkTimestamp(reading.getTimestamp()) != null) {
+            return ParseError.INVALID_TIMESTAMP;
+        }
+        int present = reading.presentMetrics();
+        if ((present & Metric.REQUIRED) != Metric.REQUIRED) {
+            return ParseError.MALFORMED;
+        }
+        for (int bits = present; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            ParseError error = ValidationUtils.checkMetric(metric, reading.get(metric));
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,46 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.ParseResult;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+/**
+ * Fans a reading batch out into individual parse results.
+ *
+ * Each reading is forwarded with its own measurement time as record timestamp,
+ * so windows and late-arrival handling see the same event time as for readings
+ * sent one by one, including the cap on future measurement times. Rejected batches and readings are forwarded as failures, to
+ * be counted and dead-lettered like rejected CSV records. Headers (including
+ * the send time) are those of the batch.
+ */
+public class ReadingBatchExpander implements FixedKeyProcessor<String, byte[], ParseResult> {
+    private final ReadingBatchDeserializer deserializer;
+    private final long maxFutureSkewMs;
+    private FixedKeyProcessorContext<String, ParseResult> context;
+
+    /**
+     * @param maxFutureSkewMs how far ahead of the clock a measurement time may be used as event time
+     */
+    public ReadingBatchExpander(StationNameTable stations, long maxFutureSkewMs) {
+        this.deserializer = new ReadingBatchDeserializer(stations);
+        this.maxFutureSkewMs = maxFutureSkewMs;
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, ParseResult> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, byte[]> record) {
+        if (record.value() == null) {
+            return;
+        }
+        for (ParseResult result : deserializer.tryParse(record.value())) {
+            long timestamp = result.isOk() ? WeatherTimestampExtractor.eventTime(
+                    result.value().getTimestamp(), record.timestamp(), maxFutureSkewMs) : record.timestamp();
+            context.forward(record.withValue(result).withTimestamp(timestamp));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.WeatherData;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Serializer for a batch of readings of one station, packed into a single record.
+ *
+ * The station name is written once and measurement times as zigzag varlong
+ * deltas from the previous reading, so a reading costs about 18 bytes instead
+ * of a full CSV record with its own key, headers and record overhead.
+ */
+public class ReadingBatchSerializer implements Serializer<List<WeatherData>> {
+
+    /**
+     * Layout (v2): version, station (varint length + UTF-8), count (varint),
+     * base timestamp (varlong), then per reading: timestamp delta (zigzag varlong),
+     * metrics (bitmap + present values). The station is taken from the first reading.
+     */
+    @Override
+    public byte[] serialize(String topic, List<WeatherData> readings) {
+        if (readings == null || readings.isEmpty()) {
+            return null;
+        }
+        byte[] station = BinaryFormat.encodeString(readings.get(0).getStation());
+        long base = readings.get(0).getTimestamp();
+
+        int size = 1 + BinaryFormat.stringSize(station) + BinaryFormat.varIntSize(readings.size())
+                + BinaryFormat.varLongSize(base);
+        long previous = base;
+        for (WeatherData reading : readings) {
+            size += BinaryFormat.varLongSize(BinaryFormat.zigZag(reading.getTimestamp() - previous))
+                    + BinaryFormat.metricsSize(reading);
+            previous = reading.getTimestamp();
+        }
+
+        byte[] bytes = new byte[size];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.put(BinaryFormat.READING_BATCH_V2);
+        BinaryFormat.writeString(buffer, station);
+        BinaryFormat.writeVarInt(buffer, readings.size());
+        BinaryFormat.writeVarLong(buffer, base);
+        previous = base;
+        for (WeatherData reading : readings) {
+            BinaryFormat.writeVarLong(buffer, BinaryFormat.zigZag(reading.getTimestamp() - previous));
+            BinaryFormat.writeMetrics(buffer, reading);
+            previous = reading.getTimestamp();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,39 @@
+package ma.abdex.streams;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Record header carrying the producer send time (epoch millis, 8 bytes big-endian).
+ *
+ * Generators stamp it on every reading; the topology copies it into the reading,
+ * carries the newest one through StationStats and stamps it again on output
+ * records, so latency can be measured at every stage and by downstream consumers.
+ */
+public final class SendTimeHeader {
+    public static final String NAME = "weather-sent-at";
+
+    private SendTimeHeader() {
+    }
+
+    /**
+     * Set the header, replacing any previous value
+     */
+    public static void stamp(Headers headers, long sentAtMillis) {
+        headers.remove(NAME);
+        headers.add(NAME, ByteBuffer.allocate(Long.BYTES).putLong(sentAtMillis).array());
+    }
+
+    /**
+     * Send time from the header, or 0 when absent or malformed
+     */
+    public static long read(Headers headers) {
+        Header header = headers.lastHeader(NAME);
+        if (header == null || header.value() == null || header.value().length != Long.BYTES) {
+            return 0;
+        }
+        return ByteBuffer.wrap(header.value()).getLong();
+    }
+}
@@ -0,0 +1,66 @@
+package ma.abdex.streams;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+/**
+ * End-to-end latency checkpoints at the edges of the topology.
+ *
+ * {@link Readings} runs right after parsing: it copies the send-time header into
+ * the reading, so it survives the repartition and aggregation, and records the
+ * parse stage. {@link Output} runs right before the output topic: it records the
+ * output stage for the newest reading behind an aggregate and stamps that send
+ * time on the output record for downstream consumers.
+ */
+public final class SendTimeTracker {
+
+    private SendTimeTracker() {
+    }
+
+    public static class Readings implements FixedKeyProcessor<String, WeatherData, WeatherData> {
+        private FixedKeyProcessorContext<String, WeatherData> context;
+
+        @Override
+        public void init(FixedKeyProcessorContext<String, WeatherData> context) {
+            this.context = context;
+        }
+
+        @Override
+        public void process(FixedKeyRecord<String, WeatherData> record) {
+            long sentAt = SendTimeHeader.read(record.headers());
+            if (sentAt > 0) {
+                record.value().setSentAt(sentAt);
+                PrometheusMetricsServer.recordEndToEndLatency("parse", sentAt);
+            }
+            context.forward(record);
+        }
+    }
+
+    public static class Output implements FixedKeyProcessor<String, StationStats, StationStats> {
+        private FixedKeyProcessorContext<String, StationStats> context;
+
+        @Override
+        public void init(FixedKeyProcessorContext<String, StationStats> context) {
+            this.context = context;
+        }
+
+        @Override
+        public void process(FixedKeyRecord<String, StationStats> record) {
+            long sentAt = record.value() == null ? 0 : record.value().getLatestSentAt();
+            if (sentAt <= 0) {
+                context.forward(record);
+                return;
+            }
+            PrometheusMetricsServer.recordEndToEndLatency("output", sentAt);
+            // Copy: the incoming headers may be shared with the record that triggered the update
+            RecordHeaders headers = new RecordHeaders(record.headers().toArray());
+            SendTimeHeader.stamp(headers, sentAt);
+            context.forward(record.withHeaders(headers));
+        }
+    }
+}
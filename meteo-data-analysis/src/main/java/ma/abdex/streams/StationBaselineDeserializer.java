@@ -0,0 +1,28 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.EwmaStats;
+import ma.abdex.model.StationBaseline;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary deserializer for the anomaly detector's per-station baselines
+ */
+public class StationBaselineDeserializer implements Deserializer<StationBaseline> {
+
+    @Override
+    public StationBaseline deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte version = buffer.get();
+        if (version != BinaryFormat.STATION_BASELINE_V1) {
+            throw BinaryFormat.unsupportedVersion("StationBaseline", version);
+        }
+        EwmaStats temperature = BinaryFormat.readEwma(buffer);
+        EwmaStats humidity = BinaryFormat.readEwma(buffer);
+        return new StationBaseline(temperature, humidity);
+    }
+}
@@ -0,0 +1,29 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.StationBaseline;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary serializer for the anomaly detector's per-station baselines
+ */
+public class StationBaselineSerializer implements Serializer<StationBaseline> {
+
+    /**
+     * Layout (v1): version, temperature baseline, humidity baseline
+     */
+    @Override
+    public byte[] serialize(String topic, StationBaseline data) {
+        if (data == null) {
+            return null;
+        }
+        byte[] bytes = new byte[1 + BinaryFormat.ewmaSize(data.getTemperature())
+                + BinaryFormat.ewmaSize(data.getHumidity())];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.put(BinaryFormat.STATION_BASELINE_V1);
+        BinaryFormat.writeEwma(buffer, data.getTemperature());
+        BinaryFormat.writeEwma(buffer, data.getHumidity());
+        return bytes;
+    }
+}
@@ -0,0 +1,84 @@
+package ma.abdex.streams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free intern table for station names read from raw record bytes.
+ * Known stations resolve to the same String instance without allocating; once
+ * the table is full, unknown names are still decoded but no longer interned.
+ */
+public class StationNameTable {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+
+    public StationNameTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StationNameTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Station table capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Resolve the ASCII station name stored in data[from, to) to a String,
+     * reusing a previously interned instance when one exists.
+     */
+    public String intern(byte[] data, int from, int to) {
+        int hash = hash(data, from, to);
+        int index = hash & mask;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            String existing = slots.get(index);
+            if (existing == null) {
+                String station = new String(data, from, to - from, StandardCharsets.US_ASCII);
+                if (slots.compareAndSet(index, null, station)) {
+                    return station;
+                }
+                existing = slots.get(index);
+            }
+            if (matches(existing, data, from, to)) {
+                return existing;
+            }
+            index = (index + 1) & mask;
+        }
+        // Table saturated around this hash - decode without interning
+        return new String(data, from, to - from, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Number of slots in the table
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private static boolean matches(String station, byte[] data, int from, int to) {
+        int length = to - from;
+        if (station.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (station.charAt(i) != data[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] data, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + data[i];
+        }
+        return h ^ (h >>> 16);
+    }
+}
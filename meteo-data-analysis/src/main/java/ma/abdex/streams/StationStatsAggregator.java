@@ -0,0 +1,67 @@
+package ma.abdex.streams;
+
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import ma.abdex.util.EventLogger;
+import org.apache.kafka.streams.kstream.Aggregator;
+
+/**
+ * Aggregator folding weather readings into the running statistics of a station.
+ * The aggregate is freshly deserialized from the store for every call, so it is
+ * updated in place rather than copied.
+ *
+ * Consequently, when the table sends old values (suppression turns them on), the
+ * {@code Change} forwarded for an uncached update carries this same instance as
+ * both old and new value. The aggregated tables must therefore only be consumed
+ * as a stream of new values ({@code toStream}, suppression buffers); anything
+ * that compares old and new aggregates (a {@code KTable} join, {@code groupBy}
+ * with subtraction, a filter relying on retractions) needs a copy-on-write
+ * aggregator instead.
+ */
+public class StationStatsAggregator implements Aggregator<String, WeatherData, StationStats> {
+    private static final EventLogger events = EventLogger.getLogger(StationStatsAggregator.class);
+
+    private final boolean publishUpdates;
+
+    /**
+     * Aggregator for the all-time table, logging and recording metrics for every update
+     */
+    public StationStatsAggregator() {
+        this(true);
+    }
+
+    private StationStatsAggregator(boolean publishUpdates) {
+        this.publishUpdates = publishUpdates;
+    }
+
+    /**
+     * Aggregator for windowed tables, without per-update logging or metrics
+     */
+    public static StationStatsAggregator windowed() {
+        return new StationStatsAggregator(false);
+    }
+
+    @Override
+    public StationStats apply(String key, WeatherData newData, StationStats aggregate) {
+        // The key may be an ID placeholder (see StationDirectory), the reading always has the name
+        String station = newData.getStation();
+        aggregate.setStation(station);
+        aggregate.add(newData);
+
+        if (!publishUpdates) {
+            return aggregate;
+        }
+
+        events.event("aggregated", station, aggregate);
+
+        // Readings reach the aggregator after the repartition hop (or straight from the source in key mode)
+        PrometheusMetricsServer.recordEndToEndLatency("repartition", newData.getSentAt());
+
+        // Record Prometheus metrics for aggregation
+        PrometheusMetricsServer.recordAggregatedStats(station, aggregate.getAvgTemperatureCelsius(),
+                aggregate.getAvgHumidity(), aggregate.getCount());
+
+        return aggregate;
+    }
+}
@@ -1,14 +1,22 @@
 package ma.abdex.streams;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import ma.abdex.model.Metric;
+import ma.abdex.model.MetricAccumulator;
+import ma.abdex.model.QuantileSketch;
 import ma.abdex.model.StationStats;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Deserializer;
 
+import java.nio.ByteBuffer;
+
 /**
- * Custom deserializer for StationStats objects
+ * Custom deserializer for StationStats objects.
+ * Reads both the JSON and the binary wire format, whichever the record was written in.
  */
 public class StationStatsDeserializer implements Deserializer<StationStats> {
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StationNameTable stations = new StationNameTable();
 
     @Override
     public StationStats deserialize(String topic, byte[] data) {
@@ -16,9 +24,79 @@ public class StationStatsDeserializer implements Deserializer<StationStats> {
             return null;
         }
         try {
-            return objectMapper.readValue(data, StationStats.class);
+            if (BinaryFormat.isJson(data)) {
+                return objectMapper.readValue(data, StationStats.class);
+            }
+            return deserializeBinary(ByteBuffer.wrap(data));
         } catch (Exception e) {
             throw new RuntimeException("Error deserializing StationStats", e);
         }
     }
+
+    /**
+     * Binary records backed by a heap buffer, as consumers hand them over, are
+     * decoded in place rather than copied out first
+     */
+    @Override
+    public StationStats deserialize(String topic, Headers headers, ByteBuffer data) {
+        if (data == null || !data.hasArray() || BinaryFormat.isJson(data)) {
+            return Deserializer.super.deserialize(topic, headers, data);
+        }
+        try {
+            return deserializeBinary(data.duplicate());
+        } catch (Exception e) {
+            throw new RuntimeException("Error deserializing StationStats", e);
+        }
+    }
+
+    private StationStats deserializeBinary(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version == BinaryFormat.STATION_STATS_V5) {
+            String station = BinaryFormat.readStation(buffer, stations);
+            long count = BinaryFormat.readVarLong(buffer);
+            long latestSentAt = BinaryFormat.readVarLong(buffer);
+            MetricAccumulator[] accumulators = new MetricAccumulator[Metric.COUNT];
+            QuantileSketch[] sketches = new QuantileSketch[Metric.COUNT];
+            for (int bits = BinaryFormat.readMetricBitmap(buffer); bits != 0; bits &= bits - 1) {
+                int i = Integer.numberOfTrailingZeros(bits);
+                accumulators[i] = BinaryFormat.readAccumulator(buffer);
+                sketches[i] = BinaryFormat.readSketch(buffer);
+            }
+            StationStats stats = new StationStats(station, count, accumulators, sketches);
+            stats.setLatestSentAt(latestSentAt);
+            return stats;
+        }
+        if (version == BinaryFormat.STATION_STATS_V4) {
+            String station = BinaryFormat.readStation(buffer, stations);
+            long count = BinaryFormat.readVarLong(buffer);
+            MetricAccumulator temperature = BinaryFormat.readAccumulator(buffer);
+            MetricAccumulator humidity = BinaryFormat.readAccumulator(buffer);
+            long latestSentAt = BinaryFormat.readVarLong(buffer);
+            QuantileSketch temperatureSketch = BinaryFormat.readSketch(buffer);
+            QuantileSketch humiditySketch = BinaryFormat.readSketch(buffer);
+            StationStats stats = new StationStats(station, count, temperature, humidity,
+                    temperatureSketch, humiditySketch);
+            stats.setLatestSentAt(latestSentAt);
+            return stats;
+        }
+        if (version == BinaryFormat.STATION_STATS_V3 || version == BinaryFormat.STATION_STATS_V2) {
+            String station = BinaryFormat.readStation(buffer, stations);
+            long count = BinaryFormat.readVarLong(buffer);
+            MetricAccumulator temperature = BinaryFormat.readAccumulator(buffer);
+            MetricAccumulator humidity = BinaryFormat.readAccumulator(buffer);
+            StationStats stats = new StationStats(station, count, temperature, humidity);
+            if (version == BinaryFormat.STATION_STATS_V3) {
+                stats.setLatestSentAt(BinaryFormat.readVarLong(buffer));
+            }
+            return stats;
+        }
+        if (version == BinaryFormat.STATION_STATS_V1) {
+            String station = BinaryFormat.readStation(buffer, stations);
+            double avgTemperature = buffer.getDouble();
+            double avgHumidity = buffer.getDouble();
+            int count = BinaryFormat.readVarInt(buffer);
+            return new StationStats(station, avgTemperature, avgHumidity, count);
+        }
+        throw BinaryFormat.unsupportedVersion("StationStats", version);
+    }
 }
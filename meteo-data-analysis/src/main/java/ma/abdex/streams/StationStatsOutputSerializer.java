@@ -0,0 +1,70 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.StationStats;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Serializer for the all-time aggregates on the output topic, in the configured
+ * {@link OutputFormat}. Every record carries a schema header naming the format
+ * and its version (for example {@code station-stats.json.v1}), so consumers can
+ * pick a decoder without sniffing the payload.
+ */
+public class StationStatsOutputSerializer implements Serializer<StationStats> {
+    public static final String SCHEMA_HEADER = "weather-schema";
+
+    private static final int TEXT_VERSION = 1;
+    private static final int JSON_VERSION = 1;
+
+    private final OutputFormat format;
+    private final byte[] schema;
+    private final StationStatsSerializer binary = new StationStatsSerializer(WireFormat.BINARY);
+
+    public StationStatsOutputSerializer(OutputFormat format) {
+        this.format = format;
+        this.schema = schema(format).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Schema header value for records written in the given format
+     */
+    public static String schema(OutputFormat format) {
+        int version;
+        switch (format) {
+            case BINARY:
+                version = BinaryFormat.STATION_STATS_V5;
+                break;
+            case JSON:
+                version = JSON_VERSION;
+                break;
+            default:
+                version = TEXT_VERSION;
+        }
+        return "station-stats." + format.name().toLowerCase(Locale.ROOT) + ".v" + version;
+    }
+
+    @Override
+    public byte[] serialize(String topic, StationStats data) {
+        if (data == null) {
+            return null;
+        }
+        switch (format) {
+            case BINARY:
+                return binary.serialize(topic, data);
+            case JSON:
+                return data.toJson().getBytes(StandardCharsets.UTF_8);
+            default:
+                return data.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, StationStats data) {
+        headers.remove(SCHEMA_HEADER);
+        headers.add(SCHEMA_HEADER, schema);
+        return serialize(topic, data);
+    }
+}
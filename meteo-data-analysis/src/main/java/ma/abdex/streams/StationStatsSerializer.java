@@ -1,24 +1,70 @@
 package ma.abdex.streams;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import ma.abdex.model.Metric;
 import ma.abdex.model.StationStats;
 import org.apache.kafka.common.serialization.Serializer;
 
+import java.nio.ByteBuffer;
+
 /**
  * Custom serializer for StationStats objects
  */
 public class StationStatsSerializer implements Serializer<StationStats> {
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WireFormat format;
+
+    public StationStatsSerializer() {
+        this(WireFormat.JSON);
+    }
+
+    public StationStatsSerializer(WireFormat format) {
+        this.format = format;
+    }
 
     @Override
     public byte[] serialize(String topic, StationStats data) {
         if (data == null) {
             return null;
         }
+        if (format == WireFormat.BINARY) {
+            return serializeBinary(data);
+        }
         try {
             return objectMapper.writeValueAsBytes(data);
         } catch (Exception e) {
             throw new RuntimeException("Error serializing StationStats", e);
         }
     }
+
+    /**
+     * Layout (v5): version, station (varint length + UTF-8), count (varlong),
+     * latest sent-at (varlong), bitmap of the reported metrics (varint), then
+     * per reported metric in ordinal order: accumulator, sketch
+     */
+    private byte[] serializeBinary(StationStats data) {
+        byte[] station = BinaryFormat.encodeString(data.getStation());
+        int reported = data.reportedMetrics();
+        int size = 1 + BinaryFormat.stringSize(station) + BinaryFormat.varLongSize(data.getCount())
+                + BinaryFormat.varLongSize(data.getLatestSentAt()) + BinaryFormat.varIntSize(reported);
+        for (int bits = reported; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            size += BinaryFormat.accumulatorSize(data.getAccumulator(metric))
+                    + BinaryFormat.sketchSize(data.getSketch(metric));
+        }
+
+        byte[] bytes = new byte[size];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.put(BinaryFormat.STATION_STATS_V5);
+        BinaryFormat.writeString(buffer, station);
+        BinaryFormat.writeVarLong(buffer, data.getCount());
+        BinaryFormat.writeVarLong(buffer, data.getLatestSentAt());
+        BinaryFormat.writeVarInt(buffer, reported);
+        for (int bits = reported; bits != 0; bits &= bits - 1) {
+            Metric metric = Metric.of(Integer.numberOfTrailingZeros(bits));
+            BinaryFormat.writeAccumulator(buffer, data.getAccumulator(metric));
+            BinaryFormat.writeSketch(buffer, data.getSketch(metric));
+        }
+        return bytes;
+    }
 }
@@ -0,0 +1,19 @@
+package ma.abdex.streams;
+
+import java.util.Locale;
+
+/**
+ * Where state stores keep their entries
+ */
+public enum StoreType {
+    /** RocksDB on local disk */
+    ROCKSDB,
+    /** Java heap, rebuilt from the changelog on restart */
+    IN_MEMORY,
+    /** Off-heap hash table, rebuilt from the changelog on restart (station aggregates only) */
+    OFF_HEAP;
+
+    public static StoreType fromConfig(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
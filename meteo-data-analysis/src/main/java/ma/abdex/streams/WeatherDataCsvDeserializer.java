@@ -0,0 +1,291 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.Metric;
+import ma.abdex.model.ParseError;
+import ma.abdex.model.ParseResult;
+import ma.abdex.model.WeatherData;
+import ma.abdex.util.EventLogger;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Byte-level deserializer for CSV weather records
+ * (station,temperature,humidity[,timestamp[,key=value...]]).
+ *
+ * Parses the raw record value without materializing an intermediate String:
+ * station names are resolved through a {@link StationNameTable} and plain
+ * decimal numbers are parsed as fixed-point values. Accepts and rejects the same
+ * input as {@link WeatherData#fromCsv(String)}, but reports invalid records
+ * as a {@link ParseResult} (or null from {@link #deserialize}) instead of
+ * throwing. Records without a measurement time get a timestamp of 0, leaving
+ * event time to the Kafka record timestamp.
+ */
+public class WeatherDataCsvDeserializer implements Deserializer<WeatherData> {
+    private static final EventLogger events = EventLogger.getLogger(WeatherDataCsvDeserializer.class);
+
+    private static final int MAX_STATION_LENGTH = 50;
+    // Same window as ValidationUtils.validateTimestamp
+    private static final long MAX_TIMESTAMP_SKEW_MS = 365L * 24 * 60 * 60 * 1000;
+
+    // Largest mantissa for which mantissa / 10^scale is exactly what Double.parseDouble returns
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Tag keys of the optional metrics by ordinal, null for the required ones
+    private static final byte[][] OPTIONAL_METRIC_KEYS = new byte[Metric.COUNT][];
+
+    static {
+        for (Metric metric : Metric.values()) {
+            if (!metric.isRequired()) {
+                OPTIONAL_METRIC_KEYS[metric.ordinal()] = metric.key().getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+    }
+
+    private final StationNameTable stations;
+
+    public WeatherDataCsvDeserializer() {
+        this(new StationNameTable());
+    }
+
+    public WeatherDataCsvDeserializer(StationNameTable stations) {
+        this.stations = stations;
+    }
+
+    @Override
+    public WeatherData deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        ParseResult result = tryParse(data, 0, data.length);
+        if (!result.isOk()) {
+            events.event("parse_error", result.error().label(), result.withPayload(data));
+        }
+        return result.value();
+    }
+
+    /**
+     * Parse a CSV record from data[offset, offset + length)
+     *
+     * @return the parsed reading, or null if the record is malformed or fails validation
+     */
+    public WeatherData parse(byte[] data, int offset, int length) {
+        return tryParse(data, offset, length).value();
+    }
+
+    /**
+     * Parse a CSV record from data[offset, offset + length), reporting why it was
+     * rejected. Failures are shared instances without payload.
+     */
+    public ParseResult tryParse(byte[] data, int offset, int length) {
+        int end = offset + length;
+
+        // Field 1: station
+        int stationEnd = indexOf(data, offset, end, (byte) ',');
+        if (stationEnd < 0) {
+            return ParseResult.failed(ParseError.MALFORMED);
+        }
+        int stationFrom = skipWhitespace(data, offset, stationEnd);
+        int stationTo = trimTrailing(data, stationFrom, stationEnd);
+        if (!isValidStation(data, stationFrom, stationTo)) {
+            return ParseResult.failed(ParseError.INVALID_STATION);
+        }
+
+        // Field 2: temperature
+        int temperatureEnd = indexOf(data, stationEnd + 1, end, (byte) ',');
+        if (temperatureEnd < 0) {
+            return ParseResult.failed(ParseError.MALFORMED);
+        }
+        double temperature = parseDecimal(data, stationEnd + 1, temperatureEnd);
+        if (Double.isNaN(temperature)) {
+            return ParseResult.failed(ParseError.MALFORMED);
+        }
+        if (!(temperature >= -100 && temperature <= 100)) {
+            return ParseResult.failed(ParseError.TEMPERATURE_OUT_OF_RANGE);
+        }
+
+        // Field 3: humidity
+        int humidityEnd = indexOf(data, temperatureEnd + 1, end, (byte) ',');
+        double humidity = parseDecimal(data, temperatureEnd + 1, humidityEnd < 0 ? end : humidityEnd);
+        if (Double.isNaN(humidity)) {
+            return ParseResult.failed(ParseError.MALFORMED);
+        }
+        if (!(humidity >= 0 && humidity <= 100)) {
+            return ParseResult.failed(ParseError.HUMIDITY_OUT_OF_RANGE);
+        }
+
+        // Field 4: optional measurement time
+        long timestamp = 0;
+        int timestampEnd = -1;
+        if (humidityEnd >= 0) {
+            timestampEnd = indexOf(data, humidityEnd + 1, end, (byte) ',');
+            timestamp = parseTimestamp(data, humidityEnd + 1, timestampEnd < 0 ? end : timestampEnd);
+            if (timestamp < 0) {
+                return ParseResult.failed(ParseError.INVALID_TIMESTAMP);
+            }
+        }
+
+        WeatherData reading = new WeatherData(stations.intern(data, stationFrom, stationTo),
+                temperature, humidity, timestamp);
+
+        // Further fields: optional metrics as key=value tags; bare fields and unknown keys are ignored, as in fromCsv
+        for (int from = timestampEnd + 1; from > 0; ) {
+            int fieldEnd = indexOf(data, from, end, (byte) ',');
+            int to = fieldEnd < 0 ? end : fieldEnd;
+            int separator = indexOf(data, from, to, (byte) '=');
+            Metric metric = separator < 0 ? null : optionalMetric(data, from, separator);
+            if (metric != null) {
+                double value = parseDecimal(data, separator + 1, to);
+                if (Double.isNaN(value)) {
+                    return ParseResult.failed(ParseError.MALFORMED);
+                }
+                if (!metric.inRange(value)) {
+                    return ParseResult.failed(ParseError.METRIC_OUT_OF_RANGE);
+                }
+                reading.set(metric, value);
+            }
+            from = fieldEnd + 1;
+        }
+
+        return ParseResult.ok(reading);
+    }
+
+    /**
+     * Optional metric whose key is in data[from, to), ignoring surrounding whitespace, or null
+     */
+    private static Metric optionalMetric(byte[] data, int from, int to) {
+        from = skipWhitespace(data, from, to);
+        to = trimTrailing(data, from, to);
+        for (int i = 0; i < Metric.COUNT; i++) {
+            byte[] key = OPTIONAL_METRIC_KEYS[i];
+            if (key != null && Arrays.equals(data, from, to, key, 0, key.length)) {
+                return Metric.of(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse an epoch-millisecond timestamp in data[from, to): 0 when the field is
+     * empty, -1 when it is not a number or outside one year of the current time
+     */
+    static long parseTimestamp(byte[] data, int from, int to) {
+        from = skipWhitespace(data, from, to);
+        to = trimTrailing(data, from, to);
+        if (from == to) {
+            return 0;
+        }
+        if (to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        long now = System.currentTimeMillis();
+        return Math.abs(now - value) <= MAX_TIMESTAMP_SKEW_MS ? value : -1;
+    }
+
+    /**
+     * Parse a decimal number in data[from, to), returning NaN when it is not a number.
+     * Plain [+-]digits[.digits] input is handled as fixed-point; anything else
+     * (exponents, very long mantissas) falls back to Double.parseDouble.
+     */
+    static double parseDecimal(byte[] data, int from, int to) {
+        from = skipWhitespace(data, from, to);
+        to = trimTrailing(data, from, to);
+        if (from == to) {
+            return Double.NaN;
+        }
+
+        int i = from;
+        boolean negative = false;
+        if (data[i] == '-' || data[i] == '+') {
+            negative = data[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < to; i++) {
+            byte b = data[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (mantissa > MAX_EXACT_MANTISSA) {
+                    return parseSlow(data, from, to);
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return parseSlow(data, from, to);
+            }
+        }
+        if (digits == 0 || scale >= POWERS_OF_TEN.length) {
+            return parseSlow(data, from, to);
+        }
+
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static double parseSlow(byte[] data, int from, int to) {
+        try {
+            return Double.parseDouble(new String(data, from, to - from, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isValidStation(byte[] data, int from, int to) {
+        int length = to - from;
+        if (length == 0 || length > MAX_STATION_LENGTH) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            boolean allowed = (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')
+                    || (b >= '0' && b <= '9') || b == '_' || b == '-';
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int from, int to, byte target) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] data, int from, int to) {
+        while (from < to && data[from] >= 0 && data[from] <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimTrailing(byte[] data, int from, int to) {
+        while (to > from && data[to - 1] >= 0 && data[to - 1] <= ' ') {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,20 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.WeatherData;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serializer writing WeatherData in the CSV input format (station,temperature,humidity)
+ */
+public class WeatherDataCsvSerializer implements Serializer<WeatherData> {
+
+    @Override
+    public byte[] serialize(String topic, WeatherData data) {
+        if (data == null) {
+            return null;
+        }
+        return data.toCsv().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -4,11 +4,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import ma.abdex.model.WeatherData;
 import org.apache.kafka.common.serialization.Deserializer;
 
+import java.nio.ByteBuffer;
+
 /**
- * Custom deserializer for WeatherData objects
+ * Custom deserializer for WeatherData objects.
+ * Reads both the JSON and the binary wire format, whichever the record was written in.
  */
 public class WeatherDataDeserializer implements Deserializer<WeatherData> {
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StationNameTable stations = new StationNameTable();
 
     @Override
     public WeatherData deserialize(String topic, byte[] data) {
@@ -16,9 +20,36 @@ public class WeatherDataDeserializer implements Deserializer<WeatherData> {
             return null;
         }
         try {
-            return objectMapper.readValue(data, WeatherData.class);
+            if (BinaryFormat.isJson(data)) {
+                return objectMapper.readValue(data, WeatherData.class);
+            }
+            return deserializeBinary(ByteBuffer.wrap(data));
         } catch (Exception e) {
             throw new RuntimeException("Error deserializing WeatherData", e);
         }
     }
+
+    private WeatherData deserializeBinary(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version == BinaryFormat.WEATHER_DATA_V3) {
+            WeatherData data = new WeatherData();
+            data.setStation(BinaryFormat.readStation(buffer, stations));
+            BinaryFormat.readMetrics(buffer, data);
+            data.setTimestamp(buffer.getLong());
+            data.setSentAt(buffer.getLong());
+            return data;
+        }
+        if (version != BinaryFormat.WEATHER_DATA_V1 && version != BinaryFormat.WEATHER_DATA_V2) {
+            throw BinaryFormat.unsupportedVersion("WeatherData", version);
+        }
+        String station = BinaryFormat.readStation(buffer, stations);
+        double temperature = buffer.getDouble();
+        double humidity = buffer.getDouble();
+        long timestamp = buffer.getLong();
+        WeatherData data = new WeatherData(station, temperature, humidity, timestamp);
+        if (version == BinaryFormat.WEATHER_DATA_V2) {
+            data.setSentAt(buffer.getLong());
+        }
+        return data;
+    }
 }
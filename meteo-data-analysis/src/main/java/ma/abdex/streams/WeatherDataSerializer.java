@@ -4,21 +4,52 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import ma.abdex.model.WeatherData;
 import org.apache.kafka.common.serialization.Serializer;
 
+import java.nio.ByteBuffer;
+
 /**
  * Custom serializer for WeatherData objects
  */
 public class WeatherDataSerializer implements Serializer<WeatherData> {
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WireFormat format;
+
+    public WeatherDataSerializer() {
+        this(WireFormat.JSON);
+    }
+
+    public WeatherDataSerializer(WireFormat format) {
+        this.format = format;
+    }
 
     @Override
     public byte[] serialize(String topic, WeatherData data) {
         if (data == null) {
             return null;
         }
+        if (format == WireFormat.BINARY) {
+            return serializeBinary(data);
+        }
         try {
             return objectMapper.writeValueAsBytes(data);
         } catch (Exception e) {
             throw new RuntimeException("Error serializing WeatherData", e);
         }
     }
+
+    /**
+     * Layout (v3): version, station (varint length + UTF-8), metrics (bitmap + present values),
+     * timestamp, sent-at
+     */
+    private byte[] serializeBinary(WeatherData data) {
+        byte[] station = BinaryFormat.encodeString(data.getStation());
+        byte[] bytes = new byte[1 + BinaryFormat.stringSize(station) + BinaryFormat.metricsSize(data)
+                + 2 * Long.BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.put(BinaryFormat.WEATHER_DATA_V3);
+        BinaryFormat.writeString(buffer, station);
+        BinaryFormat.writeMetrics(buffer, data);
+        buffer.putLong(data.getTimestamp());
+        buffer.putLong(data.getSentAt());
+        return bytes;
+    }
 }
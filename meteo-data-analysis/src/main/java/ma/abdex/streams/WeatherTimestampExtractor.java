@@ -0,0 +1,83 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.ParseResult;
+import ma.abdex.model.WeatherData;
+import ma.abdex.util.ValidationUtils;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.processor.TimestampExtractor;
+
+/**
+ * Event-time extractor for the weather-data topic.
+ *
+ * Uses the station's measurement time carried in the record (the optional fourth
+ * CSV field) and falls back to the Kafka record timestamp when it is absent, so
+ * batch uploads after a network gap land in the windows they were measured in.
+ * Measurement times that fail validation, or lie further ahead of the clock
+ * than the allowed future skew, are not trusted: event time drives stream
+ * time, and one bad record would otherwise make every later reading late.
+ */
+public class WeatherTimestampExtractor implements TimestampExtractor {
+    private final long maxFutureSkewMs;
+
+    /**
+     * @param maxFutureSkewMs how far ahead of the clock a measurement time may be
+     */
+    public WeatherTimestampExtractor(long maxFutureSkewMs) {
+        this.maxFutureSkewMs = maxFutureSkewMs;
+    }
+
+    @Override
+    public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
+        long fallback = record.timestamp() >= 0 ? record.timestamp() : partitionTime;
+        return eventTime(measurementTime(record.value()), fallback, maxFutureSkewMs);
+    }
+
+    /**
+     * The measurement time if set (positive) and at most maxFutureSkewMs ahead of the clock, else the fallback
+     */
+    static long eventTime(long measuredAt, long fallback, long maxFutureSkewMs) {
+        if (measuredAt > 0 && measuredAt - System.currentTimeMillis() <= maxFutureSkewMs) {
+            return measuredAt;
+        }
+        return fallback;
+    }
+
+    private static long measurementTime(Object value) {
+        if (value instanceof ParseResult result) {
+            return result.isOk() ? result.value().getTimestamp() : 0;
+        }
+        if (value instanceof WeatherData data) {
+            return data.getTimestamp();
+        }
+        if (value instanceof String csv) {
+            return csvTimestamp(csv);
+        }
+        return 0;
+    }
+
+    /**
+     * Fourth field of a station,temperature,humidity,timestamp line, or 0 if missing,
+     * malformed or rejected by {@link ValidationUtils#checkTimestamp}, as ParseResult.fromCsv would
+     */
+    static long csvTimestamp(String csv) {
+        int from = 0;
+        for (int field = 0; field < 3; field++) {
+            from = csv.indexOf(',', from) + 1;
+            if (from == 0) {
+                return 0;
+            }
+        }
+        int to = csv.indexOf(',', from);
+        String field = (to < 0 ? csv.substring(from) : csv.substring(from, to)).trim();
+        if (field.isEmpty()) {
+            return 0;
+        }
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+        return timestamp >= 0 && ValidationUtils.checkTimestamp(timestamp) == null ? timestamp : 0;
+    }
+}
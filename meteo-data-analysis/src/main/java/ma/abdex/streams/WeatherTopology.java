@@ -0,0 +1,576 @@
+package ma.abdex.streams;
+
+import ma.abdex.config.AppConfig;
+import ma.abdex.metrics.PrometheusMetricsServer;
+import ma.abdex.model.ParseResult;
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import ma.abdex.registry.StationDirectory;
+import ma.abdex.registry.StationIdResolver;
+import ma.abdex.registry.StationKeyDeserializer;
+import ma.abdex.registry.StationKeySerializer;
+import ma.abdex.registry.StationRegistrar;
+import ma.abdex.util.EventLogger;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyConfig;
+import org.apache.kafka.streams.kstream.*;
+import org.apache.kafka.streams.state.BuiltInDslStoreSuppliers;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.SessionStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * Kafka Streams topology for weather data analysis
+ * Performs filtering, transformation, grouping and aggregation
+ *
+ * Built from the application configuration alone, so the same topology runs
+ * under {@link WeatherStreamsProcessor} against a broker or in-process under
+ * TopologyTestDriver.
+ */
+public class WeatherTopology {
+    private static final Logger logger = LoggerFactory.getLogger(WeatherTopology.class);
+    private static final EventLogger events = EventLogger.getLogger(WeatherTopology.class);
+
+    /** Queryable store holding the all-time aggregate of every station */
+    public static final String STATION_STATS_STORE = "station-stats";
+    /** Global store holding the station registry (name to ID) */
+    public static final String STATION_REGISTRY_STORE = "station-registry";
+    private static final String STATION_REGISTRAR_STORE = "station-registrar";
+    private static final String REGISTRATION_BUFFER_STORE = "station-registration-buffer";
+    // Children of the registry resolver in key mode: readings passed straight through, and released ones
+    private static final String RESOLVER_PASSED = "station-id-passed";
+    private static final String RESOLVER_RELEASED = "station-id-released";
+    private static final String STATION_BASELINE_STORE = "station-baselines";
+    private static final String STATION_EMITTED_STORE = "station-emitted-averages";
+
+    private final AppConfig config;
+    private final String inputTopic;
+    private final String outputTopic;
+    private final double temperatureThreshold;
+    private final StationDirectory stationDirectory = new StationDirectory();
+    private final Serde<String> stationKeySerde;
+    private final StoreType stateStoreType;
+    private final StoreType statsStoreType;
+
+    public WeatherTopology(AppConfig config) {
+        this.config = config;
+        this.inputTopic = config.getInputTopic();
+        this.outputTopic = config.getOutputTopic();
+        this.temperatureThreshold = config.getTemperatureThreshold();
+        this.stationKeySerde = config.isRegistryEnabled()
+                ? Serdes.serdeFrom(new StationKeySerializer(stationDirectory),
+                        new StationKeyDeserializer(stationDirectory))
+                : Serdes.String();
+        this.stateStoreType = StoreType.fromConfig(config.getKafkaStreamsStateStoreType());
+        this.statsStoreType = StoreType.fromConfig(config.getKafkaStreamsStatsStoreType());
+        if (stateStoreType == StoreType.OFF_HEAP) {
+            throw new IllegalArgumentException("Off-heap storage applies to the station aggregates only; "
+                    + "set kafka.streams.stats.store.type instead");
+        }
+    }
+
+    /**
+     * Kafka Streams properties for this application
+     */
+    public Properties streamsConfig(String bootstrapServers, String applicationId) {
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
+        // Count and skip (or fail on) records that cannot be deserialized
+        props.put(StreamsConfig.DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                CountingDeserializationExceptionHandler.class);
+
+        // Endpoint other instances use to route interactive queries to this one
+        if (config.isQueryEnabled()) {
+            props.put(StreamsConfig.APPLICATION_SERVER_CONFIG,
+                    config.getQueryAdvertisedHost() + ":" + config.getPrometheusPort());
+        }
+
+        // Threading and processing guarantee
+        props.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, config.getKafkaStreamsNumThreads());
+        props.put(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, config.getKafkaStreamsProcessingGuarantee());
+
+        // Optimization settings
+        props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, config.getKafkaStreamsCommitInterval());
+        // Note: CACHE_MAX_BYTES_BUFFERING_CONFIG is deprecated in Kafka 3.0+
+        // Use statestore.cache.max.bytes instead
+        props.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, config.getKafkaStreamsCacheMaxBytes());
+        // State stores backing the DSL aggregations and tables
+        if (stateStoreType == StoreType.IN_MEMORY) {
+            props.put(StreamsConfig.DSL_STORE_SUPPLIERS_CLASS_CONFIG,
+                    BuiltInDslStoreSuppliers.InMemoryDslStoreSuppliers.class);
+        }
+        // Share one repartition topic between the all-time and windowed aggregations
+        props.put(StreamsConfig.TOPOLOGY_OPTIMIZATION_CONFIG, StreamsConfig.OPTIMIZE);
+
+        // Internal producer (repartition, changelog and output topics)
+        props.put(StreamsConfig.producerPrefix(ProducerConfig.BATCH_SIZE_CONFIG),
+                config.getKafkaStreamsProducerBatchSize());
+        props.put(StreamsConfig.producerPrefix(ProducerConfig.LINGER_MS_CONFIG),
+                config.getKafkaStreamsProducerLingerMs());
+        props.put(StreamsConfig.producerPrefix(ProducerConfig.COMPRESSION_TYPE_CONFIG),
+                config.getKafkaStreamsProducerCompressionType());
+
+        // Consumers (source and repartition topics)
+        props.put(StreamsConfig.consumerPrefix(ConsumerConfig.FETCH_MIN_BYTES_CONFIG),
+                config.getKafkaStreamsConsumerFetchMinBytes());
+        props.put(StreamsConfig.consumerPrefix(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG),
+                config.getKafkaStreamsConsumerFetchMaxWaitMs());
+        props.put(StreamsConfig.consumerPrefix(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG),
+                config.getKafkaStreamsConsumerMaxPartitionFetchBytes());
+        props.put(StreamsConfig.consumerPrefix(ConsumerConfig.MAX_POLL_RECORDS_CONFIG),
+                config.getKafkaStreamsConsumerMaxPollRecords());
+
+        return props;
+    }
+
+    /**
+     * Build the topology, optimized according to the given streams properties.
+     * Each call builds a new topology.
+     */
+    public Topology build(Properties props) {
+        // Topology-level settings (such as the DSL store type) are read when stores are declared
+        StreamsBuilder builder = new StreamsBuilder(new TopologyConfig(new StreamsConfig(props)));
+        buildTopology(builder);
+        return builder.build(props);
+    }
+
+    private void buildTopology(StreamsBuilder builder) {
+        // Step 1: Read data from the input topic (weather-data) as KStream and parse CSV,
+        // routing records that fail parsing or validation to the dead-letter topic
+        KStream<String, ParseResult> parsed = parseInput(builder);
+        if (config.isBatchEnabled()) {
+            parsed = parsed.merge(parseBatches(builder));
+        }
+        routeRejected(parsed.filterNot((key, result) -> result.isOk()));
+        KStream<String, WeatherData> weatherStream = parsed
+                .filter((key, result) -> result.isOk())
+                .mapValues(ParseResult::value);
+
+        // Step 2: Drop late records and filter temperatures above the threshold (30°C by default)
+        KStream<String, WeatherData> validStream = handleLateArrivals(
+                weatherStream.processValues(SendTimeTracker.Readings::new));
+        if (config.isAnomalyEnabled()) {
+            detectAnomalies(builder, validStream);
+        }
+
+        KStream<String, WeatherData> filteredStream = validStream
+                .peek((key, value) -> {
+                    logger.debug("Received: {}", value);
+                    // Record consumed message
+                    PrometheusMetricsServer.recordKafkaConsumed(inputTopic);
+                })
+                .filter((key, value) -> {
+                    boolean isHigh = value.getTemperature() > temperatureThreshold;
+                    if (isHigh) {
+                        events.event("high_temperature", value.getStation(), value);
+                    }
+                    return isHigh;
+                });
+
+        WireFormat wireFormat = WireFormat.fromConfig(config.getStreamsSerdeFormat());
+
+        // Step 3: Group by station and calculate averages
+        KGroupedStream<String, WeatherData> groupedStream = groupByStation(builder, filteredStream, wireFormat);
+
+        Serde<StationStats> statsSerde = Serdes.serdeFrom(new StationStatsSerializer(wireFormat),
+                new StationStatsDeserializer());
+
+        // Aggregate to calculate averages
+        KTable<String, StationStats> aggregatedTable = groupedStream
+                .aggregate(
+                        // Initializer - create empty stats
+                        StationStats::new,
+
+                        // Aggregator - accumulate values
+                        new StationStatsAggregator(),
+
+                        // Named store with custom serdes, queryable over HTTP
+                        statsStore()
+                                .withKeySerde(stationKeySerde)
+                                .withValueSerde(statsSerde));
+
+        // Step 4: Windowed aggregates, each to its own topic
+        buildWindowedAggregations(groupedStream, statsSerde);
+
+        // Step 5: Write all-time results to output topic
+        aggregatedTable
+                .toStream()
+                // Updates leave the store once the cache flushes them (commit interval or eviction)
+                .foreach((key, value) -> {
+                    PrometheusMetricsServer.recordAggregateUpdate("received");
+                    PrometheusMetricsServer.recordEndToEndLatency("aggregate", value.getLatestSentAt());
+                    PrometheusMetricsServer.recordAggregateQuantiles(value);
+                });
+        limitEmission(builder, aggregatedTable)
+                .peek((key, value) -> PrometheusMetricsServer.recordAggregateUpdate("emitted"))
+                .peek((key, value) -> events.event("published", key, value))
+                .processValues(SendTimeTracker.Output::new)
+                // Key by the aggregate's station: a key decoded before the local registry
+                // caught up with another instance's registration is only an ID placeholder
+                .selectKey((key, value) -> value.getStation())
+                .to(outputTopic, Produced.with(Serdes.String(), outputSerde()));
+
+        // Debug mode only: also print every update to the console
+        if (config.isDebugEnabled()) {
+            aggregatedTable
+                    .toStream()
+                    .foreach((key, value) -> System.out.println(value));
+        }
+    }
+
+    /**
+     * Store of the all-time aggregates. Unless its type differs from the other
+     * stores', it comes from the DSL store suppliers like theirs.
+     */
+    private Materialized<String, StationStats, KeyValueStore<Bytes, byte[]>> statsStore() {
+        logger.info("Station aggregate store: {}", statsStoreType);
+        if (statsStoreType == StoreType.OFF_HEAP) {
+            return Materialized.as(new OffHeapKeyValueBytesStoreSupplier(STATION_STATS_STORE));
+        }
+        if (statsStoreType == stateStoreType) {
+            return Materialized.as(STATION_STATS_STORE);
+        }
+        return Materialized.as(statsStoreType == StoreType.IN_MEMORY
+                ? Stores.inMemoryKeyValueStore(STATION_STATS_STORE)
+                : Stores.persistentTimestampedKeyValueStore(STATION_STATS_STORE));
+    }
+
+    /**
+     * Supplier for a store added with the Processor API, of the configured type
+     */
+    private KeyValueBytesStoreSupplier keyValueStore(String name) {
+        return stateStoreType == StoreType.IN_MEMORY
+                ? Stores.inMemoryKeyValueStore(name)
+                : Stores.persistentKeyValueStore(name);
+    }
+
+    /**
+     * Serde of the output topic; only its serializer is used
+     */
+    private Serde<StationStats> outputSerde() {
+        OutputFormat format = OutputFormat.fromConfig(config.getOutputFormat());
+        logger.info("Output format: {}", StationStatsOutputSerializer.schema(format));
+        return Serdes.serdeFrom(new StationStatsOutputSerializer(format), new StationStatsDeserializer());
+    }
+
+    /**
+     * Thin out the aggregate updates written to the output topic. With an emit
+     * interval, each station publishes at most one update per interval of
+     * stream time, its latest; the stations held back are buffered up to a
+     * limit, beyond which the oldest are published early. With a minimum
+     * change, updates that moved the averages less than that since the
+     * station's last published one are dropped.
+     */
+    private KStream<String, StationStats> limitEmission(StreamsBuilder builder,
+            KTable<String, StationStats> aggregatedTable) {
+        long intervalSeconds = config.getOutputEmitIntervalSeconds();
+        double minTemperatureChange = config.getOutputEmitMinTemperatureChange();
+        double minHumidityChange = config.getOutputEmitMinHumidityChange();
+        logger.info("Output emission: interval {} s, minimum change {}°C / {}%",
+                intervalSeconds, minTemperatureChange, minHumidityChange);
+
+        KTable<String, StationStats> table = aggregatedTable;
+        if (intervalSeconds > 0) {
+            // Suppression requests old values, which equal the new ones (see StationStatsAggregator);
+            // the buffer only emits the newest value per station, so that is harmless here
+            table = aggregatedTable.suppress(Suppressed.untilTimeLimit(Duration.ofSeconds(intervalSeconds),
+                            Suppressed.BufferConfig.maxRecords(config.getOutputEmitBufferMaxRecords())
+                                    .emitEarlyWhenFull())
+                    .withName("station-averages-rate-limit"));
+        }
+        KStream<String, StationStats> stream = table.toStream();
+        if (minTemperatureChange > 0 || minHumidityChange > 0) {
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                    keyValueStore(STATION_EMITTED_STORE), stationKeySerde, AggregateChangeFilter.publishedSerde()));
+            stream = stream.processValues(() -> new AggregateChangeFilter(STATION_EMITTED_STORE,
+                    minTemperatureChange, minHumidityChange), STATION_EMITTED_STORE);
+        }
+        return stream;
+    }
+
+    /**
+     * Compare every reading with its station's exponentially weighted baseline
+     * and write those beyond the z-score threshold to the anomaly topic. Runs
+     * ahead of the temperature threshold, so anomalies in cool readings count too.
+     */
+    private void detectAnomalies(StreamsBuilder builder, KStream<String, WeatherData> stream) {
+        String anomalyTopic = config.getAnomalyTopic();
+        double alpha = config.getAnomalyAlpha();
+        double threshold = config.getAnomalyZScoreThreshold();
+        long warmup = config.getAnomalyWarmupReadings();
+        logger.info("Anomaly detection: alpha {}, z-score threshold {}, warm-up {} readings -> {}",
+                alpha, threshold, warmup, anomalyTopic);
+
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                keyValueStore(STATION_BASELINE_STORE), Serdes.String(),
+                Serdes.serdeFrom(new StationBaselineSerializer(), new StationBaselineDeserializer())));
+        stream.process(() -> new AnomalyDetector(STATION_BASELINE_STORE, alpha, threshold, warmup),
+                        STATION_BASELINE_STORE)
+                .to(anomalyTopic, Produced.with(Serdes.String(), Serdes.String()));
+    }
+
+    /**
+     * Group readings by station. Repartition mode re-keys every reading by its
+     * station field, at the cost of writing and reading it back through an
+     * internal topic. Key mode relies on the producer keying records by station
+     * (as WeatherDataGenerator does) and groups in place; with verification on,
+     * readings whose key differs from their station are counted and dropped,
+     * since they would otherwise be aggregated under the wrong station.
+     * With the station registry on, readings are held back until their station
+     * has an ID, which then replaces the name in every station-keyed topic and store.
+     */
+    private KGroupedStream<String, WeatherData> groupByStation(StreamsBuilder builder,
+            KStream<String, WeatherData> stream, WireFormat wireFormat) {
+        GroupingMode mode = GroupingMode.fromConfig(config.getTopologyGrouping());
+        Serde<WeatherData> weatherSerde = Serdes.serdeFrom(
+                new WeatherDataSerializer(wireFormat),
+                new WeatherDataDeserializer());
+        Grouped<String, WeatherData> grouped = Grouped.with(stationKeySerde, weatherSerde);
+        logger.info("Grouping mode: {}", mode);
+
+        if (config.isRegistryEnabled()) {
+            stream = resolveStationIds(builder, stream, weatherSerde, mode);
+        }
+        if (mode == GroupingMode.REPARTITION) {
+            return stream.groupBy((key, value) -> value.getStation(), grouped);
+        }
+        if (config.isTopologyVerifyKey()) {
+            stream = stream.filter((key, value) -> {
+                boolean matches = value.getStation().equals(key);
+                if (!matches) {
+                    logger.warn("Dropping reading keyed '{}' for station {}", key, value.getStation());
+                    PrometheusMetricsServer.recordKeyMismatch();
+                }
+                return matches;
+            });
+        }
+        return stream.groupByKey(grouped);
+    }
+
+    /**
+     * Wire the station registry: a global table of name-to-ID assignments fed
+     * by a single registrar task, which receives a request the first time each
+     * unregistered station is seen. Readings pass through a resolver that holds
+     * back those whose station has no ID yet.
+     */
+    private KStream<String, WeatherData> resolveStationIds(StreamsBuilder builder,
+            KStream<String, WeatherData> stream, Serde<WeatherData> weatherSerde, GroupingMode mode) {
+        String registryTopic = config.getRegistryTopic();
+        logger.info("Station registry: {}", registryTopic);
+
+        builder.globalTable(registryTopic, Consumed.with(Serdes.String(), Serdes.Integer()),
+                Materialized.as(STATION_REGISTRY_STORE));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                keyValueStore(STATION_REGISTRAR_STORE), Serdes.String(), Serdes.Integer()));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                keyValueStore(REGISTRATION_BUFFER_STORE), Serdes.String(), weatherSerde));
+
+        stream.filter((key, value) -> stationDirectory.needsRegistration(value.getStation()))
+                .map((key, value) -> KeyValue.pair(value.getStation(), value.getStation()))
+                .repartition(Repartitioned.<String, String>as("station-registration")
+                        .withKeySerde(Serdes.String())
+                        .withValueSerde(Serdes.String())
+                        .withNumberOfPartitions(1))
+                .process(() -> new StationRegistrar(STATION_REGISTRAR_STORE), STATION_REGISTRAR_STORE)
+                .to(registryTopic, Produced.with(Serdes.String(), Serdes.Integer()));
+
+        long maxBuffered = config.getRegistryBufferMaxReadings();
+        if (mode == GroupingMode.REPARTITION) {
+            return stream.processValues(() -> new StationIdResolver(stationDirectory,
+                    STATION_REGISTRY_STORE, REGISTRATION_BUFFER_STORE, maxBuffered), REGISTRATION_BUFFER_STORE);
+        }
+
+        // Released readings are forwarded from a punctuation, without a source topic in their record
+        // context, which suppression buffers cannot serialize. Grouping by key has no repartition hop
+        // to give them one, so they take their own; readings passing straight through do not.
+        KStream<String, WeatherData> resolved = stream.processValues(() -> new StationIdResolver(
+                stationDirectory, STATION_REGISTRY_STORE, REGISTRATION_BUFFER_STORE, maxBuffered,
+                RESOLVER_PASSED, RESOLVER_RELEASED), REGISTRATION_BUFFER_STORE);
+        KStream<String, WeatherData> passed = resolved.filter((key, value) -> true, Named.as(RESOLVER_PASSED));
+        KStream<String, WeatherData> released = resolved.filter((key, value) -> true, Named.as(RESOLVER_RELEASED))
+                .repartition(Repartitioned.<String, WeatherData>as("station-released")
+                        .withKeySerde(Serdes.String())
+                        .withValueSerde(weatherSerde));
+        return passed.merge(released);
+    }
+
+    /**
+     * Apply the configured late-arrival policy. Accepting leaves lateness to the
+     * window grace periods; otherwise readings older than stream time minus the
+     * allowed lateness are dropped or written to the late topic as CSV.
+     */
+    private KStream<String, WeatherData> handleLateArrivals(KStream<String, WeatherData> stream) {
+        LatePolicy policy = LatePolicy.fromConfig(config.getLatePolicy());
+        long allowedLatenessMs = Duration.ofSeconds(config.getLateAllowedLatenessSeconds()).toMillis();
+        logger.info("Late arrival policy: {} (allowed lateness {} ms)", policy, allowedLatenessMs);
+
+        if (policy == LatePolicy.ACCEPT) {
+            return stream;
+        }
+        if (policy == LatePolicy.SIDE_OUTPUT) {
+            stream.processValues(() -> LateArrivalFilter.late(allowedLatenessMs))
+                    .peek((key, value) -> PrometheusMetricsServer.recordLateArrival("side_output"))
+                    .to(config.getLateTopic(), Produced.with(Serdes.String(), Serdes.serdeFrom(
+                            new WeatherDataCsvSerializer(),
+                            new WeatherDataCsvDeserializer())));
+            return stream.processValues(() -> LateArrivalFilter.onTime(allowedLatenessMs, null));
+        }
+        return stream.processValues(() -> LateArrivalFilter.onTime(allowedLatenessMs, "dropped"));
+    }
+
+    /**
+     * Add the configured tumbling, hopping and session window aggregations.
+     * With suppression enabled each window emits a single final record once
+     * its grace period has passed.
+     */
+    private void buildWindowedAggregations(KGroupedStream<String, WeatherData> groupedStream,
+            Serde<StationStats> statsSerde) {
+        Duration retention = Duration.ofSeconds(config.getWindowRetentionSeconds());
+        boolean suppress = config.isWindowSuppressUntilClose();
+
+        for (WindowType type : WindowType.values()) {
+            String name = type.configName();
+            if (!config.isWindowEnabled(name)) {
+                continue;
+            }
+            String topic = config.getWindowTopic(name);
+            Duration grace = Duration.ofSeconds(config.getWindowGraceSeconds(name));
+            String storeName = "station-stats-" + name;
+
+            KTable<Windowed<String>, StationStats> windowedTable;
+            if (type == WindowType.SESSION) {
+                Duration gap = Duration.ofSeconds(config.getWindowInactivityGapSeconds(name));
+                windowedTable = groupedStream
+                        .windowedBy(SessionWindows.ofInactivityGapAndGrace(gap, grace))
+                        .aggregate(
+                                StationStats::new,
+                                StationStatsAggregator.windowed(),
+                                // Merger - combine two sessions bridged by a new reading
+                                (station, left, right) -> {
+                                    left.merge(right);
+                                    return left;
+                                },
+                                Materialized.<String, StationStats, SessionStore<Bytes, byte[]>>as(storeName)
+                                        .withKeySerde(stationKeySerde)
+                                        .withValueSerde(statsSerde)
+                                        .withRetention(max(retention, gap.plus(grace))));
+                logger.info("Session windows: gap {}, grace {} -> {}", gap, grace, topic);
+            } else {
+                Duration size = Duration.ofSeconds(config.getWindowSizeSeconds(name));
+                TimeWindows windows = TimeWindows.ofSizeAndGrace(size, grace);
+                if (type == WindowType.HOPPING) {
+                    windows = windows.advanceBy(Duration.ofSeconds(config.getWindowAdvanceSeconds(name)));
+                }
+                windowedTable = groupedStream
+                        .windowedBy(windows)
+                        .aggregate(
+                                StationStats::new,
+                                StationStatsAggregator.windowed(),
+                                Materialized.<String, StationStats, WindowStore<Bytes, byte[]>>as(storeName)
+                                        .withKeySerde(stationKeySerde)
+                                        .withValueSerde(statsSerde)
+                                        .withRetention(max(retention, size.plus(grace))));
+                logger.info("{} windows: size {}, grace {} -> {}", type, size, grace, topic);
+            }
+
+            if (suppress) {
+                windowedTable = windowedTable.suppress(
+                        Suppressed.untilWindowCloses(Suppressed.BufferConfig.unbounded()));
+            }
+
+            windowedTable
+                    .toStream()
+                    .map((window, stats) -> stats == null
+                            ? KeyValue.pair(window.key(), (String) null)
+                            : KeyValue.pair(stats.getStation(),
+                                    stats.toJson(window.window().start(), window.window().end())))
+                    .to(topic, Produced.with(Serdes.String(), Serdes.String()));
+        }
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * Source the input topic, parsing CSV either straight from the record bytes
+     * or through String deserialization and ParseResult.fromCsv.
+     * Invalid records become failed results carrying their payload.
+     */
+    private KStream<String, ParseResult> parseInput(StreamsBuilder builder) {
+        IngestParser parser = IngestParser.fromConfig(config.getIngestParser());
+        logger.info("Using {} ingest parser", parser);
+        long maxFutureSkewMs = Duration.ofSeconds(config.getLateMaxFutureSkewSeconds()).toMillis();
+
+        if (parser == IngestParser.BYTES) {
+            StationNameTable stations = new StationNameTable(config.getIngestStationTableSize());
+            return builder.stream(
+                    inputTopic,
+                    Consumed.with(Serdes.String(), Serdes.serdeFrom(
+                            new ParseResultSerializer(),
+                            new ParseResultDeserializer(stations)))
+                            .withTimestampExtractor(new WeatherTimestampExtractor(maxFutureSkewMs)));
+        }
+
+        return builder.stream(inputTopic, Consumed.with(Serdes.String(), Serdes.String())
+                        .withTimestampExtractor(new WeatherTimestampExtractor(maxFutureSkewMs)))
+                .mapValues(ParseResult::fromCsv);
+    }
+
+    /**
+     * Count rejected records per reason and, when enabled, write their original
+     * payload to the dead-letter topic with the reason and source in headers
+     */
+    private void routeRejected(KStream<String, ParseResult> rejected) {
+        boolean enabled = config.isDlqEnabled();
+        KStream<String, byte[]> deadLetters = rejected.processValues(() -> new DeadLetterRouter(enabled));
+        if (enabled) {
+            logger.info("Dead-letter topic: {}", config.getDlqTopic());
+            deadLetters.to(config.getDlqTopic(), Produced.with(Serdes.String(), Serdes.ByteArray()));
+        }
+    }
+
+    /**
+     * Source the batch topic and fan each packed batch back out into parse
+     * results, which then go through the same steps as CSV records. Rejected
+     * batches keep their raw bytes as payload for the dead-letter topic.
+     */
+    private KStream<String, ParseResult> parseBatches(StreamsBuilder builder) {
+        String batchTopic = config.getBatchTopic();
+        logger.info("Reading batched readings from {}", batchTopic);
+        StationNameTable stations = new StationNameTable(config.getIngestStationTableSize());
+        long maxFutureSkewMs = Duration.ofSeconds(config.getLateMaxFutureSkewSeconds()).toMillis();
+        return builder.stream(batchTopic, Consumed.with(Serdes.String(), Serdes.ByteArray()))
+                .processValues(() -> new ReadingBatchExpander(stations, maxFutureSkewMs));
+    }
+
+    /**
+     * Serializer the station aggregates are partitioned by: the station key
+     * serde (station IDs when the registry is on) in repartition mode, the
+     * producer's String key in key mode
+     */
+    public Serializer<String> getStationPartitionSerializer() {
+        return GroupingMode.fromConfig(config.getTopologyGrouping()) == GroupingMode.REPARTITION
+                ? stationKeySerde.serializer()
+                : Serdes.String().serializer();
+    }
+}
@@ -0,0 +1,22 @@
+package ma.abdex.streams;
+
+import java.util.Locale;
+
+/**
+ * Kinds of windowed station aggregation computed next to the all-time table
+ */
+public enum WindowType {
+    /** Fixed-size, non-overlapping windows */
+    TUMBLING,
+    /** Fixed-size windows advancing by a smaller step, so they overlap */
+    HOPPING,
+    /** Per-station activity sessions closed after an inactivity gap */
+    SESSION;
+
+    /**
+     * Name used in the weather.window.&lt;type&gt;.* configuration keys
+     */
+    public String configName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,17 @@
+package ma.abdex.streams;
+
+import java.util.Locale;
+
+/**
+ * Encoding used for WeatherData and StationStats on the repartition topic and in the state store
+ */
+public enum WireFormat {
+    /** Jackson JSON, self-describing but repeats field names in every record */
+    JSON,
+    /** Versioned fixed-layout binary encoding, see {@link BinaryFormat} */
+    BINARY;
+
+    public static WireFormat fromConfig(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
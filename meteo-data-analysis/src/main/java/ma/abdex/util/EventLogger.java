@@ -0,0 +1,181 @@
+package ma.abdex.util;
+
+import io.prometheus.client.Counter;
+import ma.abdex.config.AppConfig;
+import ma.abdex.metrics.PrometheusMetricsServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate-limited, sampled logger for per-record events on the processing path.
+ *
+ * Only every {@code sampleEvery}-th event is considered, and of those at most
+ * one per key and interval is written; the next line written for that key
+ * reports how many were suppressed in between. Suppressed events cost a map
+ * lookup and a counter increment and are never formatted. Written events are
+ * formatted as {@code event=... key=... suppressed=... detail} on the calling
+ * thread (details may be mutated afterwards) and handed to a bounded queue
+ * drained by a single appender thread, so slow console output never blocks a
+ * stream thread; when the queue is full the line is dropped and counted.
+ *
+ * In debug mode ({@code weather.debug.enabled}) every event is written.
+ */
+public class EventLogger {
+
+    /** Key shared by all keys beyond the tracked-key cap */
+    static final String OVERFLOW_KEY = "(other)";
+    private static final int MAX_KEYS = 10_000;
+
+    private static final Counter.Child SAMPLED_OUT = PrometheusMetricsServer.logEvents.labels("sampled_out");
+    private static final Counter.Child SUPPRESSED = PrometheusMetricsServer.logEvents.labels("suppressed");
+    private static final Counter.Child WRITTEN = PrometheusMetricsServer.logEvents.labels("written");
+    private static final Counter.Child DROPPED = PrometheusMetricsServer.logEvents.labels("dropped");
+
+    private static volatile AsyncAppender appender;
+
+    private final long intervalNanos;
+    private final int sampleEvery;
+    private final boolean debug;
+    private final Consumer<String> sink;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, KeyState> keys = new ConcurrentHashMap<>();
+    private final KeyState overflow;
+    private final AtomicLong sequence = new AtomicLong();
+
+    EventLogger(long intervalMs, int sampleEvery, boolean debug, Consumer<String> sink, LongSupplier clock) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.debug = debug;
+        this.sink = sink;
+        this.clock = clock;
+        this.overflow = new KeyState(clock.getAsLong() - intervalNanos);
+    }
+
+    /**
+     * Event logger writing through the given class's logger, configured from weather.log.events.*
+     */
+    public static EventLogger getLogger(Class<?> type) {
+        AppConfig config = AppConfig.getInstance();
+        Logger logger = LoggerFactory.getLogger(type);
+        AsyncAppender shared = appender(config.getLogEventsQueueSize());
+        return new EventLogger(config.getLogEventsIntervalMs(), config.getLogEventsSampleEvery(),
+                config.isDebugEnabled(), line -> shared.offer(logger, line), System::nanoTime);
+    }
+
+    /**
+     * Whether every event is written (debug mode)
+     */
+    public boolean isDebug() {
+        return debug;
+    }
+
+    /**
+     * Log an event about a key (typically a station), subject to sampling and rate limiting
+     */
+    public void event(String event, String key, Object detail) {
+        if (debug) {
+            write(event, key, 0, detail);
+            return;
+        }
+        if (sampleEvery > 1 && sequence.incrementAndGet() % sampleEvery != 0) {
+            SAMPLED_OUT.inc();
+            return;
+        }
+
+        KeyState state = state(key);
+        long now = clock.getAsLong();
+        long last = state.lastWritten.get();
+        if (now - last < intervalNanos || !state.lastWritten.compareAndSet(last, now)) {
+            state.suppressed.incrementAndGet();
+            SUPPRESSED.inc();
+            return;
+        }
+        write(event, state == overflow ? OVERFLOW_KEY : key, state.suppressed.getAndSet(0), detail);
+    }
+
+    private void write(String event, String key, long suppressed, Object detail) {
+        sink.accept("event=" + event + " key=" + key + " suppressed=" + suppressed + " " + detail);
+    }
+
+    private KeyState state(String key) {
+        if (key == null) {
+            return overflow;
+        }
+        KeyState state = keys.get(key);
+        if (state != null) {
+            return state;
+        }
+        if (keys.size() >= MAX_KEYS) {
+            return overflow;
+        }
+        return keys.computeIfAbsent(key, k -> new KeyState(clock.getAsLong() - intervalNanos));
+    }
+
+    private static AsyncAppender appender(int capacity) {
+        AsyncAppender current = appender;
+        if (current == null) {
+            synchronized (EventLogger.class) {
+                if (appender == null) {
+                    appender = new AsyncAppender(capacity);
+                }
+                current = appender;
+            }
+        }
+        return current;
+    }
+
+    private static final class KeyState {
+        final AtomicLong lastWritten;
+        final AtomicLong suppressed = new AtomicLong();
+
+        KeyState(long lastWritten) {
+            this.lastWritten = new AtomicLong(lastWritten);
+        }
+    }
+
+    /**
+     * Bounded queue of formatted lines written by one daemon thread
+     */
+    private static final class AsyncAppender {
+        private final BlockingQueue<Line> queue;
+
+        AsyncAppender(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            Thread thread = new Thread(this::run, "event-log-appender");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void offer(Logger logger, String line) {
+            if (queue.offer(new Line(logger, line))) {
+                WRITTEN.inc();
+            } else {
+                DROPPED.inc();
+            }
+        }
+
+        private void run() {
+            while (true) {
+                try {
+                    Line line = queue.take();
+                    line.logger.info(line.text);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    // Keep appending; a failing logger must not stop the thread
+                }
+            }
+        }
+
+        private record Line(Logger logger, String text) {
+        }
+    }
+}
@@ -23,12 +23,20 @@ public class TestDataGenerator {
      * @return List of WeatherData
      */
     public static List<WeatherData> generateSampleData(int count, double highTempProbability) {
+        return generateSampleData(count, highTempProbability, random);
+    }
+
+    /**
+     * Generate a list of sample weather data from the given source of randomness,
+     * e.g. a seeded Random for repeatable runs
+     */
+    public static List<WeatherData> generateSampleData(int count, double highTempProbability, Random random) {
         List<WeatherData> dataList = new ArrayList<>();
 
         for (int i = 0; i < count; i++) {
             String station = STATIONS[random.nextInt(STATIONS.length)];
-            double temperature = generateTemperature(highTempProbability);
-            double humidity = generateHumidity();
+            double temperature = generateTemperature(highTempProbability, random);
+            double humidity = generateHumidity(random);
 
             WeatherData data = new WeatherData(station, temperature, humidity);
             dataList.add(data);
@@ -40,7 +48,7 @@ public class TestDataGenerator {
     /**
      * Generate temperature with controlled probability of high values
      */
-    private static double generateTemperature(double highTempProbability) {
+    private static double generateTemperature(double highTempProbability, Random random) {
         double temperature;
         if (random.nextDouble() < highTempProbability) {
             // High temperature (30-45°C)
@@ -55,7 +63,7 @@ public class TestDataGenerator {
     /**
      * Generate humidity between 30% and 90%
      */
-    private static double generateHumidity() {
+    private static double generateHumidity(Random random) {
         double humidity = 30.0 + (random.nextDouble() * 60.0);
         return Math.round(humidity * 10.0) / 10.0;
     }
@@ -1,73 +1,191 @@
 package ma.abdex.util;
 
+import ma.abdex.model.Metric;
+import ma.abdex.model.ParseError;
+
 /**
- * Input validation utilities for weather data
+ * Input validation utilities for weather data.
+ *
+ * The {@code check*} methods never throw: they return the {@link ParseError}
+ * a value fails with, or null when it is valid, so ingest paths can validate
+ * without exceptions. The {@code validate*} methods wrap them and throw
+ * IllegalArgumentException, building the message only on failure.
  */
 public class ValidationUtils {
 
+    private static final int MAX_STATION_LENGTH = 50;
+    private static final long MAX_TIMESTAMP_SKEW_MS = 365L * 24 * 60 * 60 * 1000;
+
+    // Direct-mapped cache of station names found valid, hit by reference: names
+    // interned by StationNameTable are the same instance on every record.
+    // Racy slot writes are benign, a lost entry is only rechecked.
+    private static final int STATION_CACHE_SIZE = 1024;
+    private static final String[] validStations = new String[STATION_CACHE_SIZE];
+
+    /**
+     * Check a temperature in Celsius
+     *
+     * @return TEMPERATURE_OUT_OF_RANGE if outside [-100, 100] or not a number, else null
+     */
+    public static ParseError checkTemperature(double temperature) {
+        return temperature >= -100 && temperature <= 100 ? null : ParseError.TEMPERATURE_OUT_OF_RANGE;
+    }
+
+    /**
+     * Check a humidity percentage
+     *
+     * @return HUMIDITY_OUT_OF_RANGE if outside [0, 100] or not a number, else null
+     */
+    public static ParseError checkHumidity(double humidity) {
+        return humidity >= 0 && humidity <= 100 ? null : ParseError.HUMIDITY_OUT_OF_RANGE;
+    }
+
+    /**
+     * Check the value of any metric against its valid range
+     *
+     * @return the temperature or humidity error for those metrics, METRIC_OUT_OF_RANGE
+     *         for the others, or null if valid
+     */
+    public static ParseError checkMetric(Metric metric, double value) {
+        if (metric.inRange(value)) {
+            return null;
+        }
+        switch (metric) {
+            case TEMPERATURE:
+                return ParseError.TEMPERATURE_OUT_OF_RANGE;
+            case HUMIDITY:
+                return ParseError.HUMIDITY_OUT_OF_RANGE;
+            default:
+                return ParseError.METRIC_OUT_OF_RANGE;
+        }
+    }
+
+    /**
+     * Check a station name: 1 to 50 letters, digits, underscores or hyphens
+     *
+     * @return INVALID_STATION if invalid, else null
+     */
+    public static ParseError checkStation(String station) {
+        if (station == null) {
+            return ParseError.INVALID_STATION;
+        }
+        int slot = station.hashCode() & (STATION_CACHE_SIZE - 1);
+        if (validStations[slot] == station) {
+            return null;
+        }
+        if (!isValidStationName(station)) {
+            return ParseError.INVALID_STATION;
+        }
+        validStations[slot] = station;
+        return null;
+    }
+
+    /**
+     * Check a measurement time in epoch milliseconds
+     *
+     * @return INVALID_TIMESTAMP if more than one year from the current time, else null
+     */
+    public static ParseError checkTimestamp(long timestamp) {
+        return Math.abs(System.currentTimeMillis() - timestamp) <= MAX_TIMESTAMP_SKEW_MS
+                ? null : ParseError.INVALID_TIMESTAMP;
+    }
+
+    /**
+     * Check all weather data fields, returning the first failure or null
+     */
+    public static ParseError checkWeatherData(String station, double temperature,
+            double humidity, long timestamp) {
+        ParseError error = checkStation(station);
+        if (error == null) {
+            error = checkTemperature(temperature);
+        }
+        if (error == null) {
+            error = checkHumidity(humidity);
+        }
+        if (error == null) {
+            error = checkTimestamp(timestamp);
+        }
+        return error;
+    }
+
     /**
      * Validate temperature value
-     * 
+     *
      * @param temperature Temperature in Celsius
      * @throws IllegalArgumentException if temperature is invalid
      */
     public static void validateTemperature(double temperature) {
-        if (temperature < -100 || temperature > 100) {
-            throw new IllegalArgumentException(
-                    String.format("Temperature out of valid range [-100, 100]: %.1f", temperature));
+        if (checkTemperature(temperature) == null) {
+            return;
         }
-        if (Double.isNaN(temperature) || Double.isInfinite(temperature)) {
+        if (Double.isNaN(temperature)) {
             throw new IllegalArgumentException("Temperature must be a valid number");
         }
+        throw new IllegalArgumentException(
+                String.format("Temperature out of valid range [-100, 100]: %.1f", temperature));
     }
 
     /**
      * Validate humidity value
-     * 
+     *
      * @param humidity Humidity percentage
      * @throws IllegalArgumentException if humidity is invalid
      */
     public static void validateHumidity(double humidity) {
-        if (humidity < 0 || humidity > 100) {
-            throw new IllegalArgumentException(
-                    String.format("Humidity out of valid range [0, 100]: %.1f", humidity));
+        if (checkHumidity(humidity) == null) {
+            return;
         }
-        if (Double.isNaN(humidity) || Double.isInfinite(humidity)) {
+        if (Double.isNaN(humidity)) {
             throw new IllegalArgumentException("Humidity must be a valid number");
         }
+        throw new IllegalArgumentException(
+                String.format("Humidity out of valid range [0, 100]: %.1f", humidity));
+    }
+
+    /**
+     * Validate the value of any metric
+     *
+     * @throws IllegalArgumentException if the value is outside the metric's valid range
+     */
+    public static void validateMetric(Metric metric, double value) {
+        if (checkMetric(metric, value) == null) {
+            return;
+        }
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Metric " + metric.key() + " must be a valid number");
+        }
+        throw new IllegalArgumentException(String.format("Metric %s out of valid range [%s, %s]: %.1f",
+                metric.key(), metric.min(), metric.max(), value));
     }
 
     /**
      * Validate station name
-     * 
+     *
      * @param station Station identifier
      * @throws IllegalArgumentException if station is invalid
      */
     public static void validateStation(String station) {
+        if (checkStation(station) == null) {
+            return;
+        }
         if (station == null || station.trim().isEmpty()) {
             throw new IllegalArgumentException("Station name cannot be null or empty");
         }
-        if (station.length() > 50) {
+        if (station.length() > MAX_STATION_LENGTH) {
             throw new IllegalArgumentException("Station name too long (max 50 characters)");
         }
-        if (!station.matches("[a-zA-Z0-9_-]+")) {
-            throw new IllegalArgumentException(
-                    "Station name can only contain letters, numbers, underscores and hyphens");
-        }
+        throw new IllegalArgumentException(
+                "Station name can only contain letters, numbers, underscores and hyphens");
     }
 
     /**
      * Validate timestamp
-     * 
+     *
      * @param timestamp Unix timestamp in milliseconds
      * @throws IllegalArgumentException if timestamp is invalid
      */
     public static void validateTimestamp(long timestamp) {
-        long currentTime = System.currentTimeMillis();
-        long oneYearAgo = currentTime - (365L * 24 * 60 * 60 * 1000);
-        long oneYearFuture = currentTime + (365L * 24 * 60 * 60 * 1000);
-
-        if (timestamp < oneYearAgo || timestamp > oneYearFuture) {
+        if (checkTimestamp(timestamp) != null) {
             throw new IllegalArgumentException(
                     "Timestamp out of valid range (within one year of current time)");
         }
@@ -83,4 +201,20 @@ public class ValidationUtils {
         validateHumidity(humidity);
         validateTimestamp(timestamp);
     }
+
+    private static boolean isValidStationName(String station) {
+        int length = station.length();
+        if (length == 0 || length > MAX_STATION_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = station.charAt(i);
+            boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (c >= '0' && c <= '9') || c == '_' || c == '-';
+            if (!allowed) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -1,6 +1,13 @@
 package ma.abdex.config;
 
+import ma.abdex.streams.LatePolicy;
+import ma.abdex.streams.WindowType;
 import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class AppConfigTest {
@@ -44,4 +51,50 @@ class AppConfigTest {
         int port = config.getPrometheusPort();
         assertTrue(port > 0 && port < 65536);
     }
+
+    @Test
+    void testOverridePrecedence() {
+        Properties file = new Properties();
+        file.setProperty("kafka.streams.num.stream.threads", "2");
+        file.setProperty("kafka.topic.input", "weather-data");
+        file.setProperty("weather.temperature.threshold", "30.0");
+        AppConfig config = new AppConfig(file, Map.of(
+                "KAFKA_STREAMS_NUM_STREAM_THREADS", "4",
+                "WEATHER_TEMPERATURE_THRESHOLD", "25.0"));
+
+        assertEquals(4, config.getKafkaStreamsNumThreads());
+        assertEquals("weather-data", config.getInputTopic());
+
+        config.applyArguments("--kafka.streams.num.stream.threads=8", "--kafka.topic.input=readings");
+        assertEquals(8, config.getKafkaStreamsNumThreads());
+        assertEquals("readings", config.getInputTopic());
+        assertEquals(25.0, config.getTemperatureThreshold());
+    }
+
+    @Test
+    void testMalformedArgumentRejected() {
+        AppConfig config = new AppConfig(new Properties(), Map.of());
+        assertThrows(IllegalArgumentException.class, () -> config.applyArguments("kafka.topic.input=x"));
+        assertThrows(IllegalArgumentException.class, () -> config.applyArguments("--kafka.topic.input"));
+    }
+
+    @Test
+    void testEnvironmentVariableName() {
+        assertEquals("KAFKA_STREAMS_NUM_STREAM_THREADS", AppConfig.environmentVariable("kafka.streams.num.stream.threads"));
+        assertEquals("WEATHER_LATE_POLICY", AppConfig.environmentVariable("weather.late-policy"));
+    }
+
+    @Test
+    void testCaseConversionIgnoresDefaultLocale() {
+        Locale original = Locale.getDefault();
+        // Turkish upper-cases 'i' to a dotted capital I and lower-cases 'I' to a dotless i
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            assertEquals("KAFKA_STREAMS_NUM_STREAM_THREADS", AppConfig.environmentVariable("kafka.streams.num.stream.threads"));
+            assertEquals(LatePolicy.SIDE_OUTPUT, LatePolicy.fromConfig("side_output"));
+            assertEquals("hopping", WindowType.HOPPING.configName());
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package ma.abdex.metrics;
+
+import io.prometheus.client.CollectorRegistry;
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncMetricsPipelineTest {
+
+    private static double sample(String name, String station) {
+        Double value = CollectorRegistry.defaultRegistry.getSampleValue(name,
+                new String[] { "station" }, new String[] { station });
+        return value == null ? 0.0 : value;
+    }
+
+    @Test
+    void testDrainFoldsUpdatesPerStation() {
+        AsyncMetricsPipeline pipeline = new AsyncMetricsPipeline(new StationMetricsRecorder(10, 0, 30.0), 16, 2);
+
+        pipeline.recordWeatherData("PipelineFold", 35.0, 60.0);
+        pipeline.recordWeatherData("PipelineFold", 25.0, 40.0);
+        pipeline.recordWeatherData("PipelineFold", 31.0, 45.0);
+        pipeline.recordAggregatedStats("PipelineFold", 33.0, 52.5, 2);
+        pipeline.recordAggregatedStats("PipelineFold", 33.0, 50.0, 3);
+
+        assertEquals(0.0, sample("weather_data_received_total", "PipelineFold"));
+        assertEquals(5, pipeline.drain());
+        assertEquals(3.0, sample("weather_data_received_total", "PipelineFold"));
+        assertEquals(2.0, sample("weather_high_temperature_detected_total", "PipelineFold"));
+        assertEquals(31.0, sample("weather_current_temperature_celsius", "PipelineFold"));
+        assertEquals(3.0, sample("weather_aggregation_count", "PipelineFold"));
+        // One reading in two reaches the histograms
+        assertEquals(1.0, sample("weather_temperature_distribution_celsius_count", "PipelineFold"));
+    }
+
+    @Test
+    void testDrainExportsQuantilesOfLatestAggregate() {
+        AsyncMetricsPipeline pipeline = new AsyncMetricsPipeline(new StationMetricsRecorder(10, 0, 30.0), 16, 1);
+        StationStats earlier = new StationStats("PipelineQuantiles");
+        earlier.add(new WeatherData("PipelineQuantiles", 10.0, 40.0));
+        StationStats latest = new StationStats("PipelineQuantiles");
+        latest.add(new WeatherData("PipelineQuantiles", 20.0, 60.0));
+
+        pipeline.recordAggregateQuantiles(earlier);
+        pipeline.recordAggregateQuantiles(latest);
+
+        assertEquals(2, pipeline.drain());
+        Double median = CollectorRegistry.defaultRegistry.getSampleValue("weather_temperature_quantile_celsius",
+                new String[] { "station", "quantile" }, new String[] { "PipelineQuantiles", "0.5" });
+        assertEquals(20.0, median);
+    }
+
+    @Test
+    void testFullBufferDropsAndCounts() {
+        AsyncMetricsPipeline pipeline = new AsyncMetricsPipeline(new StationMetricsRecorder(10, 0, 30.0), 4, 1);
+        double droppedBefore = CollectorRegistry.defaultRegistry.getSampleValue("weather_metrics_dropped_total");
+
+        for (int i = 0; i < 6; i++) {
+            pipeline.recordWeatherData("PipelineFull", 20.0, 50.0);
+        }
+
+        double dropped = CollectorRegistry.defaultRegistry.getSampleValue("weather_metrics_dropped_total");
+        assertEquals(2.0, dropped - droppedBefore);
+        assertEquals(4, pipeline.drain());
+
+        // Slots are reusable once drained
+        pipeline.recordWeatherData("PipelineFull", 20.0, 50.0);
+        assertEquals(1, pipeline.drain());
+        assertEquals(5.0, sample("weather_data_received_total", "PipelineFull"));
+    }
+
+    @Test
+    void testDrainThreadAppliesUpdates() throws InterruptedException {
+        AsyncMetricsPipeline pipeline = new AsyncMetricsPipeline(new StationMetricsRecorder(10, 0, 30.0), 1024, 1);
+        pipeline.start();
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    pipeline.recordWeatherData("PipelineThreaded", 20.0, 50.0);
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        pipeline.stop();
+
+        assertEquals(800.0, sample("weather_data_received_total", "PipelineThreaded"));
+    }
+}
@@ -0,0 +1,69 @@
+package ma.abdex.metrics;
+
+import io.prometheus.client.CollectorRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationMetricsRecorderTest {
+
+    private static Double sample(String name, String station) {
+        return CollectorRegistry.defaultRegistry.getSampleValue(name,
+                new String[] { "station" }, new String[] { station });
+    }
+
+    @Test
+    void testRecordsThroughCachedChildren() {
+        StationMetricsRecorder recorder = new StationMetricsRecorder(10, 0, 30.0);
+
+        recorder.recordWeatherData("RecorderCached", 35.0, 60.0);
+        recorder.recordWeatherData("RecorderCached", 25.0, 40.0);
+        recorder.recordAggregatedStats("RecorderCached", 33.0, 55.0, 7);
+
+        assertEquals(2.0, sample("weather_data_received_total", "RecorderCached"));
+        assertEquals(1.0, sample("weather_high_temperature_detected_total", "RecorderCached"));
+        assertEquals(25.0, sample("weather_current_temperature_celsius", "RecorderCached"));
+        assertEquals(7.0, sample("weather_aggregation_count", "RecorderCached"));
+        assertEquals(1, recorder.size());
+    }
+
+    @Test
+    void testHighTemperatureUsesConfiguredThreshold() {
+        StationMetricsRecorder recorder = new StationMetricsRecorder(10, 0, 20.0);
+
+        recorder.recordWeatherData("RecorderThreshold", 25.0, 60.0);
+        recorder.recordWeatherData("RecorderThreshold", 15.0, 40.0);
+
+        assertEquals(1.0, sample("weather_high_temperature_detected_total", "RecorderThreshold"));
+    }
+
+    @Test
+    void testStationCapUsesOverflowSeries() {
+        StationMetricsRecorder recorder = new StationMetricsRecorder(2, 0, 30.0);
+        Double before = sample("weather_data_received_total", StationMetricsRecorder.OVERFLOW_STATION);
+
+        for (int i = 0; i < 5; i++) {
+            recorder.recordWeatherData("RecorderCap" + i, 20.0, 50.0);
+        }
+
+        assertEquals(2, recorder.size());
+        assertNull(sample("weather_data_received_total", "RecorderCap4"));
+        double overflow = sample("weather_data_received_total", StationMetricsRecorder.OVERFLOW_STATION);
+        assertEquals(3.0, overflow - (before == null ? 0.0 : before));
+    }
+
+    @Test
+    void testIdleStationsEvicted() {
+        StationMetricsRecorder recorder = new StationMetricsRecorder(10, 60_000, 30.0);
+        long now = System.currentTimeMillis();
+
+        recorder.recordAggregatedStats("RecorderIdle", 31.0, 50.0, 1);
+        recorder.evictIdle(now + 30_000);
+        recorder.recordAggregatedStats("RecorderActive", 31.0, 50.0, 1);
+        recorder.evictIdle(now + 61_000);
+
+        assertEquals(1, recorder.size());
+        assertNull(sample("weather_aggregation_count", "RecorderIdle"));
+        assertEquals(1.0, sample("weather_aggregation_count", "RecorderActive"));
+    }
+}
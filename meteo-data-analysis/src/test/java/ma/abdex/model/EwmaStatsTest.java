@@ -0,0 +1,45 @@
+package ma.abdex.model;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EwmaStatsTest {
+
+    @Test
+    void testFirstValueSeedsMean() {
+        EwmaStats stats = new EwmaStats();
+        stats.update(25.0, 0.1);
+
+        assertEquals(1, stats.getCount());
+        assertEquals(25.0, stats.getMean());
+        assertEquals(0.0, stats.getVariance());
+        assertEquals(0.0, stats.zScore(40.0));
+    }
+
+    @Test
+    void testUpdate() {
+        EwmaStats stats = new EwmaStats();
+        stats.update(10.0, 0.5);
+        stats.update(20.0, 0.5);
+
+        // diff 10, increment 5: mean 15, variance 0.5 * (0 + 10 * 5)
+        assertEquals(15.0, stats.getMean(), 1e-9);
+        assertEquals(25.0, stats.getVariance(), 1e-9);
+        assertEquals(2.0, stats.zScore(25.0), 1e-9);
+        assertEquals(-2.0, stats.zScore(5.0), 1e-9);
+    }
+
+    @Test
+    void testTracksStableSignalAndFlagsSpike() {
+        EwmaStats stats = new EwmaStats();
+        for (int i = 0; i < 500; i++) {
+            stats.update(20.0 + (i % 2 == 0 ? 0.5 : -0.5), 0.05);
+        }
+
+        assertEquals(20.0, stats.getMean(), 0.05);
+        assertEquals(0.5, stats.stdDev(), 0.05);
+        assertTrue(Math.abs(stats.zScore(20.4)) < 3.0);
+        assertTrue(stats.zScore(28.0) > 3.0);
+        assertTrue(stats.zScore(12.0) < -3.0);
+    }
+}
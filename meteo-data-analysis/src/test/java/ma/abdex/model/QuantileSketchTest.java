@@ -0,0 +1,121 @@
+package ma.abdex.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchTest {
+
+    private static double exactQuantile(double[] sorted, double q) {
+        return sorted[Math.max(0, (int) Math.ceil(q * sorted.length) - 1)];
+    }
+
+    @Test
+    void testQuantilesWithinRelativeAccuracy() {
+        Random random = new Random(42);
+        QuantileSketch sketch = new QuantileSketch();
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 25.0 + random.nextGaussian() * 8.0;
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.count());
+        for (double q : new double[] { 0.01, 0.25, 0.5, 0.75, 0.95, 0.99 }) {
+            double exact = exactQuantile(values, q);
+            assertEquals(exact, sketch.quantile(q), Math.abs(exact) * 0.01 + 1e-3, "q=" + q);
+        }
+    }
+
+    @Test
+    void testUpperQuantilesOfFewValues() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(32.0);
+        sketch.add(36.0);
+
+        assertEquals(32.0, sketch.quantile(0.5), 0.32);
+        assertEquals(36.0, sketch.quantile(0.95), 0.36);
+        assertEquals(36.0, sketch.quantile(0.99), 0.36);
+    }
+
+    @Test
+    void testNegativeAndZeroValues() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(-20.0);
+        sketch.add(-10.0);
+        sketch.add(0.0);
+        sketch.add(10.0);
+        sketch.add(20.0);
+
+        assertEquals(-20.0, sketch.quantile(0.0), 0.2);
+        assertEquals(-10.0, sketch.quantile(0.25), 0.1);
+        assertEquals(0.0, sketch.quantile(0.5));
+        assertEquals(10.0, sketch.quantile(0.75), 0.1);
+        assertEquals(20.0, sketch.quantile(1.0), 0.2);
+    }
+
+    @Test
+    void testMergeMatchesSequentialAdd() {
+        QuantileSketch sequential = new QuantileSketch();
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        for (int i = 0; i < 1000; i++) {
+            double value = -10.0 + (i % 97) * 0.6;
+            sequential.add(value);
+            (i % 3 == 0 ? left : right).add(value);
+        }
+        left.merge(right);
+
+        assertEquals(sequential.count(), left.count());
+        for (double q = 0.0; q <= 1.0; q += 0.05) {
+            assertEquals(sequential.quantile(q), left.quantile(q), "q=" + q);
+        }
+    }
+
+    @Test
+    void testBatchQuantilesMatchSingleQuantiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 500; i++) {
+            sketch.add(-15.0 + (i % 89) * 0.5);
+        }
+        double[] qs = { 0.0, 0.25, 0.5, 0.95, 0.99, 1.0 };
+        double[] out = new double[qs.length];
+
+        assertTrue(sketch.quantiles(qs, out));
+        for (int i = 0; i < qs.length; i++) {
+            assertEquals(sketch.quantile(qs[i]), out[i], "q=" + qs[i]);
+        }
+        assertFalse(new QuantileSketch().quantiles(qs, out));
+    }
+
+    @Test
+    void testBinsStayBounded() {
+        QuantileSketch sketch = new QuantileSketch(0.01, 64);
+        for (double value = 0.001; value < 1000; value *= 1.01) {
+            sketch.add(value);
+        }
+
+        assertTrue(sketch.getPositive().getCounts().length <= 64);
+        // The upper quantiles are unaffected by folding the smallest bins
+        assertEquals(990.0, sketch.quantile(1.0), 990.0 * 0.02);
+    }
+
+    @Test
+    void testEmptySketch() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertEquals(0, sketch.count());
+        assertEquals(0.0, sketch.quantile(0.5));
+        assertThrows(IllegalArgumentException.class,
+                () -> sketch.merge(newSketchWith(0.05, 1.0)));
+    }
+
+    private static QuantileSketch newSketchWith(double relativeAccuracy, double value) {
+        QuantileSketch sketch = new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BINS);
+        sketch.add(value);
+        return sketch;
+    }
+}
@@ -0,0 +1,111 @@
+package ma.abdex.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationStatsTest {
+
+    @Test
+    void testAdd() {
+        StationStats stats = new StationStats("Station1");
+        stats.add(new WeatherData("Station1", 30.0, 40.0));
+        stats.add(new WeatherData("Station1", 34.0, 60.0));
+
+        assertEquals(2, stats.getCount());
+        assertEquals(32.0, stats.getAvgTemperatureCelsius(), 1e-9);
+        assertEquals(50.0, stats.getAvgHumidity(), 1e-9);
+        assertEquals(4.0, stats.getTemperature().variance(), 1e-9);
+        assertEquals(30.0, stats.getTemperature().getMin());
+        assertEquals(34.0, stats.getTemperature().getMax());
+    }
+
+    @Test
+    void testMergeMatchesSequentialAdd() {
+        StationStats sequential = new StationStats("Station1");
+        StationStats left = new StationStats("Station1");
+        StationStats right = new StationStats();
+
+        for (int i = 0; i < 1000; i++) {
+            WeatherData data = new WeatherData("Station1", 30.0 + (i % 17) * 0.7, 40.0 + (i % 23));
+            sequential.add(data);
+            (i % 3 == 0 ? left : right).add(data);
+        }
+        left.merge(right);
+
+        assertEquals(sequential.getCount(), left.getCount());
+        assertEquals(sequential.getAvgTemperatureCelsius(), left.getAvgTemperatureCelsius(), 1e-9);
+        assertEquals(sequential.getTemperature().variance(), left.getTemperature().variance(), 1e-9);
+        assertEquals(sequential.getHumidity().getMin(), left.getHumidity().getMin());
+        assertEquals(sequential.getHumidity().getMax(), left.getHumidity().getMax());
+    }
+
+    @Test
+    void testOptionalMetricsAggregatedOnlyWhenReported() {
+        StationStats stats = new StationStats("Station1");
+        stats.add(new WeatherData("Station1", 30.0, 40.0));
+        assertEquals(Metric.REQUIRED, stats.reportedMetrics());
+        assertNull(stats.getAccumulator(Metric.PRESSURE));
+        assertTrue(Double.isNaN(stats.mean(Metric.PRESSURE)));
+        assertFalse(stats.toJson().contains("Pressure"));
+
+        WeatherData withPressure = new WeatherData("Station1", 32.0, 50.0);
+        withPressure.set(Metric.PRESSURE, 1010.0);
+        stats.add(withPressure);
+        withPressure.set(Metric.PRESSURE, 1020.0);
+        stats.add(withPressure);
+
+        assertEquals(3, stats.getCount());
+        assertEquals(2, stats.getAccumulator(Metric.PRESSURE).getCount());
+        assertEquals(1015.0, stats.mean(Metric.PRESSURE), 1e-9);
+        assertEquals(1010.0, stats.quantile(Metric.PRESSURE, 0.5), 1e-9);
+        assertTrue(stats.toJson().endsWith(",\"avgPressure\":1015.00}"), stats.toJson());
+        assertTrue(stats.toJson(0, 60_000).endsWith(
+                ",\"avgPressure\":1015.00,\"minPressure\":1010.00,\"maxPressure\":1020.00}"));
+
+        // Merging adopts metrics the other side has not seen
+        StationStats other = new StationStats("Station1");
+        other.merge(stats);
+        assertEquals(stats.reportedMetrics(), other.reportedMetrics());
+        assertEquals(1015.0, other.mean(Metric.PRESSURE), 1e-9);
+    }
+
+    @Test
+    void testCompensatedMeanOverLongRun() {
+        MetricAccumulator accumulator = new MetricAccumulator();
+        for (int i = 0; i < 10_000_000; i++) {
+            accumulator.add(30.1);
+        }
+        assertEquals(30.1, accumulator.mean(), 1e-12);
+        assertEquals(0.0, accumulator.variance(), 1e-9);
+    }
+
+    @Test
+    void testCountBeyondIntRange() {
+        StationStats stats = new StationStats("Station1", 31.0, 50.0, Integer.MAX_VALUE);
+        stats.add(new WeatherData("Station1", 31.0, 50.0));
+
+        assertEquals(Integer.MAX_VALUE + 1L, stats.getCount());
+        assertEquals(31.0, stats.getAvgTemperatureCelsius(), 1e-9);
+    }
+
+    @Test
+    void testJsonIgnoresDefaultLocale() {
+        StationStats stats = new StationStats("Station\"1");
+        stats.add(new WeatherData("Station\"1", 30.25, 40.0));
+        stats.add(new WeatherData("Station\"1", -0.5, 60.004));
+
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.FRANCE);
+        try {
+            String json = stats.toJson();
+            assertTrue(json.startsWith("{\"station\":\"Station\\\"1\",\"avgTemperature\":14.88,"
+                    + "\"avgHumidity\":50.00,\"count\":2,\"p50Temperature\":-0.50,"), json);
+            assertTrue(json.endsWith("}"), json);
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+}
@@ -22,6 +22,33 @@ class WeatherDataTest {
         });
     }
 
+    @Test
+    void testFromCsv_OptionalMetrics() {
+        WeatherData data = WeatherData.fromCsv("Station1,25.5,65.0,,pressure=1013.2, windSpeed = 4.5,gust=12,extra");
+
+        assertEquals(1013.2, data.get(Metric.PRESSURE));
+        assertEquals(4.5, data.get(Metric.WIND_SPEED));
+        assertFalse(data.has(Metric.WIND_DIRECTION));
+        assertTrue(Double.isNaN(data.get(Metric.PRECIPITATION)));
+        assertEquals(Metric.REQUIRED | Metric.PRESSURE.bit() | Metric.WIND_SPEED.bit(), data.presentMetrics());
+
+        assertThrows(IllegalArgumentException.class, () -> WeatherData.fromCsv("Station1,25.5,65.0,,pressure=12"));
+        assertThrows(IllegalArgumentException.class, () -> WeatherData.fromCsv("Station1,25.5,65.0,,windSpeed=x"));
+    }
+
+    @Test
+    void testToCsvRoundTripsOptionalMetrics() {
+        WeatherData data = new WeatherData("Station1", 25.5, 65.0, 0);
+        data.set(Metric.WIND_DIRECTION, 270.0);
+        data.set(Metric.PRECIPITATION, 1.5);
+
+        assertEquals("Station1,25.5,65.0,,windDirection=270.0,precipitation=1.5", data.toCsv());
+        assertEquals(data, WeatherData.fromCsv(data.toCsv()));
+
+        data.set(Metric.PRECIPITATION, Double.NaN);
+        assertFalse(data.has(Metric.PRECIPITATION));
+    }
+
     @Test
     void testToCsv() {
         WeatherData data = new WeatherData("Station1", 25.5, 65.0);
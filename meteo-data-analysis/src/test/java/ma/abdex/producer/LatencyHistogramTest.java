@@ -0,0 +1,35 @@
+package ma.abdex.producer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100L);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(50_000, histogram.percentile(0.50), 50_000 * 0.02);
+        assertEquals(99_000, histogram.percentile(0.99), 99_000 * 0.02);
+        assertEquals(100_000, histogram.percentile(1.0), 100_000 * 0.02);
+    }
+
+    @Test
+    void testBucketBounds() {
+        for (long value : new long[] { 0, 1, 127, 128, 129, 1000, 123_456_789L, Long.MAX_VALUE / 4 }) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+            assertTrue(highest >= value, "value " + value);
+            assertTrue(highest - value <= value / 64, "value " + value);
+        }
+    }
+
+    @Test
+    void testEmpty() {
+        assertEquals(0, new LatencyHistogram().percentile(0.99));
+    }
+}
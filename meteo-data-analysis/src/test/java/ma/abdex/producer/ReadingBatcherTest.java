@@ -0,0 +1,101 @@
+package ma.abdex.producer;
+
+import ma.abdex.model.Metric;
+import ma.abdex.model.WeatherData;
+import ma.abdex.streams.ReadingBatchDeserializer;
+import ma.abdex.streams.ReadingBatchSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadingBatcherTest {
+
+    private final List<List<WeatherData>> sent = new ArrayList<>();
+    private final ReadingBatcher batcher = new ReadingBatcher(3, 1000, (station, readings) -> sent.add(readings));
+
+    @Test
+    void testSendsFullBatch() {
+        batcher.add(new WeatherData("Station1", 31.0, 60.0, 1), 0);
+        batcher.add(new WeatherData("Station2", 20.0, 50.0, 1), 0);
+        batcher.add(new WeatherData("Station1", 32.0, 61.0, 2), 0);
+        assertTrue(sent.isEmpty());
+
+        batcher.add(new WeatherData("Station1", 33.0, 62.0, 3), 0);
+        assertEquals(1, sent.size());
+        assertEquals(3, sent.get(0).size());
+        assertEquals(33.0, sent.get(0).get(2).getTemperature());
+    }
+
+    @Test
+    void testFlushesExpiredBatches() {
+        batcher.add(new WeatherData("Station1", 31.0, 60.0, 1), 0);
+        batcher.add(new WeatherData("Station2", 20.0, 50.0, 1), 500);
+
+        assertEquals(1, batcher.flushExpired(1000));
+        assertEquals("Station1", sent.get(0).get(0).getStation());
+        assertEquals(0, batcher.flushExpired(1000));
+
+        batcher.flushAll();
+        assertEquals(2, sent.size());
+        assertEquals("Station2", sent.get(1).get(0).getStation());
+    }
+
+    @Test
+    void testSentBatchesAreReleased() {
+        for (int i = 0; i < 3; i++) {
+            batcher.add(new WeatherData("Station1", 31.0, 60.0, i), 0);
+        }
+        batcher.add(new WeatherData("Station2", 20.0, 50.0, 1), 0);
+        assertEquals(1, batcher.pendingStations());
+
+        batcher.flushExpired(1000);
+        assertEquals(0, batcher.pendingStations());
+
+        // A station's next reading starts a new batch with its own linger time
+        batcher.add(new WeatherData("Station2", 21.0, 51.0, 2), 1500);
+        assertEquals(0, batcher.flushExpired(2000));
+        assertEquals(1, batcher.flushExpired(2500));
+        assertEquals(3, sent.size());
+    }
+
+    @Test
+    void testBatchRoundTrip() {
+        long now = System.currentTimeMillis();
+        List<WeatherData> readings = List.of(
+                new WeatherData("Station1", 31.5, 60.0, now),
+                new WeatherData("Station1", -12.25, 0.0, now + 5000),
+                new WeatherData("Station1", 30.1, 99.9, now - 200));
+        readings.get(1).set(Metric.PRECIPITATION, 2.5);
+        readings.get(2).set(Metric.PRESSURE, 1001.0);
+
+        byte[] bytes = new ReadingBatchSerializer().serialize("weather-data-batched", readings);
+        List<WeatherData> decoded = new ReadingBatchDeserializer().deserialize("weather-data-batched", bytes);
+
+        assertEquals(readings, decoded);
+        for (int i = 0; i < readings.size(); i++) {
+            assertEquals(readings.get(i).getTimestamp(), decoded.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void testInvalidReadingsAreDropped() {
+        long now = System.currentTimeMillis();
+        List<WeatherData> readings = List.of(
+                new WeatherData("Station1", 31.5, 60.0, now),
+                new WeatherData("Station1", 150.0, 60.0, now + 1));
+
+        byte[] bytes = new ReadingBatchSerializer().serialize("weather-data-batched", readings);
+        List<WeatherData> decoded = new ReadingBatchDeserializer().deserialize("weather-data-batched", bytes);
+
+        assertEquals(1, decoded.size());
+
+        WeatherData windy = new WeatherData("Station1", 31.5, 60.0, now + 2);
+        windy.set(Metric.WIND_SPEED, 500.0);
+        bytes = new ReadingBatchSerializer().serialize("weather-data-batched", List.of(windy));
+        assertTrue(new ReadingBatchDeserializer().deserialize("weather-data-batched", bytes).isEmpty());
+        assertNull(new ReadingBatchDeserializer().deserialize("weather-data-batched", new byte[] { 0x01, 0x05 }));
+    }
+}
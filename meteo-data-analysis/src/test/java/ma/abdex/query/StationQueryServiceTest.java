@@ -0,0 +1,185 @@
+package ma.abdex.query;
+
+import com.sun.net.httpserver.HttpServer;
+import ma.abdex.model.StationStats;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationQueryServiceTest {
+
+    private final TreeMap<String, StationStats> data = new TreeMap<>();
+    private HttpServer server;
+    private KafkaStreams streams;
+    private int lookups;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        data.put("Station1", new StationStats("Station1", 32.0, 50.0, 4));
+        data.put("Station2", new StationStats("Station2", 35.0, 55.0, 2));
+        data.put("Station3", new StationStats("Station3", 31.0, 60.0, 1));
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        HostInfo self = new HostInfo("localhost", server.getAddress().getPort());
+        streams = new SingleInstanceStreams(self);
+        new StationQueryService(streams, "station-stats", self, 60_000).register(server);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        streams.close();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + path);
+        return HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testPointLookup() throws Exception {
+        HttpResponse<String> response = get("/stations/Station2");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"station\":\"Station2\""));
+        assertTrue(response.body().contains("\"count\":2"));
+
+        assertEquals(404, get("/stations/Unknown").statusCode());
+    }
+
+    @Test
+    void testListingAndRange() throws Exception {
+        String all = get("/stations").body();
+        assertTrue(all.startsWith("[") && all.endsWith("]"));
+        assertEquals(3, all.split("\"station\"").length - 1);
+
+        String range = get("/stations?from=Station2&to=Station3").body();
+        assertFalse(range.contains("Station1"));
+        assertTrue(range.contains("Station2") && range.contains("Station3"));
+    }
+
+    @Test
+    void testResponsesCached() throws Exception {
+        get("/stations/Station1");
+        data.put("Station1", new StationStats("Station1", 40.0, 50.0, 5));
+        assertTrue(get("/stations/Station1").body().contains("\"count\":4"));
+        assertEquals(1, lookups);
+    }
+
+    /**
+     * KafkaStreams (never started) answering queries from the map above as the only instance
+     */
+    private class SingleInstanceStreams extends KafkaStreams {
+        private final HostInfo self;
+
+        SingleInstanceStreams(HostInfo self) {
+            super(topology(), properties());
+            this.self = self;
+        }
+
+        private static Topology topology() {
+            StreamsBuilder builder = new StreamsBuilder();
+            builder.stream("weather-data");
+            return builder.build();
+        }
+
+        private static Properties properties() {
+            Properties props = new Properties();
+            props.put(StreamsConfig.APPLICATION_ID_CONFIG, "query-test");
+            props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:1");
+            return props;
+        }
+
+        @Override
+        public <K> KeyQueryMetadata queryMetadataForKey(String storeName, K key, Serializer<K> keySerializer) {
+            return new KeyQueryMetadata(self, Set.of(), 0);
+        }
+
+        @Override
+        public Collection<StreamsMetadata> streamsMetadataForStore(String storeName) {
+            return List.of();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T store(StoreQueryParameters<T> storeQueryParameters) {
+            return (T) new MapStore();
+        }
+    }
+
+    private class MapStore implements ReadOnlyKeyValueStore<String, StationStats> {
+        @Override
+        public StationStats get(String key) {
+            lookups++;
+            return data.get(key);
+        }
+
+        @Override
+        public KeyValueIterator<String, StationStats> range(String from, String to) {
+            return iterator(data.subMap(from, true, to, true).entrySet().iterator());
+        }
+
+        @Override
+        public KeyValueIterator<String, StationStats> all() {
+            return iterator(data.entrySet().iterator());
+        }
+
+        @Override
+        public long approximateNumEntries() {
+            return data.size();
+        }
+
+        private KeyValueIterator<String, StationStats> iterator(
+                Iterator<Map.Entry<String, StationStats>> entries) {
+            return new KeyValueIterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public KeyValue<String, StationStats> next() {
+                    Map.Entry<String, StationStats> entry = entries.next();
+                    return KeyValue.pair(entry.getKey(), entry.getValue());
+                }
+
+                @Override
+                public String peekNextKey() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
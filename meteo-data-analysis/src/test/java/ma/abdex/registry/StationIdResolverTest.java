@@ -0,0 +1,102 @@
+package ma.abdex.registry;
+
+import ma.abdex.model.WeatherData;
+import ma.abdex.streams.WeatherDataDeserializer;
+import ma.abdex.streams.WeatherDataSerializer;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationIdResolverTest {
+
+    private static final long BASE_TIME = System.currentTimeMillis();
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, WeatherData> readings;
+    private TestInputTopic<String, Integer> registry;
+    private TestOutputTopic<String, WeatherData> resolved;
+
+    @BeforeEach
+    void start() {
+        Serde<WeatherData> weatherSerde = Serdes.serdeFrom(new WeatherDataSerializer(), new WeatherDataDeserializer());
+        StationDirectory directory = new StationDirectory();
+        StreamsBuilder builder = new StreamsBuilder();
+        builder.globalTable("registry", Consumed.with(Serdes.String(), Serdes.Integer()), Materialized.as("registry"));
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.inMemoryKeyValueStore("buffer"), Serdes.String(), weatherSerde));
+        builder.stream("readings", Consumed.with(Serdes.String(), weatherSerde))
+                .processValues(() -> new StationIdResolver(directory, "registry", "buffer", 2), "buffer")
+                .to("resolved", Produced.with(Serdes.String(), weatherSerde));
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "station-id-resolver-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+        readings = driver.createInputTopic("readings", new StringSerializer(), new WeatherDataSerializer());
+        registry = driver.createInputTopic("registry", new StringSerializer(), new IntegerSerializer());
+        resolved = driver.createOutputTopic("resolved", new StringDeserializer(), new WeatherDataDeserializer());
+    }
+
+    @AfterEach
+    void close() {
+        driver.close();
+    }
+
+    @Test
+    void testReadingsReleasedOnceStationRegistered() {
+        readings.pipeInput("Rabat", new WeatherData("Rabat", 31.0, 40.0, BASE_TIME));
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        assertTrue(resolved.isEmpty());
+
+        registry.pipeInput("Rabat", 1);
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        assertEquals(BASE_TIME, resolved.readValue().getTimestamp());
+
+        // Registered stations pass straight through
+        readings.pipeInput("Rabat", new WeatherData("Rabat", 32.0, 40.0, BASE_TIME + 1000));
+        assertEquals(BASE_TIME + 1000, resolved.readValue().getTimestamp());
+    }
+
+    @Test
+    void testReadingsBeyondBufferCapAreDropped() {
+        // The station never gets an ID, e.g. once the registrar has run out of them
+        for (int i = 0; i < 5; i++) {
+            readings.pipeInput("Rabat", new WeatherData("Rabat", 31.0, 40.0, BASE_TIME + i));
+        }
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        assertTrue(resolved.isEmpty());
+
+        registry.pipeInput("Rabat", 1);
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        List<WeatherData> released = resolved.readValuesToList();
+        assertEquals(2, released.size());
+        assertEquals(BASE_TIME, released.get(0).getTimestamp());
+        assertEquals(BASE_TIME + 1, released.get(1).getTimestamp());
+    }
+}
@@ -0,0 +1,121 @@
+package ma.abdex.registry;
+
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationKeySerdeTest {
+
+    private final StationDirectory directory = new StationDirectory();
+    private final StationKeySerializer serializer = new StationKeySerializer(directory);
+    private final StationKeyDeserializer deserializer = new StationKeyDeserializer(directory);
+
+    @Test
+    void testRegisteredStationEncodedAsId() {
+        directory.remember("Station1", 0x012345);
+
+        byte[] key = serializer.serialize("topic", "Station1");
+        assertArrayEquals(new byte[] { 0, 0x01, 0x23, 0x45 }, key);
+        assertEquals("Station1", deserializer.deserialize("topic", key));
+    }
+
+    @Test
+    void testUnregisteredStationEncodedAsName() {
+        byte[] key = serializer.serialize("topic", "Casa");
+        assertArrayEquals("Casa".getBytes(), key);
+        assertEquals("Casa", deserializer.deserialize("topic", key));
+    }
+
+    @Test
+    void testUnknownIdRoundTripsThroughPlaceholder() {
+        String name = deserializer.deserialize("topic", new byte[] { 0, 0, 0, 7 });
+        assertEquals("#7", name);
+        assertArrayEquals(new byte[] { 0, 0, 0, 7 }, serializer.serialize("topic", name));
+    }
+
+    @Test
+    void testRegistrationRequestedOnce() {
+        assertTrue(directory.needsRegistration("Rabat"));
+        assertFalse(directory.needsRegistration("Rabat"));
+
+        directory.remember("Fes", 3);
+        assertFalse(directory.needsRegistration("Fes"));
+    }
+
+    @Test
+    void testReverseLookupMissesReloadAtMostOncePerInterval() {
+        long[] now = { 0 };
+        StationDirectory directory = new StationDirectory(() -> now[0]);
+        RegistryStore registry = new RegistryStore();
+        registry.entries.put("Rabat", ValueAndTimestamp.make(1, 0));
+        directory.bind(registry);
+
+        assertEquals("Rabat", directory.nameOf(1));
+        // An ID registered elsewhere and not replicated here yet misses repeatedly
+        assertEquals("#2", directory.nameOf(2));
+        assertEquals("#2", directory.nameOf(2));
+        assertEquals(1, registry.scans);
+
+        registry.entries.put("Fes", ValueAndTimestamp.make(2, 0));
+        assertEquals("#2", directory.nameOf(2));
+        now[0] += StationDirectory.RELOAD_INTERVAL_MS;
+        assertEquals("Fes", directory.nameOf(2));
+        assertEquals(2, registry.scans);
+    }
+
+    /** Registry store counting full scans */
+    private static class RegistryStore implements ReadOnlyKeyValueStore<String, ValueAndTimestamp<Integer>> {
+        final TreeMap<String, ValueAndTimestamp<Integer>> entries = new TreeMap<>();
+        int scans;
+
+        @Override
+        public ValueAndTimestamp<Integer> get(String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public KeyValueIterator<String, ValueAndTimestamp<Integer>> range(String from, String to) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public KeyValueIterator<String, ValueAndTimestamp<Integer>> all() {
+            scans++;
+            Iterator<Map.Entry<String, ValueAndTimestamp<Integer>>> iterator = entries.entrySet().iterator();
+            return new KeyValueIterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public KeyValue<String, ValueAndTimestamp<Integer>> next() {
+                    Map.Entry<String, ValueAndTimestamp<Integer>> entry = iterator.next();
+                    return KeyValue.pair(entry.getKey(), entry.getValue());
+                }
+
+                @Override
+                public String peekNextKey() {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public long approximateNumEntries() {
+            return entries.size();
+        }
+    }
+}
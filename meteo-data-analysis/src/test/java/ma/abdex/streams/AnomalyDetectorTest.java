@@ -0,0 +1,26 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.EwmaStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnomalyDetectorTest {
+
+    @Test
+    void testJsonIgnoresDefaultLocale() {
+        EwmaStats baseline = new EwmaStats(50, 21.456, 2.25);
+
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            assertEquals("{\"station\":\"Station1\",\"metric\":\"temperature\",\"timestamp\":1000,"
+                    + "\"value\":35.50,\"mean\":21.46,\"stdDev\":1.50,\"zScore\":-9.36}",
+                    AnomalyDetector.toJson("Station1", "temperature", 1000, 35.5, baseline, -9.364));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ma.abdex.streams;
+
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapKeyValueStoreTest {
+
+    private OffHeapKeyValueStore store;
+
+    @BeforeEach
+    void open() {
+        store = new OffHeapKeyValueStore("test-store");
+        store.init(new MockProcessorContext<>().getStateStoreContext(), store);
+    }
+
+    @AfterEach
+    void close() {
+        store.close();
+    }
+
+    private static Bytes key(String key) {
+        return Bytes.wrap(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] value(int length, int fill) {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) fill);
+        return value;
+    }
+
+    private static List<String> keys(KeyValueIterator<Bytes, byte[]> iterator) {
+        List<String> keys = new ArrayList<>();
+        try (iterator) {
+            while (iterator.hasNext()) {
+                keys.add(new String(iterator.next().key.get(), StandardCharsets.UTF_8));
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    void testPutGetAndDelete() {
+        assertNull(store.get(key("Station1")));
+
+        store.put(key("Station1"), value(40, 1));
+        assertArrayEquals(value(40, 1), store.get(key("Station1")));
+
+        // Shrinks in place, then outgrows the entry's room and moves
+        store.put(key("Station1"), value(10, 2));
+        assertArrayEquals(value(10, 2), store.get(key("Station1")));
+        store.put(key("Station1"), value(500, 3));
+        assertArrayEquals(value(500, 3), store.get(key("Station1")));
+        assertEquals(1, store.approximateNumEntries());
+
+        assertArrayEquals(value(500, 3), store.putIfAbsent(key("Station1"), value(5, 4)));
+        assertNull(store.putIfAbsent(key("Station2"), value(5, 4)));
+
+        assertArrayEquals(value(500, 3), store.delete(key("Station1")));
+        assertNull(store.get(key("Station1")));
+        assertArrayEquals(value(5, 4), store.get(key("Station2")));
+        assertEquals(1, store.approximateNumEntries());
+
+        store.put(key("Station2"), null);
+        assertNull(store.get(key("Station2")));
+        assertEquals(0, store.approximateNumEntries());
+    }
+
+    @Test
+    void testSurvivesGrowthDeletionAndCompaction() {
+        int stations = 20_000;
+        for (int i = 0; i < stations; i++) {
+            store.put(key("Station" + i), value(64, i));
+        }
+        // Every other station deleted, the rest outgrowing their entries several times
+        for (int i = 0; i < stations; i += 2) {
+            store.delete(key("Station" + i));
+        }
+        for (int round = 1; round <= 4; round++) {
+            for (int i = 1; i < stations; i += 2) {
+                store.put(key("Station" + i), value(64 << round, i + round));
+            }
+        }
+
+        assertEquals(stations / 2, store.approximateNumEntries());
+        for (int i = 0; i < stations; i++) {
+            byte[] value = store.get(key("Station" + i));
+            if (i % 2 == 0) {
+                assertNull(value, "Station" + i);
+            } else {
+                assertArrayEquals(value(64 << 4, i + 4), value, "Station" + i);
+            }
+        }
+    }
+
+    @Test
+    void testScansInKeyOrder() {
+        for (String station : List.of("Rabat", "Agadir", "Casablanca", "Fes", "Rabat-Sale", "Tanger")) {
+            store.put(key(station), value(8, 0));
+        }
+
+        assertEquals(List.of("Agadir", "Casablanca", "Fes", "Rabat", "Rabat-Sale", "Tanger"), keys(store.all()));
+        assertEquals(List.of("Tanger", "Rabat-Sale", "Rabat", "Fes", "Casablanca", "Agadir"),
+                keys(store.reverseAll()));
+        assertEquals(List.of("Casablanca", "Fes", "Rabat"), keys(store.range(key("Casablanca"), key("Rabat"))));
+        assertEquals(List.of("Rabat", "Fes"), keys(store.reverseRange(key("C~"), key("Rabat"))));
+        assertEquals(List.of("Rabat", "Rabat-Sale"), keys(store.prefixScan("Rabat", new StringSerializer())));
+        assertTrue(keys(store.range(key("Tanger"), key("Agadir"))).isEmpty());
+
+        store.putAll(List.of(KeyValue.pair(key("Oujda"), value(8, 0)), KeyValue.pair(key("Fes"), null)));
+        assertEquals(List.of("Casablanca", "Oujda", "Rabat"), keys(store.range(key("Casablanca"), key("Rabat"))));
+    }
+}
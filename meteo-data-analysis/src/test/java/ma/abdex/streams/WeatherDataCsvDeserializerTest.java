@@ -0,0 +1,128 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.Metric;
+import ma.abdex.model.ParseError;
+import ma.abdex.model.ParseResult;
+import ma.abdex.model.WeatherData;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherDataCsvDeserializerTest {
+
+    private final WeatherDataCsvDeserializer deserializer = new WeatherDataCsvDeserializer();
+
+    private WeatherData parse(String csv) {
+        return deserializer.deserialize("weather-data", csv.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDeserialize_ValidInput() {
+        WeatherData data = parse("Station1,25.5,65.0");
+
+        assertEquals("Station1", data.getStation());
+        assertEquals(25.5, data.getTemperature());
+        assertEquals(65.0, data.getHumidity());
+    }
+
+    @Test
+    void testDeserialize_MatchesFromCsv() {
+        String[] inputs = {
+                "Station1,25.5,65.0",
+                " Station_2 , -12.25 , 0 ",
+                "Station-3,+31.7,99.99," + System.currentTimeMillis() + ",extra",
+                "Station4,1e1,5E1",
+                "Station5,.5,100.",
+                "Station6,-0.0,42.123456789012345",
+                "Station7,20.5,55.0,,pressure=1013.25, windSpeed = 3.5 ,precipitation=0,gust=12,extra",
+                "Station8,20.5,55.0," + System.currentTimeMillis() + ",windDirection=359.9"
+        };
+        for (String csv : inputs) {
+            WeatherData expected = WeatherData.fromCsv(csv);
+            WeatherData actual = parse(csv);
+            assertEquals(expected, actual, csv);
+            assertEquals(expected, ParseResult.fromCsv(csv).value(), csv);
+        }
+    }
+
+    @Test
+    void testDeserialize_MeasurementTime() {
+        long measuredAt = System.currentTimeMillis() - 60_000;
+
+        assertEquals(measuredAt, parse("Station1,25.5,65.0," + measuredAt).getTimestamp());
+        assertEquals(0, parse("Station1,25.5,65.0").getTimestamp());
+        assertNull(parse("Station1,25.5,65.0,yesterday"));
+        assertNull(parse("Station1,25.5,65.0,1000"));
+    }
+
+    @Test
+    void testDeserialize_InvalidInput() {
+        assertNull(parse("Station1,25.5"));
+        assertNull(parse("Station With Spaces,25.5,65.0"));
+        assertNull(parse(",25.5,65.0"));
+        assertNull(parse("Station1,abc,65.0"));
+        assertNull(parse("Station1,,65.0"));
+        assertNull(parse("Station1,101.0,65.0"));
+        assertNull(parse("Station1,25.5,-1"));
+        assertNull(parse("Station1,NaN,65.0"));
+        assertNull(deserializer.deserialize("weather-data", null));
+    }
+
+    @Test
+    void testDeserialize_OptionalMetrics() {
+        WeatherData data = parse("Station1,25.5,65.0,,windSpeed=12.5,windDirection=180");
+
+        assertEquals(12.5, data.get(Metric.WIND_SPEED));
+        assertEquals(180.0, data.get(Metric.WIND_DIRECTION));
+        assertFalse(data.has(Metric.PRESSURE));
+        assertEquals(0, data.getTimestamp());
+        // Required metrics are positional only
+        assertEquals(25.5, parse("Station1,25.5,65.0,,temperature=30").getTemperature());
+    }
+
+    @Test
+    void testParseErrorReasons() {
+        assertEquals(ParseError.MALFORMED, tryParse("Station1,25.5"));
+        assertEquals(ParseError.MALFORMED, tryParse("Station1,abc,65.0"));
+        assertEquals(ParseError.INVALID_STATION, tryParse("Station With Spaces,25.5,65.0"));
+        assertEquals(ParseError.TEMPERATURE_OUT_OF_RANGE, tryParse("Station1,101.0,65.0"));
+        assertEquals(ParseError.HUMIDITY_OUT_OF_RANGE, tryParse("Station1,25.5,-1"));
+        assertEquals(ParseError.INVALID_TIMESTAMP, tryParse("Station1,25.5,65.0,1000"));
+        assertEquals(ParseError.METRIC_OUT_OF_RANGE, tryParse("Station1,25.5,65.0,,pressure=200"));
+        assertEquals(ParseError.MALFORMED, tryParse("Station1,25.5,65.0,,precipitation="));
+        assertEquals(ParseError.METRIC_OUT_OF_RANGE, ParseResult.fromCsv("Station1,25.5,65.0,,windSpeed=-1").error());
+        assertNull(tryParse("Station1,25.5,65.0"));
+        assertEquals(ParseError.INVALID_TIMESTAMP, ParseResult.fromCsv("Station1,25.5,65.0,yesterday").error());
+        assertEquals(ParseError.HUMIDITY_OUT_OF_RANGE, ParseResult.fromCsv("Station1,25.5,101").error());
+
+        byte[] payload = "Station1,abc,65.0".getBytes(StandardCharsets.UTF_8);
+        ParseResult result = new ParseResultDeserializer(new StationNameTable()).deserialize("weather-data", payload);
+        assertFalse(result.isOk());
+        assertArrayEquals(payload, result.payload());
+    }
+
+    private ParseError tryParse(String csv) {
+        byte[] data = csv.getBytes(StandardCharsets.UTF_8);
+        return deserializer.tryParse(data, 0, data.length).error();
+    }
+
+    @Test
+    void testStationNamesAreInterned() {
+        WeatherData first = parse("Station1,25.5,65.0");
+        WeatherData second = parse("Station1,30.0,70.0");
+
+        assertSame(first.getStation(), second.getStation());
+    }
+
+    @Test
+    void testStationTableOverflow() {
+        WeatherDataCsvDeserializer small = new WeatherDataCsvDeserializer(new StationNameTable(2));
+        for (int i = 0; i < 100; i++) {
+            String csv = "Station" + i + ",20.0,50.0";
+            WeatherData data = small.deserialize("weather-data", csv.getBytes(StandardCharsets.UTF_8));
+            assertEquals("Station" + i, data.getStation());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.ParseError;
+import ma.abdex.model.ParseResult;
+import ma.abdex.model.WeatherData;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherTimestampExtractorTest {
+
+    private static final long NOW = System.currentTimeMillis();
+    private final WeatherTimestampExtractor extractor = new WeatherTimestampExtractor(60_000);
+
+    private long extract(Object value, long recordTimestamp) {
+        ConsumerRecord<Object, Object> record = new ConsumerRecord<>("weather-data", 0, 0, recordTimestamp,
+                TimestampType.CREATE_TIME, 0, 0, "Station1", value, new RecordHeaders(), Optional.empty());
+        return extractor.extract(record, 7);
+    }
+
+    @Test
+    void testUsesMeasurementTime() {
+        assertEquals(NOW - 5000, extract("Station1,32.0,60.0," + (NOW - 5000), NOW));
+        assertEquals(NOW - 5000, extract(ParseResult.ok(new WeatherData("Station1", 32.0, 60.0, NOW - 5000)), NOW));
+    }
+
+    @Test
+    void testFallsBackToRecordTimestamp() {
+        assertEquals(NOW, extract("Station1,32.0,60.0", NOW));
+        assertEquals(NOW, extract("Station1,32.0,60.0,,pressure=1013.0", NOW));
+        assertEquals(NOW, extract("Station1,32.0,60.0,yesterday", NOW));
+        assertEquals(NOW, extract("Station1,32.0,60.0,-5", NOW));
+        assertEquals(NOW, extract("Station1", NOW));
+        assertEquals(NOW, extract(ParseResult.failed(ParseError.MALFORMED), NOW));
+        // No usable record timestamp either: partition time
+        assertEquals(7, extract("Station1,32.0,60.0", -1));
+    }
+
+    @Test
+    void testIgnoresInvalidAndFutureMeasurementTimes() {
+        // Rejected by validation: more than a year away
+        assertEquals(NOW, extract("S,21,50,4102444800000", NOW));
+        // Valid, but beyond the allowed future skew
+        assertEquals(NOW, extract("Station1,32.0,60.0," + (NOW + 3_600_000), NOW));
+        assertEquals(NOW + 30_000, extract("Station1,32.0,60.0," + (NOW + 30_000), NOW));
+    }
+}
@@ -0,0 +1,127 @@
+package ma.abdex.streams;
+
+import ma.abdex.config.AppConfig;
+import ma.abdex.model.WeatherData;
+import ma.abdex.producer.LatencyHistogram;
+import ma.abdex.util.TestDataGenerator;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Throughput, latency and allocation regression suite for the full topology,
+ * run in-process under TopologyTestDriver (no broker needed).
+ *
+ * Pushes synthetic TestDataGenerator readings through the default configuration
+ * (with in-memory stores) and fails when throughput drops below, or allocation
+ * per record rises above, the budget. The driver commits after every record, so
+ * its own bookkeeping weighs on the absolute numbers; the benchmarks module
+ * measures individual stages. The budgets sit about 50% off the measured
+ * baseline of roughly 9,000 records/s and 47 KB allocated per record, and
+ * should follow it when an optimization moves it. Excluded from
+ * the default build; run with {@code mvn test -Pperformance}, tuning with {@code -Dperf.records=...},
+ * {@code -Dperf.min.records.per.second=...} and
+ * {@code -Dperf.max.allocated.bytes.per.record=...}.
+ */
+@Tag("performance")
+class WeatherTopologyPerformanceTest {
+
+    private static final long RECORDS = Long.getLong("perf.records", 200_000L);
+    private static final long WARMUP_RECORDS = Long.getLong("perf.warmup.records", 50_000L);
+    private static final long MIN_RECORDS_PER_SECOND = Long.getLong("perf.min.records.per.second", 6_000L);
+    private static final long MAX_ALLOCATED_BYTES_PER_RECORD =
+            Long.getLong("perf.max.allocated.bytes.per.record", 70_000L);
+
+    // Distinct readings cycled through; event and wall-clock time advance 10 ms per record
+    private static final int POOL_SIZE = 10_000;
+    private static final long EVENT_TIME_STEP_MS = 10;
+    private static final int WALL_CLOCK_STEP_RECORDS = 100;
+
+    @TempDir
+    Path stateDir;
+
+    @Test
+    void testTopologyThroughputAndAllocation() {
+        List<WeatherData> readings = TestDataGenerator.generateSampleData(POOL_SIZE, 0.4, new Random(42));
+        byte[][] keys = new byte[POOL_SIZE][];
+        byte[][] values = new byte[POOL_SIZE][];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            WeatherData reading = readings.get(i);
+            // Without a measurement time the record timestamp is used
+            reading.setTimestamp(0);
+            keys[i] = reading.getStation().getBytes(StandardCharsets.UTF_8);
+            values[i] = reading.toCsv().getBytes(StandardCharsets.UTF_8);
+        }
+
+        // In-memory stores: the driver commits after every record, and RocksDB flushes
+        // and fsynced checkpoints would otherwise dominate the measurement
+        AppConfig config = AppConfig.load("--kafka.streams.state.store.type=in_memory");
+        WeatherTopology topology = new WeatherTopology(config);
+        Properties props = topology.streamsConfig("localhost:9092", "weather-topology-performance");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+
+        try (TopologyTestDriver driver = new TopologyTestDriver(topology.build(props), props)) {
+            TestInputTopic<byte[], byte[]> input = driver.createInputTopic(config.getInputTopic(),
+                    new ByteArraySerializer(), new ByteArraySerializer());
+            long baseTime = System.currentTimeMillis();
+
+            pipe(driver, input, keys, values, baseTime, 0, WARMUP_RECORDS, null);
+
+            LatencyHistogram latencies = new LatencyHistogram();
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            pipe(driver, input, keys, values, baseTime, WARMUP_RECORDS, RECORDS, latencies);
+            long elapsedNanos = System.nanoTime() - start;
+            long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+            double recordsPerSecond = RECORDS * 1e9 / elapsedNanos;
+            double bytesPerRecord = (double) allocated / RECORDS;
+            System.out.printf("Topology: %,d records in %.1f s = %,.0f records/s, %,.0f bytes allocated/record, "
+                    + "latency p50 %,d ns, p99 %,d ns, p99.9 %,d ns%n",
+                    RECORDS, elapsedNanos / 1e9, recordsPerSecond, bytesPerRecord,
+                    latencies.percentile(0.5), latencies.percentile(0.99), latencies.percentile(0.999));
+
+            assertTrue(recordsPerSecond >= MIN_RECORDS_PER_SECOND,
+                    String.format("%,.0f records/s is below the budget of %,d", recordsPerSecond,
+                            MIN_RECORDS_PER_SECOND));
+            assertTrue(bytesPerRecord <= MAX_ALLOCATED_BYTES_PER_RECORD,
+                    String.format("%,.0f bytes allocated per record exceeds the budget of %,d", bytesPerRecord,
+                            MAX_ALLOCATED_BYTES_PER_RECORD));
+        }
+    }
+
+    private static void pipe(TopologyTestDriver driver, TestInputTopic<byte[], byte[]> input,
+            byte[][] keys, byte[][] values, long baseTime, long from, long count, LatencyHistogram latencies) {
+        for (long i = from; i < from + count; i++) {
+            if (i % WALL_CLOCK_STEP_RECORDS == 0) {
+                // Drives wall-clock punctuation and the registry resolver's releases
+                driver.advanceWallClockTime(Duration.ofMillis(WALL_CLOCK_STEP_RECORDS * EVENT_TIME_STEP_MS));
+            }
+            int slot = (int) (i % POOL_SIZE);
+            long timestamp = baseTime + i * EVENT_TIME_STEP_MS;
+            if (latencies == null) {
+                input.pipeInput(keys[slot], values[slot], timestamp);
+            } else {
+                long sent = System.nanoTime();
+                input.pipeInput(keys[slot], values[slot], timestamp);
+                latencies.record(System.nanoTime() - sent);
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package ma.abdex.streams;
+
+import ma.abdex.config.AppConfig;
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeatherTopologyTest {
+
+    // Measurement times must be within a year of now to pass validation
+    private static final long BASE_TIME = System.currentTimeMillis() / 60_000 * 60_000;
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> input;
+
+    private void start(String... overrides) {
+        AppConfig config = AppConfig.load(overrides);
+        WeatherTopology topology = new WeatherTopology(config);
+        Properties props = topology.streamsConfig("localhost:9092", "weather-topology-test");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        props.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, 0L);
+        driver = new TopologyTestDriver(topology.build(props), props);
+        input = driver.createInputTopic(config.getInputTopic(), new StringSerializer(), new StringSerializer());
+    }
+
+    @AfterEach
+    void close() {
+        if (driver != null) {
+            driver.close();
+        }
+    }
+
+    private void send(String station, double temperature, double humidity, long time) {
+        // Lets the registry resolver release readings held back until their station has an ID
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        input.pipeInput(station, String.format("%s,%.1f,%.1f,%d", station, temperature, humidity, time), time);
+    }
+
+    // A CSV record stamped with a producer send time
+    private void sendWithSendTime(String station, String csv, long sentAt) {
+        RecordHeaders headers = new RecordHeaders();
+        SendTimeHeader.stamp(headers, sentAt);
+        input.pipeInput(new TestRecord<>(station, csv, headers, sentAt));
+    }
+
+    private TestOutputTopic<String, String> output(String topic) {
+        return driver.createOutputTopic(topic, new StringDeserializer(), new StringDeserializer());
+    }
+
+    /** Latest output value per station */
+    private static Map<String, String> latest(TestOutputTopic<String, String> topic) {
+        return topic.readKeyValuesToMap();
+    }
+
+    @Test
+    void testAggregatesHighTemperaturesPerStation() {
+        start();
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        send("Station2", 20.0, 50.0, BASE_TIME + 1000);
+        send("Station1", 36.0, 70.0, BASE_TIME + 2000);
+        send("Station2", 31.0, 40.0, BASE_TIME + 3000);
+
+        Map<String, String> averages = latest(output("station-averages"));
+        assertEquals(2, averages.size());
+        assertTrue(averages.get("Station1").startsWith("Station1 : Average Temperature = 34.0°C"),
+                averages.get("Station1"));
+        assertTrue(averages.get("Station1").endsWith("(Count: 2)"), averages.get("Station1"));
+        // The 20°C reading is below the threshold
+        assertTrue(averages.get("Station2").endsWith("(Count: 1)"), averages.get("Station2"));
+    }
+
+    @Test
+    void testRegistryReleasesLastReadingOfNewStation() {
+        start("--weather.registry.enabled=true");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        send("Station1", 36.0, 70.0, BASE_TIME + 1000);
+        // Sends once and is never heard from again
+        send("Station2", 40.0, 30.0, BASE_TIME + 2000);
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+
+        Map<String, String> averages = latest(output("station-averages"));
+        assertTrue(averages.get("Station1").endsWith("(Count: 2)"), averages.get("Station1"));
+        assertTrue(averages.get("Station2").startsWith("Station2 : Average Temperature = 40.0°C"),
+                averages.get("Station2"));
+    }
+
+    @Test
+    void testRegistryReleasesIntoWindowsInKeyMode() {
+        start("--weather.registry.enabled=true", "--weather.topology.grouping=key",
+                "--weather.window.tumbling.size.seconds=60", "--weather.window.tumbling.grace.seconds=0");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        driver.advanceWallClockTime(Duration.ofMillis(100));
+        send("Station1", 34.0, 60.0, BASE_TIME + 1000);
+        send("Station1", 31.0, 60.0, BASE_TIME + Duration.ofMinutes(2).toMillis());
+
+        List<KeyValue<String, String>> closed = output("station-averages-tumbling").readKeyValuesToList();
+        assertEquals(1, closed.size());
+        assertTrue(closed.get(0).value.contains("\"count\":2"), closed.get(0).value);
+    }
+
+    @Test
+    void testAggregatesIntoOffHeapStore() {
+        start("--kafka.streams.stats.store.type=off_heap");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        send("Station1", 36.0, 70.0, BASE_TIME + 1000);
+        send("Station2", 31.0, 40.0, BASE_TIME + 2000);
+
+        Map<String, String> averages = latest(output("station-averages"));
+        assertTrue(averages.get("Station1").endsWith("(Count: 2)"), averages.get("Station1"));
+        assertTrue(averages.get("Station2").endsWith("(Count: 1)"), averages.get("Station2"));
+
+        KeyValueStore<String, StationStats> store = driver.getKeyValueStore(WeatherTopology.STATION_STATS_STORE);
+        assertEquals(34.0, store.get("Station1").getAvgTemperatureCelsius(), 1e-9);
+        assertEquals(2, store.approximateNumEntries());
+    }
+
+    @Test
+    void testEmitIntervalPublishesLatestUpdateOnce() {
+        start("--weather.output.emit.interval.seconds=60");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        send("Station1", 34.0, 60.0, BASE_TIME + 10_000);
+        send("Station1", 36.0, 60.0, BASE_TIME + 20_000);
+        TestOutputTopic<String, String> averages = output("station-averages");
+        assertTrue(averages.isEmpty());
+
+        // Stream time passing the interval releases the station's latest aggregate only
+        send("Station2", 31.0, 40.0, BASE_TIME + 60_000);
+        List<KeyValue<String, String>> published = averages.readKeyValuesToList();
+        assertEquals(1, published.size());
+        assertEquals("Station1", published.get(0).key);
+        assertTrue(published.get(0).value.endsWith("(Count: 3)"), published.get(0).value);
+    }
+
+    @Test
+    void testMinChangeDropsSmallUpdates() {
+        start("--weather.output.emit.min.change.celsius=1.0");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        // Average 32.2°C: too close to the published 32.0°C
+        send("Station1", 32.4, 60.0, BASE_TIME + 1000);
+        // Average 33.5°C
+        send("Station1", 36.0, 60.0, BASE_TIME + 2000);
+
+        List<String> published = output("station-averages").readValuesToList();
+        assertEquals(2, published.size());
+        assertTrue(published.get(0).endsWith("(Count: 1)"), published.get(0));
+        assertTrue(published.get(1).endsWith("(Count: 3)"), published.get(1));
+    }
+
+    @Test
+    void testStructuredOutputFormats() {
+        start("--weather.output.format=json");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        TestRecord<String, String> json = output("station-averages").readRecord();
+        assertTrue(json.value().startsWith("{\"station\":\"Station1\",\"avgTemperature\":32.00,"), json.value());
+        assertEquals("station-stats.json.v1", header(json, StationStatsOutputSerializer.SCHEMA_HEADER));
+        driver.close();
+
+        start("--weather.output.format=binary");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        TestRecord<String, StationStats> binary = driver.createOutputTopic("station-averages",
+                new StringDeserializer(), new StationStatsDeserializer()).readRecord();
+        assertEquals(32.0, binary.value().getAvgTemperatureCelsius(), 1e-9);
+        assertEquals(1, binary.value().getCount());
+        assertEquals("station-stats.binary.v5", header(binary, StationStatsOutputSerializer.SCHEMA_HEADER));
+    }
+
+    @Test
+    void testKeyGroupingMatchesRepartition() {
+        start("--weather.topology.grouping=key");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        send("Station1", 36.0, 70.0, BASE_TIME + 1000);
+        input.pipeInput("Station9", "Station1,40.0,50.0," + (BASE_TIME + 2000), BASE_TIME + 2000);
+
+        Map<String, String> averages = latest(output("station-averages"));
+        assertEquals(1, averages.size());
+        // The reading keyed under another station is dropped
+        assertTrue(averages.get("Station1").endsWith("(Count: 2)"), averages.get("Station1"));
+    }
+
+    @Test
+    void testRejectedRecordsGoToDeadLetterTopic() {
+        start();
+        input.pipeInput("Station1", "Station1,not-a-number,60.0", BASE_TIME);
+        input.pipeInput("Station1", "Station1,150.0,60.0", BASE_TIME);
+
+        TestOutputTopic<String, byte[]> deadLetters = driver.createOutputTopic("weather-data-dlq",
+                new StringDeserializer(), new ByteArrayDeserializer());
+        List<TestRecord<String, byte[]>> records = deadLetters.readRecordsToList();
+        assertEquals(2, records.size());
+        assertEquals("Station1,not-a-number,60.0", new String(records.get(0).value(), StandardCharsets.UTF_8));
+        assertEquals("malformed", header(records.get(0), DeadLetterRouter.REASON_HEADER));
+        assertEquals("temperature_out_of_range", header(records.get(1), DeadLetterRouter.REASON_HEADER));
+        assertTrue(output("station-averages").isEmpty());
+    }
+
+    @Test
+    void testRejectedBatchesGoToDeadLetterTopic() {
+        start("--weather.batch.enabled=true");
+        TestInputTopic<String, byte[]> batches = driver.createInputTopic("weather-data-batched",
+                new StringSerializer(), new ByteArraySerializer());
+        byte[] garbage = { 42, 1, 2 };
+        batches.pipeInput("Station1", garbage, BASE_TIME);
+        batches.pipeInput("Station1", new ReadingBatchSerializer().serialize("weather-data-batched", List.of(
+                new WeatherData("Station1", 31.0, 60.0, BASE_TIME),
+                new WeatherData("Station1", 31.0, 160.0, BASE_TIME + 1000),
+                new WeatherData("Station1", 32.0, 60.0, BASE_TIME + Duration.ofDays(800).toMillis()))), BASE_TIME);
+
+        TestOutputTopic<String, byte[]> deadLetters = driver.createOutputTopic("weather-data-dlq",
+                new StringDeserializer(), new ByteArrayDeserializer());
+        List<TestRecord<String, byte[]>> records = deadLetters.readRecordsToList();
+        assertEquals(3, records.size());
+        assertArrayEquals(garbage, records.get(0).value());
+        assertEquals("malformed", header(records.get(0), DeadLetterRouter.REASON_HEADER));
+        assertEquals("weather-data-batched", header(records.get(0), DeadLetterRouter.SOURCE_TOPIC_HEADER));
+        assertTrue(new String(records.get(1).value(), StandardCharsets.UTF_8).startsWith("Station1,31.0,160.0,"));
+        assertEquals("humidity_out_of_range", header(records.get(1), DeadLetterRouter.REASON_HEADER));
+        assertTrue(new String(records.get(2).value(), StandardCharsets.UTF_8).startsWith("Station1,32.0,60.0,"));
+        assertEquals("invalid_timestamp", header(records.get(2), DeadLetterRouter.REASON_HEADER));
+        String average = latest(output("station-averages")).get("Station1");
+        assertTrue(average.endsWith("(Count: 1)"), average);
+    }
+
+    @Test
+    void testLatePolicyDropsOutOfOrderReadings() {
+        start("--weather.late.policy=drop");
+        send("Station1", 32.0, 60.0, BASE_TIME + 60_000);
+        // 60 s behind stream time, beyond the 30 s allowed lateness
+        send("Station1", 40.0, 60.0, BASE_TIME);
+        send("Station1", 34.0, 60.0, BASE_TIME + 61_000);
+
+        String average = latest(output("station-averages")).get("Station1");
+        assertTrue(average.startsWith("Station1 : Average Temperature = 33.0°C"), average);
+        assertTrue(average.endsWith("(Count: 2)"), average);
+        assertTrue(output("weather-data-late").isEmpty());
+    }
+
+    @Test
+    void testLatePolicySideOutputsLateReadingsAsCsv() {
+        start("--weather.late.policy=side_output");
+        send("Station1", 32.0, 60.0, BASE_TIME + 60_000);
+        send("Station1", 40.0, 60.0, BASE_TIME);
+        // Within the allowed lateness
+        send("Station1", 34.0, 60.0, BASE_TIME + 40_000);
+
+        List<KeyValue<String, String>> late = output("weather-data-late").readKeyValuesToList();
+        assertEquals(1, late.size());
+        assertEquals("Station1,40.0,60.0," + BASE_TIME, late.get(0).value);
+        String average = latest(output("station-averages")).get("Station1");
+        assertTrue(average.endsWith("(Count: 2)"), average);
+    }
+
+    @Test
+    void testEventTimeFallsBackToRecordTimestamp() {
+        start("--weather.ingest.parser=string", "--weather.late.policy=side_output");
+        // No measurement time: the record timestamp sets stream time
+        input.pipeInput("Station1", "Station1,32.0,60.0", BASE_TIME + 60_000);
+        // Malformed measurement time: rejected, and its early record timestamp is not late
+        input.pipeInput("Station1", "Station1,33.0,60.0,yesterday", BASE_TIME);
+        // The measurement time wins over the record timestamp, which would be on time
+        input.pipeInput("Station1", "Station1,34.0,60.0," + BASE_TIME, BASE_TIME + 60_000);
+
+        List<KeyValue<String, String>> late = output("weather-data-late").readKeyValuesToList();
+        assertEquals(1, late.size());
+        assertTrue(late.get(0).value.startsWith("Station1,34.0,60.0,"), late.get(0).value);
+        String average = latest(output("station-averages")).get("Station1");
+        assertTrue(average.endsWith("(Count: 1)"), average);
+    }
+
+    @Test
+    void testRejectedTimestampDoesNotAdvanceStreamTime() {
+        start("--weather.ingest.parser=string", "--weather.late.policy=drop");
+        // Rejected as invalid_timestamp, so its measurement time must not become event time
+        input.pipeInput("Station1", "Station1,35.0,50.0,4102444800000", BASE_TIME);
+        send("Station1", 32.0, 60.0, BASE_TIME);
+
+        String average = latest(output("station-averages")).get("Station1");
+        assertTrue(average.endsWith("(Count: 1)"), average);
+    }
+
+    @Test
+    void testFutureMeasurementTimeDoesNotAdvanceStreamTime() {
+        start("--weather.late.policy=drop");
+        // Valid, but a week ahead of the clock: the record time is used as event time
+        input.pipeInput("Station1", "Station1,35.0,50.0," + (BASE_TIME + Duration.ofDays(7).toMillis()), BASE_TIME);
+        send("Station1", 32.0, 60.0, BASE_TIME);
+
+        String average = latest(output("station-averages")).get("Station1");
+        assertTrue(average.endsWith("(Count: 2)"), average);
+    }
+
+    @Test
+    void testOutputCarriesNewestSendTime() {
+        start();
+        sendWithSendTime("Station1", "Station1,32.0,60.0," + BASE_TIME, BASE_TIME + 500);
+        // Sent earlier but arriving later: the newest send time is kept
+        sendWithSendTime("Station1", "Station1,34.0,60.0," + (BASE_TIME + 1000), BASE_TIME + 200);
+        // Without the header the aggregate keeps the send time it has
+        input.pipeInput("Station1", "Station1,36.0,60.0," + (BASE_TIME + 2000), BASE_TIME + 2000);
+
+        List<TestRecord<String, String>> records = output("station-averages").readRecordsToList();
+        assertEquals(3, records.size());
+        for (TestRecord<String, String> record : records) {
+            assertEquals(BASE_TIME + 500, SendTimeHeader.read(record.headers()), record.value());
+        }
+        assertTrue(records.get(2).value().endsWith("(Count: 3)"), records.get(2).value());
+    }
+
+    @Test
+    void testFlagsAnomaliesBelowThreshold() {
+        start("--weather.anomaly.warmup.readings=20");
+        for (int i = 0; i < 40; i++) {
+            send("Station1", 20.0 + (i % 2), 50.0 + (i % 3), BASE_TIME + i * 1000L);
+        }
+        TestOutputTopic<String, String> anomalies = output("weather-anomalies");
+        assertTrue(anomalies.isEmpty());
+
+        // Far below the usual temperatures, and below the high-temperature threshold
+        send("Station1", 5.0, 51.0, BASE_TIME + 40_000);
+
+        KeyValue<String, String> anomaly = anomalies.readKeyValue();
+        assertEquals("Station1", anomaly.key);
+        assertTrue(anomaly.value.contains("\"metric\":\"temperature\""), anomaly.value);
+        assertTrue(anomalies.isEmpty());
+        assertTrue(output("station-averages").isEmpty());
+    }
+
+    @Test
+    void testTumblingWindowEmitsOnceClosed() {
+        start("--weather.window.tumbling.size.seconds=60", "--weather.window.tumbling.grace.seconds=0");
+        send("Station1", 32.0, 60.0, BASE_TIME);
+        send("Station1", 34.0, 60.0, BASE_TIME + 1000);
+        TestOutputTopic<String, String> windows = output("station-averages-tumbling");
+        assertTrue(windows.isEmpty());
+
+        // Stream time passing the window end closes it
+        send("Station1", 31.0, 60.0, BASE_TIME + Duration.ofMinutes(2).toMillis());
+
+        List<KeyValue<String, String>> closed = windows.readKeyValuesToList();
+        assertEquals(1, closed.size());
+        assertTrue(closed.get(0).value.contains("\"avgTemperature\":33.00"), closed.get(0).value);
+        assertTrue(closed.get(0).value.contains("\"count\":2"), closed.get(0).value);
+    }
+
+    private static String header(TestRecord<String, ?> record, String key) {
+        Header header = record.headers().lastHeader(key);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+}
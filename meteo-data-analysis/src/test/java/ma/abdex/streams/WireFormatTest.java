@@ -0,0 +1,227 @@
+package ma.abdex.streams;
+
+import ma.abdex.model.Metric;
+import ma.abdex.model.StationBaseline;
+import ma.abdex.model.StationStats;
+import ma.abdex.model.WeatherData;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireFormatTest {
+
+    @Test
+    void testWeatherDataRoundTrip() {
+        WeatherData data = new WeatherData("Station1", 31.5, 62.0, 1700000000000L);
+        data.setSentAt(1700000000250L);
+        WeatherDataDeserializer deserializer = new WeatherDataDeserializer();
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] bytes = new WeatherDataSerializer(format).serialize("topic", data);
+            WeatherData decoded = deserializer.deserialize("topic", bytes);
+
+            assertEquals(data, decoded, format.name());
+            assertEquals(data.getTimestamp(), decoded.getTimestamp(), format.name());
+            assertEquals(data.getSentAt(), decoded.getSentAt(), format.name());
+        }
+    }
+
+    @Test
+    void testWeatherDataRoundTripKeepsOptionalMetrics() {
+        WeatherData data = new WeatherData("Station1", 31.5, 62.0, 1700000000000L);
+        data.set(Metric.PRESSURE, 1009.5);
+        data.set(Metric.PRECIPITATION, 0.0);
+        WeatherDataDeserializer deserializer = new WeatherDataDeserializer();
+
+        for (WireFormat format : WireFormat.values()) {
+            WeatherData decoded = deserializer.deserialize("topic",
+                    new WeatherDataSerializer(format).serialize("topic", data));
+
+            assertEquals(data, decoded, format.name());
+            assertEquals(data.presentMetrics(), decoded.presentMetrics(), format.name());
+        }
+        // Only present metrics are written: bitmap plus four values
+        byte[] station = BinaryFormat.encodeString("Station1");
+        assertEquals(1 + BinaryFormat.stringSize(station) + 1 + 4 * Double.BYTES + 2 * Long.BYTES,
+                new WeatherDataSerializer(WireFormat.BINARY).serialize("topic", data).length);
+    }
+
+    @Test
+    void testStationStatsRoundTripKeepsOptionalMetrics() {
+        StationStats stats = new StationStats("Station5");
+        for (int i = 0; i < 10; i++) {
+            WeatherData data = new WeatherData("Station5", 20.0 + i, 50.0);
+            if (i % 2 == 0) {
+                data.set(Metric.WIND_SPEED, i);
+            }
+            stats.add(data);
+        }
+        StationStatsDeserializer deserializer = new StationStatsDeserializer();
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] bytes = new StationStatsSerializer(format).serialize("topic", stats);
+            StationStats decoded = deserializer.deserialize("topic", bytes);
+
+            assertEquals(stats.reportedMetrics(), decoded.reportedMetrics(), format.name());
+            assertEquals(5, decoded.getAccumulator(Metric.WIND_SPEED).getCount(), format.name());
+            assertEquals(4.0, decoded.mean(Metric.WIND_SPEED), 1e-9, format.name());
+            assertEquals(stats.quantile(Metric.WIND_SPEED, 0.5), decoded.quantile(Metric.WIND_SPEED, 0.5),
+                    format.name());
+            assertNull(decoded.getAccumulator(Metric.PRESSURE), format.name());
+            assertEquals(24.5, decoded.getAvgTemperatureCelsius(), 1e-9, format.name());
+        }
+    }
+
+    @Test
+    void testStationStatsRoundTrip() {
+        StationStats stats = new StationStats("Station2", 33.25, 48.5, 1234567);
+        StationStatsDeserializer deserializer = new StationStatsDeserializer();
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] bytes = new StationStatsSerializer(format).serialize("topic", stats);
+            StationStats decoded = deserializer.deserialize("topic", bytes);
+
+            assertEquals(stats.getStation(), decoded.getStation(), format.name());
+            assertEquals(stats.getAvgTemperatureCelsius(), decoded.getAvgTemperatureCelsius(), format.name());
+            assertEquals(stats.getAvgHumidity(), decoded.getAvgHumidity(), format.name());
+            assertEquals(stats.getCount(), decoded.getCount(), format.name());
+        }
+    }
+
+    @Test
+    void testStationStatsRoundTripKeepsAccumulators() {
+        StationStats stats = new StationStats("Station2");
+        stats.add(new WeatherData("Station2", 31.0, 40.0));
+        WeatherData latest = new WeatherData("Station2", 35.0, 50.0);
+        latest.setSentAt(1700000000250L);
+        stats.add(latest);
+        StationStatsDeserializer deserializer = new StationStatsDeserializer();
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] bytes = new StationStatsSerializer(format).serialize("topic", stats);
+            StationStats decoded = deserializer.deserialize("topic", bytes);
+
+            assertEquals(2, decoded.getCount(), format.name());
+            assertEquals(4.0, decoded.getTemperature().variance(), 1e-9, format.name());
+            assertEquals(31.0, decoded.getTemperature().getMin(), format.name());
+            assertEquals(50.0, decoded.getHumidity().getMax(), format.name());
+            assertEquals(1700000000250L, decoded.getLatestSentAt(), format.name());
+        }
+    }
+
+    @Test
+    void testStationStatsRoundTripKeepsSketches() {
+        StationStats stats = new StationStats("Station3");
+        for (int i = 0; i < 1000; i++) {
+            stats.add(new WeatherData("Station3", -5.0 + (i % 50), 30.0 + (i % 60)));
+        }
+        StationStatsDeserializer deserializer = new StationStatsDeserializer();
+
+        for (WireFormat format : WireFormat.values()) {
+            byte[] bytes = new StationStatsSerializer(format).serialize("topic", stats);
+            StationStats decoded = deserializer.deserialize("topic", bytes);
+
+            for (double q : new double[] { 0.0, 0.5, 0.95, 0.99, 1.0 }) {
+                assertEquals(stats.temperatureQuantile(q), decoded.temperatureQuantile(q), format.name());
+                assertEquals(stats.humidityQuantile(q), decoded.humidityQuantile(q), format.name());
+            }
+            assertEquals(1000, decoded.getTemperatureSketch().count(), format.name());
+        }
+    }
+
+    @Test
+    void testStationStatsDecodedInPlaceFromBuffer() {
+        StationStats stats = new StationStats("Station4", 31.5, 45.0, 12);
+        byte[] bytes = new StationStatsSerializer(WireFormat.BINARY).serialize("topic", stats);
+        // A record in the middle of a larger fetch buffer
+        byte[] fetched = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, fetched, 5, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(fetched, 5, bytes.length).slice();
+
+        StationStats decoded = new StationStatsDeserializer().deserialize("topic", new RecordHeaders(), buffer);
+        assertEquals("Station4", decoded.getStation());
+        assertEquals(12, decoded.getCount());
+        assertEquals(31.5, decoded.getAvgTemperatureCelsius(), 1e-9);
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void testStationBaselineRoundTrip() {
+        StationBaseline baseline = new StationBaseline();
+        for (int i = 0; i < 200; i++) {
+            baseline.update(new WeatherData("Station1", 20.0 + (i % 7), 50.0 + (i % 11)), 0.05);
+        }
+
+        byte[] bytes = new StationBaselineSerializer().serialize("topic", baseline);
+        StationBaseline decoded = new StationBaselineDeserializer().deserialize("topic", bytes);
+
+        assertEquals(200, decoded.getTemperature().getCount());
+        assertEquals(baseline.getTemperature().getMean(), decoded.getTemperature().getMean());
+        assertEquals(baseline.getTemperature().getVariance(), decoded.getTemperature().getVariance());
+        assertEquals(baseline.getHumidity().getMean(), decoded.getHumidity().getMean());
+        assertEquals(baseline.getHumidity().getVariance(), decoded.getHumidity().getVariance());
+    }
+
+    @Test
+    void testLegacyStationStatsRecordsReadable() {
+        StationStatsDeserializer deserializer = new StationStatsDeserializer();
+
+        byte[] json = "{\"station\":\"Station1\",\"avgTemperatureCelsius\":32.5,\"avgHumidity\":55.0,\"count\":4}"
+                .getBytes(StandardCharsets.UTF_8);
+        StationStats fromJson = deserializer.deserialize("topic", json);
+        assertEquals("Station1", fromJson.getStation());
+        assertEquals(32.5, fromJson.getAvgTemperatureCelsius(), 1e-9);
+        assertEquals(55.0, fromJson.getAvgHumidity(), 1e-9);
+        assertEquals(4, fromJson.getCount());
+
+        ByteBuffer v1 = ByteBuffer.allocate(32);
+        v1.put(BinaryFormat.STATION_STATS_V1);
+        BinaryFormat.writeString(v1, BinaryFormat.encodeString("Station1"));
+        v1.putDouble(32.5).putDouble(55.0);
+        BinaryFormat.writeVarInt(v1, 4);
+        StationStats fromBinary = deserializer.deserialize("topic", Arrays.copyOf(v1.array(), v1.position()));
+        assertEquals(32.5, fromBinary.getAvgTemperatureCelsius(), 1e-9);
+        assertEquals(4, fromBinary.getCount());
+    }
+
+    @Test
+    void testLegacyWeatherDataRecordsReadable() {
+        ByteBuffer v2 = ByteBuffer.allocate(64);
+        v2.put(BinaryFormat.WEATHER_DATA_V2);
+        BinaryFormat.writeString(v2, BinaryFormat.encodeString("Station1"));
+        v2.putDouble(31.5).putDouble(62.0).putLong(1700000000000L).putLong(1700000000250L);
+
+        WeatherData decoded = new WeatherDataDeserializer().deserialize("topic",
+                Arrays.copyOf(v2.array(), v2.position()));
+        assertEquals(new WeatherData("Station1", 31.5, 62.0), decoded);
+        assertEquals(Metric.REQUIRED, decoded.presentMetrics());
+        assertEquals(1700000000250L, decoded.getSentAt());
+    }
+
+    @Test
+    void testBinaryIsSmallerThanJson() {
+        StationStats stats = new StationStats("Station3", 35.0, 55.0, 10);
+
+        byte[] json = new StationStatsSerializer(WireFormat.JSON).serialize("topic", stats);
+        byte[] binary = new StationStatsSerializer(WireFormat.BINARY).serialize("topic", stats);
+
+        assertTrue(BinaryFormat.isJson(json));
+        assertFalse(BinaryFormat.isJson(binary));
+        assertTrue(binary.length < json.length / 2);
+    }
+
+    @Test
+    void testUnknownVersionRejected() {
+        byte[] bytes = { 0x7F, 0x00 };
+        assertThrows(RuntimeException.class, () -> new WeatherDataDeserializer().deserialize("topic", bytes));
+
+        // A metric this version does not know
+        byte[] unknownMetric = { BinaryFormat.WEATHER_DATA_V3, 0x01, 'S', 0x7F };
+        assertThrows(RuntimeException.class, () -> new WeatherDataDeserializer().deserialize("topic", unknownMetric));
+    }
+}
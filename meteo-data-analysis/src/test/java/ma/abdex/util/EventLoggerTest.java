@@ -0,0 +1,51 @@
+package ma.abdex.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLoggerTest {
+
+    private final List<String> lines = new ArrayList<>();
+    private long nanos = 0;
+
+    @Test
+    void testRateLimitedPerKey() {
+        EventLogger events = new EventLogger(1000, 1, false, lines::add, () -> nanos);
+
+        events.event("high_temperature", "Station1", "a");
+        events.event("high_temperature", "Station1", "b");
+        events.event("high_temperature", "Station1", "c");
+        events.event("high_temperature", "Station2", "d");
+        assertEquals(List.of(
+                "event=high_temperature key=Station1 suppressed=0 a",
+                "event=high_temperature key=Station2 suppressed=0 d"), lines);
+
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        events.event("high_temperature", "Station1", "e");
+        assertEquals("event=high_temperature key=Station1 suppressed=2 e", lines.get(2));
+    }
+
+    @Test
+    void testSampling() {
+        EventLogger events = new EventLogger(0, 3, false, lines::add, () -> nanos);
+        for (int i = 1; i <= 9; i++) {
+            events.event("aggregated", "Station1", i);
+        }
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).endsWith(" 3"));
+    }
+
+    @Test
+    void testDebugWritesEveryEvent() {
+        EventLogger events = new EventLogger(1000, 10, true, lines::add, () -> nanos);
+        for (int i = 0; i < 5; i++) {
+            events.event("published", "Station1", i);
+        }
+        assertEquals(5, lines.size());
+    }
+}
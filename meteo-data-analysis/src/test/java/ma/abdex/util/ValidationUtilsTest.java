@@ -1,5 +1,6 @@
 package ma.abdex.util;
 
+import ma.abdex.model.ParseError;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -64,4 +65,26 @@ class ValidationUtilsTest {
         long twoYearsAgo = System.currentTimeMillis() - (2L * 365 * 24 * 60 * 60 * 1000);
         assertThrows(IllegalArgumentException.class, () -> ValidationUtils.validateTimestamp(twoYearsAgo));
     }
+
+    @Test
+    void testCheckReturnsErrorCodes() {
+        assertNull(ValidationUtils.checkStation("Station_ABC-123"));
+        assertEquals(ParseError.INVALID_STATION, ValidationUtils.checkStation(null));
+        assertEquals(ParseError.INVALID_STATION, ValidationUtils.checkStation(" "));
+        assertEquals(ParseError.INVALID_STATION, ValidationUtils.checkStation("Station With Spaces"));
+        assertEquals(ParseError.INVALID_STATION, ValidationUtils.checkStation("S".repeat(51)));
+        assertEquals(ParseError.TEMPERATURE_OUT_OF_RANGE, ValidationUtils.checkTemperature(Double.NaN));
+        assertEquals(ParseError.HUMIDITY_OUT_OF_RANGE, ValidationUtils.checkHumidity(100.5));
+        assertEquals(ParseError.INVALID_TIMESTAMP, ValidationUtils.checkTimestamp(0));
+        assertNull(ValidationUtils.checkWeatherData("Station1", 25.0, 50.0, System.currentTimeMillis()));
+    }
+
+    @Test
+    void testCachedStationStillChecked() {
+        String station = "Station1";
+        assertNull(ValidationUtils.checkStation(station));
+        assertNull(ValidationUtils.checkStation(station));
+        // Same hash slot would only hit for the identical instance
+        assertEquals(ParseError.INVALID_STATION, ValidationUtils.checkStation("Station 1"));
+    }
 }
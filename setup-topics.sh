@@ -5,6 +5,12 @@
 BOOTSTRAP_SERVER="localhost:9092"
 INPUT_TOPIC="weather-data"
 OUTPUT_TOPIC="station-averages"
+WINDOW_TOPICS="station-averages-tumbling station-averages-hopping station-averages-session"
+LATE_TOPIC="weather-data-late"
+BATCH_TOPIC="weather-data-batched"
+DLQ_TOPIC="weather-data-dlq"
+ANOMALY_TOPIC="weather-anomalies"
+REGISTRY_TOPIC="station-registry"
 CONTAINER_NAME="broker"
 
 echo "=== Setting up Kafka Topics (Docker) ==="
@@ -46,6 +52,22 @@ docker exec --workdir /opt/kafka/bin/ -it $CONTAINER_NAME sh -c \
 echo "Topic $OUTPUT_TOPIC created/verified"
 echo ""
 
+# Create windowed aggregate, late-arrival, reading batch, dead-letter and anomaly topics
+for topic in $WINDOW_TOPICS $LATE_TOPIC $BATCH_TOPIC $DLQ_TOPIC $ANOMALY_TOPIC; do
+  echo "Creating topic: $topic"
+  docker exec --workdir /opt/kafka/bin/ -it $CONTAINER_NAME sh -c \
+    "./kafka-topics.sh --create --topic $topic --bootstrap-server localhost:9092 --partitions 3 --replication-factor 1 2>/dev/null || echo 'Topic may already exist'"
+  echo "Topic $topic created/verified"
+  echo ""
+done
+
+# Create the compacted station registry topic (one partition: IDs are assigned by one task)
+echo "Creating topic: $REGISTRY_TOPIC"
+docker exec --workdir /opt/kafka/bin/ -it $CONTAINER_NAME sh -c \
+  "./kafka-topics.sh --create --topic $REGISTRY_TOPIC --bootstrap-server localhost:9092 --partitions 1 --replication-factor 1 --config cleanup.policy=compact 2>/dev/null || echo 'Topic may already exist'"
+echo "Topic $REGISTRY_TOPIC created/verified"
+echo ""
+
 echo "=== Topic Setup Complete ==="
 echo ""
 echo "Listing all topics:"